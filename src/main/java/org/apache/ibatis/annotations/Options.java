@@ -71,4 +71,14 @@ public @interface Options {
     String keyColumn() default "";
 
     String resultSets() default "";
+
+    /**
+     * 数据源为 ReadWriteDataSource 时，select语句是否可以在只读副本上执行
+     */
+    boolean useReplica() default true;
+
+    /**
+     * 语句读写的表，开启 tableCacheInvalidation 时使用，格式同xml中的tables属性
+     */
+    String tables() default "";
 }
@@ -15,9 +15,11 @@
  */
 package org.apache.ibatis.binding;
 
+import org.apache.ibatis.annotations.BulkInsert;
 import org.apache.ibatis.annotations.Flush;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.reactive.Publisher;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.reflection.MetaObject;
@@ -64,6 +66,13 @@ public class MapperMethod {
         switch (command.getType()) {
             case INSERT: {
                 // 将用户传入的实参与指定参数名称关联起来
+                if (method.isBulkInsert()) {
+                    Collection<?> records = (Collection<?>) args[0];
+                    int chunkSize = method.getBulkInsertChunkSize();
+                    result = rowCountResult(chunkSize > 0 ? sqlSession.bulkInsert(command.getName(), records, chunkSize)
+                            : sqlSession.bulkInsert(command.getName(), records));
+                    break;
+                }
                 Object param = method.convertArgsToSqlCommandParam(args);
                 // 对数据库操作结果进行转换
                 result = rowCountResult(sqlSession.insert(command.getName(), param));
@@ -89,6 +98,8 @@ public class MapperMethod {
                     result = executeForMap(sqlSession, args);
                 } else if (method.returnsCursor()) {
                     result = executeForCursor(sqlSession, args);
+                } else if (method.returnsPublisher()) {
+                    result = executeForPublisher(sqlSession, args);
                 }
                 /// 若返回值为单一对象
                 else {
@@ -181,6 +192,12 @@ public class MapperMethod {
         return result;
     }
 
+    private <T> Publisher<T> executeForPublisher(SqlSession sqlSession, Object[] args) {
+        Object param = method.convertArgsToSqlCommandParam(args);
+        RowBounds rowBounds = method.hasRowBounds() ? method.extractRowBounds(args) : RowBounds.DEFAULT;
+        return sqlSession.selectPublisher(command.getName(), param, rowBounds);
+    }
+
     private <E> Object convertToDeclaredCollection(Configuration config, List<E> list) {
         Object collection = config.getObjectFactory().create(method.getReturnType());
         MetaObject metaObject = config.newMetaObject(collection);
@@ -311,6 +328,8 @@ public class MapperMethod {
         private final boolean returnsVoid;
         // 返回值是否为 Cursor
         private final boolean returnsCursor;
+        // 返回值是否为 Publisher
+        private final boolean returnsPublisher;
         // 返回值类型
         private final Class<?> returnType;
         // 如果返回值类型是 Map ，则该字段记录了作为 key的列名
@@ -319,6 +338,8 @@ public class MapperMethod {
         private final Integer resultHandlerIndex;
         // 标记该方法参数列表中 RowBounds类型参数的位置
         private final Integer rowBoundsIndex;
+        // @BulkInsert 指定的分块大小，0表示使用默认配置，未标注时为null
+        private final Integer bulkInsertChunkSize;
 
         // 处理mapper接口中方法的参数
         private final ParamNameResolver paramNameResolver;
@@ -335,6 +356,7 @@ public class MapperMethod {
             this.returnsVoid = void.class.equals(this.returnType);
             this.returnsMany = (configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray());
             this.returnsCursor = Cursor.class.equals(this.returnType);
+            this.returnsPublisher = Publisher.class.equals(this.returnType);
 
             /// 若返回值是Map且指定了@MapKey注解，则使用 getMapKey()方法处理
             this.mapKey = getMapKey(method);
@@ -343,6 +365,7 @@ public class MapperMethod {
             this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
             this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
             this.paramNameResolver = new ParamNameResolver(configuration, method);
+            this.bulkInsertChunkSize = getBulkInsertChunkSize(method);
         }
 
         // 将传入的实参列表转换成 SQL语句对应的参数列表
@@ -390,6 +413,30 @@ public class MapperMethod {
             return returnsCursor;
         }
 
+        public boolean returnsPublisher() {
+            return returnsPublisher;
+        }
+
+        public boolean isBulkInsert() {
+            return bulkInsertChunkSize != null;
+        }
+
+        public int getBulkInsertChunkSize() {
+            return bulkInsertChunkSize == null ? 0 : bulkInsertChunkSize;
+        }
+
+        private Integer getBulkInsertChunkSize(Method method) {
+            final BulkInsert bulkInsert = method.getAnnotation(BulkInsert.class);
+            if (bulkInsert == null) {
+                return null;
+            }
+            final Class<?>[] argTypes = method.getParameterTypes();
+            if (argTypes.length != 1 || !Collection.class.isAssignableFrom(argTypes[0])) {
+                throw new BindingException(method.getName() + " annotated with @BulkInsert must have a single Collection parameter");
+            }
+            return bulkInsert.chunkSize();
+        }
+
         // 查找指定类型的参数在参数列表中的位置索引
         private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
             Integer index = null;
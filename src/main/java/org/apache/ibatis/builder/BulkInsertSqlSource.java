@@ -0,0 +1,169 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.builder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 多行 VALUES 批量插入语句对应的 SqlSource
+ * 由单行插入语句的 BoundSql 推导：将 VALUES 后的行模板重复n次，实参是要插入的记录列表；
+ * 每种行数的sql和参数映射只生成一次，固定大小的分块总是得到相同的sql，可以被语句缓存和批处理复用
+ */
+public class BulkInsertSqlSource implements SqlSource {
+
+    // 第i条记录以附加参数 __row{i} 绑定，参数映射的属性名加上该前缀
+    private static final String ROW_PARAMETER_PREFIX = "__row";
+
+    private final Configuration configuration;
+    private final String head;
+    private final String row;
+    private final String tail;
+    private final List<ParameterMapping> rowMappings;
+    // key为行数，负数表示记录本身有 TypeHandler，直接作为参数值
+    private final Map<Integer, BoundSql> shapes = new ConcurrentHashMap<>();
+
+    public BulkInsertSqlSource(Configuration configuration, String statementId, BoundSql template) {
+        final String sql = template.getSql();
+        final int open = findValuesRow(sql);
+        final int close = open < 0 ? -1 : findClosingParenthesis(sql, open);
+        if (close < 0) {
+            throw new BuilderException("Statement '" + statementId + "' cannot be used for bulk insert: no VALUES (...) row found in '" + sql + "'.");
+        }
+        this.configuration = configuration;
+        this.head = sql.substring(0, open);
+        this.row = sql.substring(open, close + 1);
+        this.tail = sql.substring(close + 1);
+        this.rowMappings = template.getParameterMappings();
+        if (countPlaceholders(head) > 0 || countPlaceholders(tail) > 0 || countPlaceholders(row) != rowMappings.size()) {
+            throw new BuilderException("Statement '" + statementId + "' cannot be used for bulk insert: all parameters must be inside the VALUES row.");
+        }
+        for (ParameterMapping mapping : rowMappings) {
+            if (mapping.getMode() != ParameterMode.IN || template.hasAdditionalParameter(mapping.getProperty())) {
+                throw new BuilderException("Statement '" + statementId + "' cannot be used for bulk insert: parameter '"
+                        + mapping.getProperty() + "' is not a plain property of the inserted record.");
+            }
+        }
+    }
+
+    @Override
+    public BoundSql getBoundSql(Object parameterObject) {
+        final List<?> records = (List<?>) parameterObject;
+        final boolean direct = !records.isEmpty() && records.get(0) != null
+                && configuration.getTypeHandlerRegistry().hasTypeHandler(records.get(0).getClass());
+        final Integer key = direct ? -records.size() : records.size();
+        BoundSql shape = shapes.get(key);
+        if (shape == null) {
+            shape = createShape(records.size(), direct);
+            shapes.put(key, shape);
+        }
+        final BoundSql boundSql = new BoundSql(configuration, shape.getSql(), shape.getParameterMappings(), parameterObject);
+        for (int i = 0; i < records.size(); i++) {
+            boundSql.setAdditionalParameter(ROW_PARAMETER_PREFIX + i, records.get(i));
+        }
+        return boundSql;
+    }
+
+    private BoundSql createShape(int rows, boolean direct) {
+        final StringBuilder sql = new StringBuilder(head.length() + tail.length() + rows * (row.length() + 2));
+        final List<ParameterMapping> mappings = new ArrayList<>(rows * rowMappings.size());
+        sql.append(head);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+            for (ParameterMapping mapping : rowMappings) {
+                final String property = direct ? ROW_PARAMETER_PREFIX + i : ROW_PARAMETER_PREFIX + i + "." + mapping.getProperty();
+                mappings.add(new ParameterMapping.Builder(configuration, property, mapping.getTypeHandler())
+                        .javaType(mapping.getJavaType())
+                        .jdbcType(mapping.getJdbcType())
+                        .jdbcTypeName(mapping.getJdbcTypeName())
+                        .numericScale(mapping.getNumericScale())
+                        .expression(mapping.getExpression())
+                        .build());
+            }
+        }
+        sql.append(tail);
+        return new BoundSql(configuration, sql.toString(), Collections.unmodifiableList(mappings), null);
+    }
+
+    // 返回最后一个 VALUES 关键字之后左括号的位置，没有找到时返回-1
+    private static int findValuesRow(String sql) {
+        final String upper = sql.toUpperCase();
+        int index = upper.lastIndexOf("VALUES");
+        while (index >= 0) {
+            int open = index + "VALUES".length();
+            while (open < sql.length() && Character.isWhitespace(sql.charAt(open))) {
+                open++;
+            }
+            boolean keyword = (index == 0 || !Character.isJavaIdentifierPart(sql.charAt(index - 1)))
+                    && open < sql.length() && sql.charAt(open) == '(';
+            if (keyword) {
+                return open;
+            }
+            index = upper.lastIndexOf("VALUES", index - 1);
+        }
+        return -1;
+    }
+
+    private static int findClosingParenthesis(String sql, int open) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = open; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int countPlaceholders(String sql) {
+        int count = 0;
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
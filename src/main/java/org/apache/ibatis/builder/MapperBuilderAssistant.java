@@ -139,6 +139,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .readWrite(readWrite)
                 .blocking(blocking)
                 .properties(props)
+                .dependencyIndex(configuration.isTableCacheInvalidation() ? configuration.getCacheDependencyIndex() : null)
                 .build();
 
         configuration.addCache(cache);
@@ -291,6 +292,37 @@ public class MapperBuilderAssistant extends BaseBuilder {
             LanguageDriver lang,
             String resultSets) {
 
+        return addMappedStatement(
+                id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+                parameterMap, parameterType, resultMap, resultType, resultSetType,
+                flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+                keyColumn, databaseId, lang, resultSets, true, null);
+    }
+
+    public MappedStatement addMappedStatement(
+            String id,
+            SqlSource sqlSource,
+            StatementType statementType,
+            SqlCommandType sqlCommandType,
+            Integer fetchSize,
+            Integer timeout,
+            String parameterMap,
+            Class<?> parameterType,
+            String resultMap,
+            Class<?> resultType,
+            ResultSetType resultSetType,
+            boolean flushCache,
+            boolean useCache,
+            boolean resultOrdered,
+            KeyGenerator keyGenerator,
+            String keyProperty,
+            String keyColumn,
+            String databaseId,
+            LanguageDriver lang,
+            String resultSets,
+            boolean useReplica,
+            String tables) {
+
         if (unresolvedCacheRef) {
             throw new IncompleteElementException("Cache-ref not yet resolved");
         }
@@ -314,6 +346,8 @@ public class MapperBuilderAssistant extends BaseBuilder {
                 .resultSetType(resultSetType)
                 .flushCacheRequired(valueOrDefault(flushCache, !isSelect))
                 .useCache(valueOrDefault(useCache, isSelect))
+                .useReplica(useReplica)
+                .tables(tables)
                 .cache(currentCache);
 
         ParameterMap statementParameterMap = getStatementParameterMap(parameterMap, parameterType, id);
@@ -35,6 +35,7 @@ import java.util.Properties;
 import java.util.Set;
 
 import org.apache.ibatis.annotations.Arg;
+import org.apache.ibatis.annotations.BulkInsert;
 import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.CacheNamespaceRef;
 import org.apache.ibatis.annotations.Case;
@@ -65,6 +66,7 @@ import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.xml.XMLMapperBuilder;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.reactive.Publisher;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
@@ -396,7 +398,9 @@ public class MapperAnnotationBuilder {
                     null,
                     languageDriver,
                     // ResultSets
-                    options != null ? nullOrEmpty(options.resultSets()) : null);
+                    options != null ? nullOrEmpty(options.resultSets()) : null,
+                    options == null || options.useReplica(),
+                    options != null ? nullOrEmpty(options.tables()) : null);
         }
     }
 
@@ -412,6 +416,16 @@ public class MapperAnnotationBuilder {
     private Class<?> getParameterType(Method method) {
         Class<?> parameterType = null;
         Class<?>[] parameterTypes = method.getParameterTypes();
+        // 批量插入语句的实参是集合中的每条记录
+        if (method.getAnnotation(BulkInsert.class) != null && parameterTypes.length == 1) {
+            Type resolvedParameterType = TypeParameterResolver.resolveParamTypes(method, type)[0];
+            if (resolvedParameterType instanceof ParameterizedType) {
+                Type elementType = ((ParameterizedType) resolvedParameterType).getActualTypeArguments()[0];
+                if (elementType instanceof Class) {
+                    return (Class<?>) elementType;
+                }
+            }
+        }
         for (Class<?> currentParameterType : parameterTypes) {
             if (!RowBounds.class.isAssignableFrom(currentParameterType) && !ResultHandler.class.isAssignableFrom(currentParameterType)) {
                 if (parameterType == null) {
@@ -443,7 +457,7 @@ public class MapperAnnotationBuilder {
         } else if (resolvedReturnType instanceof ParameterizedType) {
             ParameterizedType parameterizedType = (ParameterizedType) resolvedReturnType;
             Class<?> rawType = (Class<?>) parameterizedType.getRawType();
-            if (Collection.class.isAssignableFrom(rawType) || Cursor.class.isAssignableFrom(rawType)) {
+            if (Collection.class.isAssignableFrom(rawType) || Cursor.class.isAssignableFrom(rawType) || Publisher.class.isAssignableFrom(rawType)) {
                 Type[] actualTypeArguments = parameterizedType.getActualTypeArguments();
                 if (actualTypeArguments != null && actualTypeArguments.length == 1) {
                     Type returnTypeParameter = actualTypeArguments[0];
@@ -668,7 +682,7 @@ public class MapperAnnotationBuilder {
 
         assistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType, fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass, resultSetTypeEnum,
                 flushCache, useCache, false,
-                keyGenerator, keyProperty, keyColumn, null, languageDriver, null);
+                keyGenerator, keyProperty, keyColumn, null, languageDriver, null, false, null);
 
         id = assistant.applyCurrentNamespace(id, false);
 
@@ -15,9 +15,17 @@
  */
 package org.apache.ibatis.builder.xml;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.builder.BaseBuilder;
@@ -67,6 +75,9 @@ public class XMLConfigBuilder extends BaseBuilder {
     // 创建和缓存 Reflector 对象
     private ReflectorFactory localReflectorFactory = new DefaultReflectorFactory();
 
+    // sql映射文件快照，未配置 mapperSnapshotFile 时为null
+    private XMLMapperSnapshot mapperSnapshot;
+
     public XMLConfigBuilder(Reader reader) {
         this(reader, null, null);
     }
@@ -294,6 +305,13 @@ public class XMLConfigBuilder extends BaseBuilder {
         configuration.setCallSettersOnNulls(booleanValueOf(props.getProperty("callSettersOnNulls"), false));
         configuration.setUseActualParamName(booleanValueOf(props.getProperty("useActualParamName"), true));
         configuration.setReturnInstanceForEmptyRow(booleanValueOf(props.getProperty("returnInstanceForEmptyRow"), false));
+        configuration.setParallelMapperParsing(booleanValueOf(props.getProperty("parallelMapperParsing"), false));
+        configuration.setStaxMapperParsing(booleanValueOf(props.getProperty("staxMapperParsing"), false));
+        configuration.setMapperSnapshotFile(props.getProperty("mapperSnapshotFile"));
+        configuration.setLazyStatementBuilding(booleanValueOf(props.getProperty("lazyStatementBuilding"), false));
+        configuration.setBulkInsertChunkSize(integerValueOf(props.getProperty("bulkInsertChunkSize"), 500));
+        configuration.setBatchWriteBehindSize(integerValueOf(props.getProperty("batchWriteBehindSize"), 0));
+        configuration.setTableCacheInvalidation(booleanValueOf(props.getProperty("tableCacheInvalidation"), false));
         configuration.setLogPrefix(props.getProperty("logPrefix"));
         @SuppressWarnings("unchecked")
         Class<? extends Log> logImpl = (Class<? extends Log>) resolveClass(props.getProperty("logImpl"));
@@ -407,9 +425,18 @@ public class XMLConfigBuilder extends BaseBuilder {
     private void mapperElement(XNode parent) throws Exception {
 
         if (parent != null) {
+            List<XNode> children = parent.getChildren();
 
-            /// 遍历<mappers>的子节点
-            for (XNode child : parent.getChildren()) {
+            if (configuration.getMapperSnapshotFile() != null) {
+                mapperSnapshot = XMLMapperSnapshot.load(new File(configuration.getMapperSnapshotFile()));
+            }
+
+            // 开启并行解析时，先在 ForkJoinPool 中并发读取并构建各xml映射文件的DOM
+            Map<XNode, PreparedMapperParser> preparedParsers = configuration.isParallelMapperParsing()
+                    ? prepareMapperParsers(children) : Collections.<XNode, PreparedMapperParser>emptyMap();
+
+            /// 遍历<mappers>的子节点，注册到 Configuration 的过程始终在当前线程中按顺序进行
+            for (XNode child : children) {
 
                 // 若是<package>子节点
                 if ("package".equals(child.getName())) {
@@ -426,15 +453,19 @@ public class XMLConfigBuilder extends BaseBuilder {
                     /// 若指定了 resource 属性，则创建XMLMapperBuilder，解析属性指定的Mapper配置文件
                     if (resource != null && url == null && mapperClass == null) {
                         ErrorContext.instance().resource(resource);
-                        InputStream inputStream = Resources.getResourceAsStream(resource);
-                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments());
+                        XPathParser mapperXPathParser = preparedParsers.containsKey(child)
+                                ? preparedParsers.get(child).get()
+                                : createMapperParser(resource, null);
+                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(mapperXPathParser, configuration, resource, configuration.getSqlFragments());
                         mapperParser.parse();
                     }
                     /// 若指定了 url 属性，则创建XMLMapperBuilder，解析属性指定的Mapper配置文件
                     else if (resource == null && url != null && mapperClass == null) {
                         ErrorContext.instance().resource(url);
-                        InputStream inputStream = Resources.getUrlAsStream(url);
-                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(inputStream, configuration, url, configuration.getSqlFragments());
+                        XPathParser mapperXPathParser = preparedParsers.containsKey(child)
+                                ? preparedParsers.get(child).get()
+                                : createMapperParser(null, url);
+                        XMLMapperBuilder mapperParser = new XMLMapperBuilder(mapperXPathParser, configuration, url, configuration.getSqlFragments());
                         mapperParser.parse();
                     }
 
@@ -447,6 +478,83 @@ public class XMLConfigBuilder extends BaseBuilder {
                     }
                 }
             }
+
+            // 所有映射文件都成功解析后，再保存快照
+            if (mapperSnapshot != null) {
+                mapperSnapshot.store();
+            }
+        }
+    }
+
+    /**
+     * 并发读取所有 resource/url 形式的<mapper>，返回尚未完成的DOM解析任务
+     * 解析失败的异常会保留在任务中，在顺序注册阶段遇到该节点时才抛出，保证报错的时机和内容与串行解析一致
+     */
+    private Map<XNode, PreparedMapperParser> prepareMapperParsers(List<XNode> children) {
+        Map<XNode, PreparedMapperParser> preparedParsers = new IdentityHashMap<>();
+        // 资源通过线程上下文类加载器查找，工作线程需要沿用当前线程的类加载器
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        for (XNode child : children) {
+            if (!"package".equals(child.getName())) {
+                String resource = child.getStringAttribute("resource");
+                String url = child.getStringAttribute("url");
+                String mapperClass = child.getStringAttribute("class");
+                if ((resource == null) != (url == null) && mapperClass == null) {
+                    PreparedMapperParser preparedParser = new PreparedMapperParser(resource, url, contextClassLoader);
+                    preparedParser.task = ForkJoinPool.commonPool().submit(preparedParser);
+                    preparedParsers.put(child, preparedParser);
+                }
+            }
+        }
+        return preparedParsers;
+    }
+
+    private XPathParser createMapperParser(String resource, String url) throws IOException {
+        InputStream inputStream = resource != null ? Resources.getResourceAsStream(resource) : Resources.getUrlAsStream(url);
+        if (mapperSnapshot != null) {
+            return mapperSnapshot.parse(resource != null ? resource : url, inputStream, configuration);
+        }
+        return XMLMapperBuilder.newXPathParser(inputStream, configuration);
+    }
+
+    /**
+     * 在 ForkJoinPool 中执行的单个xml映射文件解析任务
+     */
+    private class PreparedMapperParser implements Runnable {
+
+        private final String resource;
+        private final String url;
+        private final ClassLoader contextClassLoader;
+        private ForkJoinTask<?> task;
+        private XPathParser parser;
+        private Exception failure;
+
+        PreparedMapperParser(String resource, String url, ClassLoader contextClassLoader) {
+            this.resource = resource;
+            this.url = url;
+            this.contextClassLoader = contextClassLoader;
+        }
+
+        @Override
+        public void run() {
+            Thread worker = Thread.currentThread();
+            ClassLoader original = worker.getContextClassLoader();
+            worker.setContextClassLoader(contextClassLoader);
+            try {
+                parser = createMapperParser(resource, url);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                worker.setContextClassLoader(original);
+            }
+        }
+
+        XPathParser get() throws Exception {
+            task.join();
+            if (failure != null) {
+                throw failure;
+            }
+            return parser;
         }
     }
 
@@ -21,10 +21,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
@@ -41,11 +43,13 @@ import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.ResultFlag;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.parsing.StaxDocumentBuilder;
 import org.apache.ibatis.parsing.XNode;
 import org.apache.ibatis.parsing.XPathParser;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
+import org.w3c.dom.Document;
 
 /**
  * 基于xml的mapper解析建造者
@@ -59,6 +63,8 @@ public class XMLMapperBuilder extends BaseBuilder {
     private MapperBuilderAssistant builderAssistant;
     private Map<String, XNode> sqlFragments;
     private String resource;
+    // 延迟构建时已按当前 databaseId 登记的语句，databaseId 为空的同名语句需要跳过
+    private final Set<String> databaseSpecificStatements = new HashSet<>();
 
     @Deprecated
     public XMLMapperBuilder(Reader reader, Configuration configuration, String resource, Map<String, XNode> sqlFragments, String namespace) {
@@ -78,11 +84,10 @@ public class XMLMapperBuilder extends BaseBuilder {
     }
 
     public XMLMapperBuilder(InputStream inputStream, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
-        this(new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver()),
-                configuration, resource, sqlFragments);
+        this(newXPathParser(inputStream, configuration), configuration, resource, sqlFragments);
     }
 
-    private XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
+    public XMLMapperBuilder(XPathParser parser, Configuration configuration, String resource, Map<String, XNode> sqlFragments) {
         super(configuration);
         this.builderAssistant = new MapperBuilderAssistant(configuration, resource);
         this.parser = parser;
@@ -90,6 +95,17 @@ public class XMLMapperBuilder extends BaseBuilder {
         this.resource = resource;
     }
 
+    /**
+     * 根据 staxMapperParsing 配置选择使用StAX或校验模式的DOM解析器读取sql映射文件
+     */
+    static XPathParser newXPathParser(InputStream inputStream, Configuration configuration) {
+        if (configuration.isStaxMapperParsing()) {
+            Document document = StaxDocumentBuilder.build(inputStream, new XMLMapperEntityResolver());
+            return new XPathParser(document, true, configuration.getVariables(), new XMLMapperEntityResolver());
+        }
+        return new XPathParser(inputStream, true, configuration.getVariables(), new XMLMapperEntityResolver());
+    }
+
     /**
      * 解析sql映射文件的入口
      */
@@ -162,6 +178,10 @@ public class XMLMapperBuilder extends BaseBuilder {
     private void buildStatementFromContext(List<XNode> list, String requiredDatabaseId) {
         for (XNode context : list) {
             final XMLStatementBuilder statementParser = new XMLStatementBuilder(configuration, builderAssistant, context, requiredDatabaseId);
+            if (configuration.isLazyStatementBuilding()) {
+                addLazyStatement(context, statementParser, requiredDatabaseId);
+                continue;
+            }
             try {
                 statementParser.parseStatementNode();
             } catch (IncompleteElementException e) {
@@ -170,6 +190,24 @@ public class XMLMapperBuilder extends BaseBuilder {
         }
     }
 
+    /**
+     * 只登记语句，等到第一次访问时再构建；databaseId 的匹配规则与 XMLStatementBuilder 相同
+     */
+    private void addLazyStatement(XNode context, XMLStatementBuilder statementParser, String requiredDatabaseId) {
+        String databaseId = context.getStringAttribute("databaseId");
+        if (requiredDatabaseId != null ? !requiredDatabaseId.equals(databaseId) : databaseId != null) {
+            return;
+        }
+        String id = builderAssistant.applyCurrentNamespace(context.getStringAttribute("id"), false);
+        if (requiredDatabaseId == null && databaseSpecificStatements.contains(id)) {
+            return;
+        }
+        configuration.addLazyStatement(id, statementParser);
+        if (requiredDatabaseId != null) {
+            databaseSpecificStatements.add(id);
+        }
+    }
+
     private void parsePendingResultMaps() {
         Collection<ResultMapResolver> incompleteResultMaps = configuration.getIncompleteResultMaps();
         synchronized (incompleteResultMaps) {
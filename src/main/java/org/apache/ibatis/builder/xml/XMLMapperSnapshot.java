@@ -0,0 +1,281 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.builder.xml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.parsing.XPathParser;
+import org.apache.ibatis.session.Configuration;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * sql映射文件的二进制快照
+ * 保存已校验过的映射文件DOM树，以文件内容的摘要为键；
+ * 下次启动时若摘要一致，则直接由快照重建DOM，跳过xml词法分析和DTD校验，否则回退为完整解析
+ */
+public class XMLMapperSnapshot {
+
+    private static final Log log = LogFactory.getLog(XMLMapperSnapshot.class);
+
+    private static final int MAGIC = 0x4D425358;
+    private static final int VERSION = 1;
+
+    private static final byte ELEMENT = 1;
+    private static final byte TEXT = 2;
+    private static final byte CDATA = 3;
+
+    private final File file;
+    // 上次启动保存的快照
+    private final Map<String, Entry> previous;
+    // 本次启动实际用到的映射文件，store()时只写出这些
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    private XMLMapperSnapshot(File file, Map<String, Entry> previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    /**
+     * 读取快照文件，文件不存在或格式不匹配时返回空快照
+     */
+    public static XMLMapperSnapshot load(File file) {
+        Map<String, Entry> entries = new ConcurrentHashMap<>();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        String location = readString(in);
+                        byte[] digest = new byte[in.readUnsignedShort()];
+                        in.readFully(digest);
+                        byte[] tree = new byte[in.readInt()];
+                        in.readFully(tree);
+                        entries.put(location, new Entry(digest, tree));
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Ignoring unreadable mapper snapshot " + file + ". Cause: " + e);
+                entries.clear();
+            }
+        }
+        return new XMLMapperSnapshot(file, entries);
+    }
+
+    /**
+     * 读取映射文件并创建解析器
+     * 快照命中时由快照重建DOM，否则完整解析并记录到快照中
+     */
+    public XPathParser parse(String location, InputStream inputStream, Configuration configuration) throws IOException {
+        byte[] content = readFully(inputStream);
+        byte[] digest = digest(content);
+        Entry entry = previous.get(location);
+        if (entry != null && Arrays.equals(entry.digest, digest)) {
+            current.put(location, entry);
+            return new XPathParser(readTree(entry.tree), true, configuration.getVariables(), new XMLMapperEntityResolver());
+        }
+        XPathParser parser = XMLMapperBuilder.newXPathParser(new ByteArrayInputStream(content), configuration);
+        Document document = parser.evalNode("/*").getNode().getOwnerDocument();
+        current.put(location, new Entry(digest, writeTree(document)));
+        modified = true;
+        return parser;
+    }
+
+    /**
+     * 若本次启动的映射文件与上次不一致，则覆盖写入快照文件
+     */
+    public void store() {
+        if (!modified && current.size() == previous.size()) {
+            return;
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(current.size());
+                for (Map.Entry<String, Entry> e : current.entrySet()) {
+                    writeString(out, e.getKey());
+                    out.writeShort(e.getValue().digest.length);
+                    out.write(e.getValue().digest);
+                    out.writeInt(e.getValue().tree.length);
+                    out.write(e.getValue().tree);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.debug("Could not write mapper snapshot " + file + ". Cause: " + e);
+            tmp.delete();
+        }
+    }
+
+    private static byte[] writeTree(Document document) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            writeNode(out, document.getDocumentElement());
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new BuilderException("Error writing mapper snapshot.  Cause: " + e, e);
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, Node node) throws IOException {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                out.writeByte(ELEMENT);
+                writeString(out, node.getNodeName());
+                NamedNodeMap attributes = node.getAttributes();
+                out.writeInt(attributes.getLength());
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Node attribute = attributes.item(i);
+                    writeString(out, attribute.getNodeName());
+                    writeString(out, attribute.getNodeValue());
+                }
+                NodeList children = node.getChildNodes();
+                int count = 0;
+                for (int i = 0; i < children.getLength(); i++) {
+                    if (isSnapshotNode(children.item(i))) {
+                        count++;
+                    }
+                }
+                out.writeInt(count);
+                for (int i = 0; i < children.getLength(); i++) {
+                    if (isSnapshotNode(children.item(i))) {
+                        writeNode(out, children.item(i));
+                    }
+                }
+                break;
+            case Node.CDATA_SECTION_NODE:
+                out.writeByte(CDATA);
+                writeString(out, node.getNodeValue());
+                break;
+            default:
+                out.writeByte(TEXT);
+                writeString(out, node.getNodeValue());
+        }
+    }
+
+    // 注释已在解析时丢弃，实体引用已展开，只需保留元素和文本节点
+    private static boolean isSnapshotNode(Node node) {
+        short type = node.getNodeType();
+        return type == Node.ELEMENT_NODE || type == Node.TEXT_NODE || type == Node.CDATA_SECTION_NODE;
+    }
+
+    private static Document readTree(byte[] tree) throws IOException {
+        Document document;
+        try {
+            document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        } catch (ParserConfigurationException e) {
+            throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(tree));
+        document.appendChild(readNode(in, document));
+        return document;
+    }
+
+    private static Node readNode(DataInputStream in, Document document) throws IOException {
+        byte type = in.readByte();
+        if (type == ELEMENT) {
+            Element element = document.createElement(readString(in));
+            int attributes = in.readInt();
+            for (int i = 0; i < attributes; i++) {
+                element.setAttribute(readString(in), readString(in));
+            }
+            int children = in.readInt();
+            for (int i = 0; i < children; i++) {
+                element.appendChild(readNode(in, document));
+            }
+            return element;
+        } else if (type == CDATA) {
+            return document.createCDATASection(readString(in));
+        } else if (type == TEXT) {
+            return document.createTextNode(readString(in));
+        }
+        throw new IOException("Unknown node type " + type + " in mapper snapshot");
+    }
+
+    // DataOutput.writeUTF 限制64K，sql文本可能更长
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new BuilderException("Error computing mapper digest.  Cause: " + e, e);
+        }
+    }
+
+    private static class Entry {
+        final byte[] digest;
+        final byte[] tree;
+
+        Entry(byte[] digest, byte[] tree) {
+            this.digest = digest;
+            this.tree = tree;
+        }
+    }
+}
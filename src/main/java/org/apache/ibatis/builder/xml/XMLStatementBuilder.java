@@ -129,7 +129,8 @@ public class XMLStatementBuilder extends BaseBuilder {
         builderAssistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType,
                 fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass,
                 resultSetTypeEnum, flushCache, useCache, resultOrdered,
-                keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets);
+                keyGenerator, keyProperty, keyColumn, databaseId, langDriver, resultSets,
+                context.getBooleanAttribute("useReplica", true), context.getStringAttribute("tables"));
     }
 
     /**
@@ -188,7 +189,7 @@ public class XMLStatementBuilder extends BaseBuilder {
         builderAssistant.addMappedStatement(id, sqlSource, statementType, sqlCommandType,
                 fetchSize, timeout, parameterMap, parameterTypeClass, resultMap, resultTypeClass,
                 resultSetTypeEnum, flushCache, useCache, resultOrdered,
-                keyGenerator, keyProperty, keyColumn, databaseId, langDriver, null);
+                keyGenerator, keyProperty, keyColumn, databaseId, langDriver, null, false, null);
 
         id = builderAssistant.applyCurrentNamespace(id, false);
 
@@ -0,0 +1,125 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 二级缓存项对表的依赖
+ * key为null表示依赖整张表，否则只依赖主键为key的行
+ */
+public final class CacheDependency {
+
+    // from、join、into、update 之后直到下一个子句之前的部分，其中可能包含以逗号分隔的多个表；
+    // join 的 on 条件不作为子句结尾，以便识别条件之后以逗号分隔的表
+    private static final Pattern TABLE_CLAUSE = Pattern.compile(
+            "\\b(?:from|join|into|update)\\s+(.+?)(?=\\b(?:where|join|inner|left|right|full|cross|natural|group|order|having"
+                    + "|union|limit|offset|fetch|for|set|values|select|returning)\\b|[();]|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[\\w.$\"`\\[\\]]+");
+
+    private final String table;
+    private final Object key;
+
+    public CacheDependency(String table, Object key) {
+        this.table = table.toLowerCase(Locale.ENGLISH);
+        // 查询和更新的参数类型可能不同，如int和long，统一为long后再比较
+        if (key instanceof Number && !(key instanceof Float || key instanceof Double)) {
+            this.key = ((Number) key).longValue();
+        } else {
+            this.key = key;
+        }
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * 对当前依赖的写操作是否会使依赖 other 的缓存项失效
+     */
+    public boolean covers(CacheDependency other) {
+        return table.equals(other.table) && (key == null || other.key == null || key.equals(other.key));
+    }
+
+    public static List<CacheDependency> ofTables(Collection<String> tables) {
+        List<CacheDependency> dependencies = new ArrayList<>(tables.size());
+        for (String table : tables) {
+            dependencies.add(new CacheDependency(table, null));
+        }
+        return dependencies;
+    }
+
+    /**
+     * 从sql语句中推断读写的表
+     * 只做简单的词法匹配，可能多出并非表名的标识符（只会导致多余的失效），不能识别存储过程等访问的表
+     */
+    public static Set<String> extractTables(String sql) {
+        if (sql == null) {
+            return Collections.emptySet();
+        }
+        Set<String> tables = new LinkedHashSet<>();
+        Matcher matcher = TABLE_CLAUSE.matcher(sql);
+        while (matcher.find()) {
+            for (String item : matcher.group(1).split(",")) {
+                Matcher identifier = IDENTIFIER.matcher(item.trim());
+                if (identifier.lookingAt()) {
+                    tables.add(unquote(identifier.group()).toLowerCase(Locale.ENGLISH));
+                }
+            }
+        }
+        return tables;
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.replace("\"", "").replace("`", "").replace("[", "").replace("]", "");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheDependency)) {
+            return false;
+        }
+        CacheDependency that = (CacheDependency) o;
+        return table.equals(that.table) && (key == null ? that.key == null : key.equals(that.key));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * table.hashCode() + (key == null ? 0 : key.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return key == null ? table : table + "(" + key + ")";
+    }
+}
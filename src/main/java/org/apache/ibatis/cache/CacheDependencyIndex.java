@@ -0,0 +1,272 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+
+/**
+ * 二级缓存项与表的依赖索引，所有命名空间共享一个
+ * 事务提交时，写操作只使依赖受影响的表（或行）的缓存项失效，而不是清空整个命名空间的缓存
+ * 缓存项因淘汰、过期或清空离开缓存时通过 forget/forgetAll 删除，见 DependencyTrackingCache
+ */
+public class CacheDependencyIndex {
+
+    // 表名 -> 依赖该表的缓存项
+    private final Map<String, TableEntries> tables = new HashMap<>();
+
+    // 缓存id -> 缓存项的key -> 该缓存项登记过的依赖，缓存项被移除时据此从 tables 中删除
+    private final Map<String, Map<Object, Set<CacheDependency>>> entriesByCache = new HashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * 记录缓存项的依赖，在缓存项写入二级缓存之后调用
+     */
+    public void register(Cache cache, Object key, Collection<CacheDependency> dependencies) {
+        CachedEntry entry = new CachedEntry(cache, key);
+        lock.lock();
+        try {
+            Map<Object, Set<CacheDependency>> cacheEntries = entriesByCache.get(entry.cacheId);
+            if (cacheEntries == null) {
+                cacheEntries = new HashMap<>();
+                entriesByCache.put(entry.cacheId, cacheEntries);
+            }
+            Set<CacheDependency> registered = cacheEntries.get(key);
+            if (registered == null) {
+                registered = new HashSet<>();
+                cacheEntries.put(key, registered);
+            }
+            registered.addAll(dependencies);
+            for (CacheDependency dependency : dependencies) {
+                TableEntries entries = tables.get(dependency.getTable());
+                if (entries == null) {
+                    entries = new TableEntries();
+                    tables.put(dependency.getTable(), entries);
+                }
+                entries.add(dependency.getKey(), entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 使依赖指定表或行的缓存项失效
+     */
+    public void invalidate(Collection<CacheDependency> dependencies) {
+        Set<CachedEntry> evicted = new HashSet<>();
+        lock.lock();
+        try {
+            for (CacheDependency dependency : dependencies) {
+                TableEntries entries = tables.get(dependency.getTable());
+                if (entries != null) {
+                    entries.remove(dependency.getKey(), evicted);
+                    if (entries.isEmpty()) {
+                        tables.remove(dependency.getTable());
+                    }
+                }
+            }
+            // 失效的缓存项可能还依赖其他表，一并删除
+            for (CachedEntry entry : evicted) {
+                unlink(entry.cacheId, entry.key);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // 缓存本身是线程安全的，在锁外逐个失效
+        for (CachedEntry entry : evicted) {
+            entry.evict();
+        }
+    }
+
+    /**
+     * 缓存项已被移除（淘汰、过期或被删除），不再需要记录它的依赖
+     */
+    public void forget(String cacheId, Object key) {
+        lock.lock();
+        try {
+            unlink(cacheId, key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 缓存已被清空，删除该缓存所有缓存项的依赖
+     */
+    public void forgetAll(String cacheId) {
+        lock.lock();
+        try {
+            Map<Object, Set<CacheDependency>> entries = entriesByCache.get(cacheId);
+            if (entries != null) {
+                for (Object key : new HashSet<>(entries.keySet())) {
+                    unlink(cacheId, key);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unlink(String cacheId, Object key) {
+        Map<Object, Set<CacheDependency>> entries = entriesByCache.get(cacheId);
+        if (entries == null) {
+            return;
+        }
+        Set<CacheDependency> dependencies = entries.remove(key);
+        if (entries.isEmpty()) {
+            entriesByCache.remove(cacheId);
+        }
+        if (dependencies == null) {
+            return;
+        }
+        for (CacheDependency dependency : dependencies) {
+            TableEntries tableEntries = tables.get(dependency.getTable());
+            if (tableEntries != null) {
+                tableEntries.unlink(dependency.getKey(), cacheId, key);
+                if (tableEntries.isEmpty()) {
+                    tables.remove(dependency.getTable());
+                }
+            }
+        }
+    }
+
+    /**
+     * 依赖指定表的缓存项数量，主要用于测试和监控
+     */
+    public int getEntryCount(String table) {
+        lock.lock();
+        try {
+            TableEntries entries = tables.get(table);
+            return entries == null ? 0 : entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class TableEntries {
+        // 依赖整张表的缓存项
+        private final Set<CachedEntry> wholeTable = new HashSet<>();
+        // 主键 -> 只依赖该行的缓存项
+        private final Map<Object, Set<CachedEntry>> rows = new HashMap<>();
+
+        void add(Object key, CachedEntry entry) {
+            if (key == null) {
+                wholeTable.add(entry);
+                return;
+            }
+            Set<CachedEntry> entries = rows.get(key);
+            if (entries == null) {
+                entries = new HashSet<>();
+                rows.put(key, entries);
+            }
+            entries.add(entry);
+        }
+
+        // 写整张表时所有缓存项都失效，写某一行时只有依赖整张表和依赖该行的缓存项失效
+        void remove(Object key, Set<CachedEntry> evicted) {
+            evicted.addAll(wholeTable);
+            wholeTable.clear();
+            if (key == null) {
+                for (Set<CachedEntry> entries : rows.values()) {
+                    evicted.addAll(entries);
+                }
+                rows.clear();
+            } else {
+                Set<CachedEntry> entries = rows.remove(key);
+                if (entries != null) {
+                    evicted.addAll(entries);
+                }
+            }
+        }
+
+        void unlink(Object key, String cacheId, Object cacheKey) {
+            CachedEntry entry = new CachedEntry(cacheId, cacheKey);
+            if (key == null) {
+                wholeTable.remove(entry);
+                return;
+            }
+            Set<CachedEntry> entries = rows.get(key);
+            if (entries != null) {
+                entries.remove(entry);
+                if (entries.isEmpty()) {
+                    rows.remove(key);
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return wholeTable.isEmpty() && rows.isEmpty();
+        }
+
+        int size() {
+            Set<CachedEntry> all = new HashSet<>(wholeTable);
+            for (Set<CachedEntry> entries : rows.values()) {
+                all.addAll(entries);
+            }
+            return all.size();
+        }
+    }
+
+    private static class CachedEntry {
+        // 只用于失效，不参与比较；一个 Configuration 中缓存id唯一
+        private final Cache cache;
+        private final String cacheId;
+        private final Object key;
+
+        CachedEntry(Cache cache, Object key) {
+            this.cache = cache;
+            this.cacheId = cache.getId();
+            this.key = key;
+        }
+
+        CachedEntry(String cacheId, Object key) {
+            this.cache = null;
+            this.cacheId = cacheId;
+            this.key = key;
+        }
+
+        void evict() {
+            if (cache instanceof BlockingCache) {
+                // BlockingCache.removeObject() 只释放锁，不删除缓存项
+                cache.putObject(key, null);
+            } else {
+                cache.removeObject(key);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof CachedEntry)) {
+                return false;
+            }
+            CachedEntry that = (CachedEntry) o;
+            return cacheId.equals(that.cacheId) && key.equals(that.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * cacheId.hashCode() + key.hashCode();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * 重新加载缓存项的值，ExpiringCache 在缓存项即将过期时在后台调用它提前刷新
+ */
+public interface CacheLoader {
+
+    /**
+     * @return 新的值，返回null表示放弃本次刷新，缓存项保留原值直到过期
+     */
+    Object load() throws Exception;
+
+}
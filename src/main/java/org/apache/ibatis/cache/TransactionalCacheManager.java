@@ -15,9 +15,16 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.apache.ibatis.cache.bus.CacheInvalidation;
+import org.apache.ibatis.cache.bus.CacheInvalidationBus;
 import org.apache.ibatis.cache.decorators.TransactionalCache;
 
 /**
@@ -30,6 +37,32 @@ public class TransactionalCacheManager {
     // key是二级缓存对象，value是二级缓存对象的封装
     private Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
 
+    // 表级缓存失效使用的索引，为null时写操作清空整个命名空间的缓存
+    private final CacheDependencyIndex dependencyIndex;
+
+    // 本事务中写过的表，提交时使依赖它们的缓存项失效
+    private final Set<CacheDependency> pendingInvalidations = new HashSet<>();
+
+    // 向其他节点广播提交时的缓存失效，为null表示单节点
+    private final CacheInvalidationBus invalidationBus;
+
+    public TransactionalCacheManager() {
+        this(null);
+    }
+
+    public TransactionalCacheManager(CacheDependencyIndex dependencyIndex) {
+        this(dependencyIndex, null);
+    }
+
+    public TransactionalCacheManager(CacheDependencyIndex dependencyIndex, CacheInvalidationBus invalidationBus) {
+        this.dependencyIndex = dependencyIndex;
+        this.invalidationBus = invalidationBus;
+    }
+
+    public CacheDependencyIndex getDependencyIndex() {
+        return dependencyIndex;
+    }
+
     public void clear(Cache cache) {
         getTransactionalCache(cache).clear();
     }
@@ -42,13 +75,61 @@ public class TransactionalCacheManager {
         getTransactionalCache(cache).putObject(key, value);
     }
 
+    public void putObject(Cache cache, CacheKey key, Object value, Collection<CacheDependency> dependencies) {
+        getTransactionalCache(cache).putObject(key, value, dependencies);
+    }
+
+    public void putObject(Cache cache, CacheKey key, Object value, Collection<CacheDependency> dependencies, CacheLoader loader) {
+        getTransactionalCache(cache).putObject(key, value, dependencies, loader);
+    }
+
+    /**
+     * 记录写操作影响的表，并丢弃本事务中暂存的、依赖这些表的缓存项
+     */
+    public void invalidate(Collection<CacheDependency> dependencies) {
+        pendingInvalidations.addAll(dependencies);
+        for (TransactionalCache txCache : transactionalCaches.values()) {
+            txCache.discard(dependencies);
+        }
+    }
+
+    /**
+     * 依赖指定表的缓存项是否已被本事务中的写操作影响，此时二级缓存中的数据对本事务已过期
+     */
+    public boolean isInvalidated(Collection<CacheDependency> dependencies) {
+        return !pendingInvalidations.isEmpty() && TransactionalCache.isAffected(dependencies, pendingInvalidations);
+    }
+
+    public boolean hasPendingInvalidations() {
+        return !pendingInvalidations.isEmpty();
+    }
+
     public void commit() {
+        List<CacheInvalidation> published = invalidationBus == null ? null : new ArrayList<CacheInvalidation>();
+        // 先使其他会话缓存的过期数据失效，再写入本事务中写操作之后查出的数据
+        if (!pendingInvalidations.isEmpty()) {
+            dependencyIndex.invalidate(pendingInvalidations);
+            if (published != null) {
+                for (CacheDependency dependency : pendingInvalidations) {
+                    published.add(CacheInvalidation.dependency(dependency));
+                }
+            }
+            pendingInvalidations.clear();
+        }
         for (TransactionalCache txCache : transactionalCaches.values()) {
+            if (published != null && txCache.isClearOnCommit()) {
+                published.add(CacheInvalidation.clear(txCache.getId()));
+            }
             txCache.commit();
         }
+        // 本地缓存处理完之后再通知其他节点，一个事务只发布一次
+        if (published != null && !published.isEmpty()) {
+            invalidationBus.publish(published);
+        }
     }
 
     public void rollback() {
+        pendingInvalidations.clear();
         for (TransactionalCache txCache : transactionalCaches.values()) {
             txCache.rollback();
         }
@@ -57,7 +138,7 @@ public class TransactionalCacheManager {
     private TransactionalCache getTransactionalCache(Cache cache) {
         TransactionalCache txCache = transactionalCaches.get(cache);
         if (txCache == null) {
-            txCache = new TransactionalCache(cache);
+            txCache = new TransactionalCache(cache, dependencyIndex);
             transactionalCaches.put(cache, txCache);
         }
         return txCache;
@@ -0,0 +1,135 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.bus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.ibatis.cache.CacheDependency;
+
+/**
+ * 需要广播给其他节点的一次二级缓存失效
+ * 要么清空某个命名空间的缓存，要么使依赖某张表（或某一行）的缓存项失效
+ */
+public final class CacheInvalidation {
+
+    private static final byte CLEAR = 1;
+    private static final byte DEPENDENCY = 2;
+
+    private static final byte NO_KEY = 0;
+    private static final byte LONG_KEY = 1;
+    private static final byte STRING_KEY = 2;
+
+    private final String cacheId;
+    private final CacheDependency dependency;
+
+    private CacheInvalidation(String cacheId, CacheDependency dependency) {
+        this.cacheId = cacheId;
+        this.dependency = dependency;
+    }
+
+    /**
+     * 清空id对应的缓存，id一般是命名空间
+     */
+    public static CacheInvalidation clear(String cacheId) {
+        return new CacheInvalidation(cacheId, null);
+    }
+
+    /**
+     * 使依赖指定表或行的缓存项失效
+     */
+    public static CacheInvalidation dependency(CacheDependency dependency) {
+        return new CacheInvalidation(null, dependency);
+    }
+
+    public boolean isClear() {
+        return cacheId != null;
+    }
+
+    public String getCacheId() {
+        return cacheId;
+    }
+
+    public CacheDependency getDependency() {
+        return dependency;
+    }
+
+    /**
+     * 写出到传输流中，只有long和String类型的主键按行传输，其他类型的主键放宽为整张表
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        if (cacheId != null) {
+            out.writeByte(CLEAR);
+            out.writeUTF(cacheId);
+            return;
+        }
+        out.writeByte(DEPENDENCY);
+        out.writeUTF(dependency.getTable());
+        Object key = dependency.getKey();
+        if (key instanceof Long) {
+            out.writeByte(LONG_KEY);
+            out.writeLong((Long) key);
+        } else if (key instanceof String) {
+            out.writeByte(STRING_KEY);
+            out.writeUTF((String) key);
+        } else {
+            out.writeByte(NO_KEY);
+        }
+    }
+
+    public static CacheInvalidation readFrom(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        if (type == CLEAR) {
+            return clear(in.readUTF());
+        } else if (type != DEPENDENCY) {
+            throw new IOException("Unknown cache invalidation type " + type);
+        }
+        String table = in.readUTF();
+        byte keyType = in.readByte();
+        Object key;
+        if (keyType == LONG_KEY) {
+            key = in.readLong();
+        } else if (keyType == STRING_KEY) {
+            key = in.readUTF();
+        } else {
+            key = null;
+        }
+        return dependency(new CacheDependency(table, key));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheInvalidation)) {
+            return false;
+        }
+        CacheInvalidation that = (CacheInvalidation) o;
+        return cacheId != null ? cacheId.equals(that.cacheId) : that.cacheId == null && dependency.equals(that.dependency);
+    }
+
+    @Override
+    public int hashCode() {
+        return cacheId != null ? cacheId.hashCode() : dependency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return cacheId != null ? "clear " + cacheId : "invalidate " + dependency;
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.bus;
+
+import java.util.Collection;
+
+/**
+ * 二级缓存失效的广播通道
+ * 事务提交后，本节点清空的命名空间和失效的表通过它发布给其他节点；
+ * 收到其他节点的消息后交给 start() 时传入的监听器处理，处理在接收线程中异步进行，不阻塞查询
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * 开始接收其他节点发布的消息
+     */
+    void start(CacheInvalidationListener listener);
+
+    /**
+     * 发布一个事务中的所有失效，发送失败只记录日志，不影响已提交的事务
+     */
+    void publish(Collection<CacheInvalidation> invalidations);
+
+    void close();
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.bus;
+
+import java.util.Collections;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 把其他节点发布的失效应用到本节点的二级缓存
+ * 只操作本地缓存，不会再次发布
+ */
+public class ConfigurationCacheInvalidationListener implements CacheInvalidationListener {
+
+    private final Configuration configuration;
+
+    public ConfigurationCacheInvalidationListener(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void onInvalidation(CacheInvalidation invalidation) {
+        if (invalidation.isClear()) {
+            if (configuration.hasCache(invalidation.getCacheId())) {
+                configuration.getCache(invalidation.getCacheId()).clear();
+            }
+        } else if (configuration.isTableCacheInvalidation()) {
+            configuration.getCacheDependencyIndex().invalidate(Collections.singletonList(invalidation.getDependency()));
+        } else {
+            // 本节点未登记缓存项依赖的表，无法确定哪些缓存项受影响，只能全部清空
+            for (Cache cache : configuration.getCaches()) {
+                cache.clear();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.bus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 基于UDP的缓存失效广播
+ * 消息发给每个对端地址，对端地址可以是各节点的单播地址，也可以是一个组播组；
+ * 一个数据报中包含一个事务的多条失效，超过 MAX_PAYLOAD 时拆成多个数据报。
+ * UDP不保证送达，丢失的消息只能由缓存的过期策略（如flushInterval）兜底
+ */
+public class DatagramCacheInvalidationBus implements CacheInvalidationBus {
+
+    private static final Log log = LogFactory.getLog(DatagramCacheInvalidationBus.class);
+
+    private static final int MAGIC = 0x4D424349;
+    // 保持在常见的MTU以内，避免IP分片
+    private static final int MAX_PAYLOAD = 1400;
+    // MAGIC、节点id、失效条数
+    private static final int HEADER_SIZE = 24;
+
+    private final MulticastSocket socket;
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<>();
+    // 加入的组播组，单播时为null
+    private final SocketAddress group;
+    // 为null时使用系统默认的组播网卡
+    private final NetworkInterface networkInterface;
+    // 组播时本节点也会收到自己发出的消息，据此忽略
+    private final UUID nodeId = UUID.randomUUID();
+    private volatile Thread receiver;
+
+    /**
+     * 单播，在port上接收，向peers发送
+     *
+     * @param port 0表示随机端口，可通过 getLocalPort() 获取
+     */
+    public DatagramCacheInvalidationBus(int port, List<InetSocketAddress> peers) {
+        this(port, peers, null, null);
+    }
+
+    private DatagramCacheInvalidationBus(int port, List<InetSocketAddress> peers, SocketAddress group, NetworkInterface networkInterface) {
+        try {
+            this.socket = new MulticastSocket(port);
+            if (group != null) {
+                socket.joinGroup(group, networkInterface);
+            }
+        } catch (IOException e) {
+            throw new CacheException("Could not open cache invalidation socket on port " + port + ".  Cause: " + e, e);
+        }
+        this.group = group;
+        this.networkInterface = networkInterface;
+        this.peers.addAll(peers);
+    }
+
+    /**
+     * 组播，所有节点加入同一个组播组并使用相同的端口
+     */
+    public static DatagramCacheInvalidationBus multicast(InetAddress group, int port) {
+        return multicast(group, port, null);
+    }
+
+    /**
+     * 组播，在指定网卡上加入组播组
+     *
+     * @param networkInterface 为null时使用系统默认的组播网卡
+     */
+    public static DatagramCacheInvalidationBus multicast(InetAddress group, int port, NetworkInterface networkInterface) {
+        InetSocketAddress groupAddress = new InetSocketAddress(group, port);
+        return new DatagramCacheInvalidationBus(port, Collections.singletonList(groupAddress), groupAddress, networkInterface);
+    }
+
+    public void addPeer(InetSocketAddress peer) {
+        peers.add(peer);
+    }
+
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public synchronized void start(final CacheInvalidationListener listener) {
+        if (receiver != null) {
+            throw new IllegalStateException("Cache invalidation bus already started");
+        }
+        receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                receive(listener);
+            }
+        }, "mybatis-cache-invalidation-" + getLocalPort());
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    private void receive(CacheInvalidationListener listener) {
+        byte[] buffer = new byte[65535];
+        while (!socket.isClosed()) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                socket.receive(packet);
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    log.warn("Error receiving cache invalidation.  Cause: " + e);
+                }
+                continue;
+            }
+            try {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.getData(), packet.getOffset(), packet.getLength()));
+                if (in.readInt() != MAGIC) {
+                    continue;
+                }
+                long mostSigBits = in.readLong();
+                long leastSigBits = in.readLong();
+                if (mostSigBits == nodeId.getMostSignificantBits() && leastSigBits == nodeId.getLeastSignificantBits()) {
+                    continue;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    listener.onInvalidation(CacheInvalidation.readFrom(in));
+                }
+            } catch (Exception e) {
+                log.warn("Error applying cache invalidation from " + packet.getSocketAddress() + ".  Cause: " + e);
+            }
+        }
+    }
+
+    @Override
+    public void publish(Collection<CacheInvalidation> invalidations) {
+        if (invalidations.isEmpty() || peers.isEmpty()) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream packet = new ByteArrayOutputStream(MAX_PAYLOAD);
+            ByteArrayOutputStream entry = new ByteArrayOutputStream();
+            DataOutputStream entryOut = new DataOutputStream(entry);
+            int count = 0;
+            for (CacheInvalidation invalidation : invalidations) {
+                entry.reset();
+                invalidation.writeTo(entryOut);
+                if (count > 0 && HEADER_SIZE + packet.size() + entry.size() > MAX_PAYLOAD) {
+                    send(packet, count);
+                    packet.reset();
+                    count = 0;
+                }
+                entry.writeTo(packet);
+                count++;
+            }
+            send(packet, count);
+        } catch (IOException e) {
+            log.warn("Error publishing cache invalidations " + invalidations + ".  Cause: " + e);
+        }
+    }
+
+    private void send(ByteArrayOutputStream entries, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + entries.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeLong(nodeId.getMostSignificantBits());
+        out.writeLong(nodeId.getLeastSignificantBits());
+        out.writeInt(count);
+        entries.writeTo(out);
+        out.flush();
+        byte[] data = bytes.toByteArray();
+        for (InetSocketAddress peer : peers) {
+            socket.send(new DatagramPacket(data, data.length, peer));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (group != null) {
+            try {
+                socket.leaveGroup(group, networkInterface);
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        socket.close();
+        Thread thread = receiver;
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependencyIndex;
+
+/**
+ * 缓存装饰器 缓存项被移除时同步删除它在 CacheDependencyIndex 中的依赖
+ * 放在装饰器链的最底层，LRU/FIFO等淘汰、过期、Soft/Weak回收以及清空最终都会调用到这里
+ */
+public class DependencyTrackingCache implements Cache {
+
+    private final Cache delegate;
+
+    private final CacheDependencyIndex dependencyIndex;
+
+    public DependencyTrackingCache(Cache delegate, CacheDependencyIndex dependencyIndex) {
+        this.delegate = delegate;
+        this.dependencyIndex = dependencyIndex;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        delegate.putObject(key, value);
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Object value = delegate.removeObject(key);
+        dependencyIndex.forget(getId(), key);
+        return value;
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        dependencyIndex.forgetAll(getId());
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLoader;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+/**
+ * 缓存装饰器 每个缓存项单独过期
+ * 缓存项写入时按 timeToLive 计算过期时间，可用 timeToLiveJitter 随机提前一部分，避免同时写入的缓存项同时过期；
+ * 设置了 refreshAheadFactor 时，缓存项存活超过该比例后被读取，会在后台重新执行原查询刷新该缓存项，读取方仍得到当前值；
+ * 空结果（查无数据）可用 negativeTimeToLive 单独设置较短的存活时间，既避免反复查询不存在的数据，又能较快看到新插入的行
+ * <p>
+ * 在 &lt;cache&gt; 中通过 property 配置，配置了 timeToLive 或 negativeTimeToLive 时 CacheBuilder 自动添加该装饰器
+ */
+public class ExpiringCache implements Cache {
+
+    private static final Log log = LogFactory.getLog(ExpiringCache.class);
+
+    // 所有缓存共享的刷新线程池，队列满时放弃刷新，缓存项到期后按未命中处理
+    private static final ExecutorService refreshExecutor = createRefreshExecutor();
+
+    // TransactionalCache 提交时通过它把原查询传给 putObject()，缓存装饰器链的接口中没有这个参数
+    private static final ThreadLocal<CacheLoader> currentLoader = new ThreadLocal<>();
+
+    private final Cache delegate;
+
+    // 保护过期信息和对delegate的访问，刷新线程写回结果时同样需要持有
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // 缓存项的过期信息，值仍保存在delegate中
+    private final Map<Object, Entry> entries = new HashMap<>();
+
+    // 缓存项的存活时间，单位毫秒，0表示不过期
+    private long timeToLive;
+    // 空结果的存活时间，单位毫秒，0表示与 timeToLive 相同
+    private long negativeTimeToLive;
+    // 随机提前过期的最大比例，0~1
+    private double timeToLiveJitter;
+    // 缓存项存活超过该比例后被读取时触发后台刷新，0表示不刷新
+    private double refreshAheadFactor;
+
+    // clear()时递增，用于丢弃clear()之前开始的刷新
+    private long generation;
+    // 下次清理过期缓存项的时间，delegate自行淘汰的缓存项不会通知本装饰器，其过期信息也在清理时删除
+    private long nextPurge;
+
+    public ExpiringCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public long getNegativeTimeToLive() {
+        return negativeTimeToLive;
+    }
+
+    public void setNegativeTimeToLive(long negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    public double getTimeToLiveJitter() {
+        return timeToLiveJitter;
+    }
+
+    public void setTimeToLiveJitter(double timeToLiveJitter) {
+        this.timeToLiveJitter = timeToLiveJitter;
+    }
+
+    public double getRefreshAheadFactor() {
+        return refreshAheadFactor;
+    }
+
+    public void setRefreshAheadFactor(double refreshAheadFactor) {
+        this.refreshAheadFactor = refreshAheadFactor;
+    }
+
+    /**
+     * 写入缓存项，并记录重新加载它的方式
+     * 只有装饰器链中包含 ExpiringCache 且开启了刷新时 loader 才会被保留
+     */
+    public static void putObject(Cache cache, Object key, Object value, CacheLoader loader) {
+        currentLoader.set(loader);
+        try {
+            cache.putObject(key, value);
+        } finally {
+            currentLoader.remove();
+        }
+    }
+
+    /**
+     * 装饰器链中是否有开启了刷新的 ExpiringCache，没有时不需要为缓存项创建 CacheLoader
+     * 沿标准装饰器的 delegate 字段向下查找，自定义缓存实现按没有处理
+     */
+    public static boolean isRefreshAhead(Cache cache) {
+        while (cache != null) {
+            if (cache instanceof ExpiringCache) {
+                return ((ExpiringCache) cache).refreshAheadFactor > 0;
+            }
+            MetaObject metaCache = SystemMetaObject.forObject(cache);
+            if (!metaCache.hasGetter("delegate")) {
+                return false;
+            }
+            Object delegate = metaCache.getValue("delegate");
+            cache = delegate instanceof Cache ? (Cache) delegate : null;
+        }
+        return false;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        lock.lock();
+        try {
+            return delegate.getSize();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            purgeIfNeeded(now);
+            delegate.putObject(key, value);
+            entries.put(key, newEntry(now, value, refreshAheadFactor > 0 ? currentLoader.get() : null));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Entry entry;
+        Object value;
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now >= entry.expiresAt) {
+                entries.remove(key);
+                delegate.removeObject(key);
+                return null;
+            }
+            value = delegate.getObject(key);
+            if (value == null) {
+                entries.remove(key);
+                return null;
+            }
+            if (entry.loader == null || entry.refreshing || now < entry.refreshAt) {
+                return value;
+            }
+            entry.refreshing = true;
+        } finally {
+            lock.unlock();
+        }
+        scheduleRefresh(key, entry);
+        return value;
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+            return delegate.removeObject(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+            delegate.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    private Entry newEntry(long now, Object value, CacheLoader loader) {
+        // 空结果不做后台刷新，到期后重新查询即可
+        boolean negative = negativeTimeToLive > 0 && isNegative(value);
+        long ttl = negative ? negativeTimeToLive : timeToLive;
+        if (ttl <= 0) {
+            return new Entry(Long.MAX_VALUE, Long.MAX_VALUE, null, generation);
+        }
+        if (timeToLiveJitter > 0) {
+            ttl -= (long) (ttl * timeToLiveJitter * ThreadLocalRandom.current().nextDouble());
+        }
+        return new Entry(now + ttl, now + (long) (ttl * refreshAheadFactor), negative ? null : loader, generation);
+    }
+
+    // 查询结果是 List，查无数据时为空列表；null 是 TransactionalCache 为解锁 BlockingCache 写入的占位，不算空结果
+    private static boolean isNegative(Object value) {
+        return value instanceof Collection && ((Collection<?>) value).isEmpty();
+    }
+
+    private void scheduleRefresh(final Object key, final Entry entry) {
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    refresh(key, entry);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            lock.lock();
+            try {
+                entry.refreshing = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void refresh(Object key, Entry entry) {
+        Object value;
+        try {
+            value = entry.loader.load();
+        } catch (Exception e) {
+            log.warn("Error refreshing cache entry " + key + " of cache " + getId() + ".  Cause: " + e);
+            lock.lock();
+            try {
+                entry.refreshing = false;
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+        lock.lock();
+        try {
+            if (value == null) {
+                entry.refreshing = false;
+                return;
+            }
+            // 刷新期间缓存项被删除、替换或缓存被清空，说明数据已变化，丢弃刷新结果
+            if (entries.get(key) != entry || entry.generation != generation) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            delegate.putObject(key, value);
+            entries.put(key, newEntry(now, value, entry.loader));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 每隔一个存活周期删除一次已过期但未被读取的缓存项，保证过期信息不超过一个存活周期内写入的缓存项数
+    private void purgeIfNeeded(long now) {
+        if (now < nextPurge) {
+            return;
+        }
+        long interval = timeToLive > 0 && negativeTimeToLive > 0 ? Math.min(timeToLive, negativeTimeToLive) : Math.max(timeToLive, negativeTimeToLive);
+        if (interval <= 0) {
+            // 都不过期，不需要清理
+            nextPurge = Long.MAX_VALUE;
+            return;
+        }
+        nextPurge = now + interval;
+        Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Object, Entry> entry = it.next();
+            if (now >= entry.getValue().expiresAt) {
+                delegate.removeObject(entry.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    private static ExecutorService createRefreshExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(1024),
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "mybatis-cache-refresh-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class Entry {
+        final long expiresAt;
+        final long refreshAt;
+        final CacheLoader loader;
+        final long generation;
+        boolean refreshing;
+
+        Entry(long expiresAt, long refreshAt, CacheLoader loader, long generation) {
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+            this.loader = loader;
+            this.generation = generation;
+        }
+    }
+}
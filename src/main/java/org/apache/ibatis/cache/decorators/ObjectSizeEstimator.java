@@ -0,0 +1,160 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.executor.loader.WriteReplaceInterface;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+
+/**
+ * 估算缓存值占用的内存
+ * 按64位JVM开启指针压缩的对象布局粗略计算，结果对象通过 Reflector 的 getter 元数据遍历属性，
+ * 只用于缓存之间、缓存项之间的相对比较，不追求精确
+ */
+final class ObjectSizeEstimator {
+
+    private static final int OBJECT_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ARRAY_HEADER = 16;
+    // HashMap.Node 等集合内部节点
+    private static final int ENTRY = 32;
+    // 嵌套超过该深度的对象不再展开，按一个空对象计
+    private static final int MAX_DEPTH = 16;
+
+    private static final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+
+    private ObjectSizeEstimator() {
+        // Prevent Instantiation
+    }
+
+    public static long estimate(Object value) {
+        return estimate(value, new IdentityHashMap<Object, Boolean>(), 0);
+    }
+
+    private static long estimate(Object value, IdentityHashMap<Object, Boolean> visited, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        // 序列化缓存中保存的是字节数组，可以直接得到准确大小
+        if (value instanceof byte[]) {
+            return align(ARRAY_HEADER + ((byte[]) value).length);
+        }
+        if (value instanceof String) {
+            return align(OBJECT_HEADER + 8) + align(ARRAY_HEADER + ((String) value).length() * 2L);
+        }
+        if (value instanceof Boolean || value instanceof Byte || value instanceof Character
+                || value instanceof Short || value instanceof Integer || value instanceof Float) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof Long || value instanceof Double || value instanceof Date || value instanceof Enum) {
+            return align(OBJECT_HEADER + 8);
+        }
+        if (value instanceof BigInteger) {
+            return align(OBJECT_HEADER + 16) + align(ARRAY_HEADER + ((BigInteger) value).bitLength() / 8 + 4);
+        }
+        if (value instanceof BigDecimal) {
+            return align(OBJECT_HEADER + 24) + estimate(((BigDecimal) value).unscaledValue(), visited, depth);
+        }
+        // 共享的对象只计算一次
+        if (visited.put(value, Boolean.TRUE) != null) {
+            return 0;
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof Collection) {
+            long size = align(OBJECT_HEADER + 16) + align(ARRAY_HEADER + (long) ((Collection<?>) value).size() * REFERENCE);
+            for (Object element : (Collection<?>) value) {
+                size += estimate(element, visited, depth + 1);
+            }
+            return size;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            long size = align(OBJECT_HEADER + 32) + align(ARRAY_HEADER + (long) map.size() * REFERENCE) + (long) map.size() * ENTRY;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += estimate(entry.getKey(), visited, depth + 1);
+                size += estimate(entry.getValue(), visited, depth + 1);
+            }
+            return size;
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            if (type.getComponentType().isPrimitive()) {
+                return align(ARRAY_HEADER + (long) length * primitiveSize(type.getComponentType()));
+            }
+            long size = align(ARRAY_HEADER + (long) length * REFERENCE);
+            for (int i = 0; i < length; i++) {
+                size += estimate(Array.get(value, i), visited, depth + 1);
+            }
+            return size;
+        }
+        return estimateBean(value, visited, depth);
+    }
+
+    private static long estimateBean(Object value, IdentityHashMap<Object, Boolean> visited, int depth) {
+        Reflector reflector = reflectorFactory.findForClass(value.getClass());
+        String[] properties = reflector.getGetablePropertyNames();
+        long size = OBJECT_HEADER;
+        for (String property : properties) {
+            Class<?> type = reflector.getGetterType(property);
+            size += type.isPrimitive() ? primitiveSize(type) : REFERENCE;
+        }
+        size = align(size);
+        // 延迟加载的代理对象调用 getter 会触发加载，只计算对象本身
+        if (value instanceof WriteReplaceInterface) {
+            return size;
+        }
+        for (String property : properties) {
+            if (reflector.getGetterType(property).isPrimitive()) {
+                continue;
+            }
+            try {
+                size += estimate(reflector.getGetInvoker(property).invoke(value, null), visited, depth + 1);
+            } catch (Exception e) {
+                // 取不到的属性按空引用计算
+            }
+        }
+        return size;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
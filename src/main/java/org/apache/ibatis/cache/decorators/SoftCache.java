@@ -20,6 +20,7 @@ import java.lang.ref.SoftReference;
 import java.util.Deque;
 import java.util.LinkedList;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
 
@@ -33,6 +34,7 @@ import org.apache.ibatis.cache.Cache;
 public class SoftCache implements Cache {
 
     private final Deque<Object> hardLinksToAvoidGarbageCollection;
+    private final ReentrantLock hardLinksLock = new ReentrantLock();
 
     // 引用队列，用于记录已经被 GC 回收的缓存项所对应的 SoftEntry 对象
     private final ReferenceQueue<Object> queueOfGarbageCollectedEntries;
@@ -79,11 +81,14 @@ public class SoftCache implements Cache {
                 delegate.removeObject(key);
             } else {
                 // See #586 (and #335) modifications need more than a read lock
-                synchronized (hardLinksToAvoidGarbageCollection) {
+                hardLinksLock.lock();
+                try {
                     hardLinksToAvoidGarbageCollection.addFirst(result);
                     if (hardLinksToAvoidGarbageCollection.size() > numberOfHardLinks) {
                         hardLinksToAvoidGarbageCollection.removeLast();
                     }
+                } finally {
+                    hardLinksLock.unlock();
                 }
             }
         }
@@ -98,8 +103,11 @@ public class SoftCache implements Cache {
 
     @Override
     public void clear() {
-        synchronized (hardLinksToAvoidGarbageCollection) {
+        hardLinksLock.lock();
+        try {
             hardLinksToAvoidGarbageCollection.clear();
+        } finally {
+            hardLinksLock.unlock();
         }
         removeGarbageCollectedItems();
         delegate.clear();
@@ -15,13 +15,18 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependency;
+import org.apache.ibatis.cache.CacheDependencyIndex;
+import org.apache.ibatis.cache.CacheLoader;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -54,11 +59,27 @@ public class TransactionalCache implements Cache {
     // 记录缓存未命中的 CacheKey，一般是加了锁的缓存项，entriesToAddOnCommit集合可以看作entriesMissedlnCache集合子集
     private Set<Object> entriesMissedInCache;
 
+    // 开启表级缓存失效时，提交时登记缓存项依赖的表
+    private final CacheDependencyIndex dependencyIndex;
+
+    // entriesToAddOnCommit中各缓存项依赖的表
+    private Map<Object, Collection<CacheDependency>> entryDependencies;
+
+    // entriesToAddOnCommit中各缓存项的加载方式，供 ExpiringCache 提前刷新
+    private Map<Object, CacheLoader> entryLoaders;
+
     public TransactionalCache(Cache delegate) {
+        this(delegate, null);
+    }
+
+    public TransactionalCache(Cache delegate, CacheDependencyIndex dependencyIndex) {
         this.delegate = delegate;
+        this.dependencyIndex = dependencyIndex;
         this.clearOnCommit = false;
         this.entriesToAddOnCommit = new HashMap<>();
         this.entriesMissedInCache = new HashSet<>();
+        this.entryDependencies = new HashMap<>();
+        this.entryLoaders = new HashMap<>();
     }
 
     @Override
@@ -99,6 +120,56 @@ public class TransactionalCache implements Cache {
         entriesToAddOnCommit.put(key, object);
     }
 
+    /**
+     * 暂存缓存项及其依赖的表
+     */
+    public void putObject(Object key, Object object, Collection<CacheDependency> dependencies) {
+        putObject(key, object, dependencies, null);
+    }
+
+    /**
+     * 暂存缓存项、其依赖的表以及重新加载它的方式
+     */
+    public void putObject(Object key, Object object, Collection<CacheDependency> dependencies, CacheLoader loader) {
+        entriesToAddOnCommit.put(key, object);
+        if (dependencies == null) {
+            entryDependencies.remove(key);
+        } else {
+            entryDependencies.put(key, dependencies);
+        }
+        if (loader == null) {
+            entryLoaders.remove(key);
+        } else {
+            entryLoaders.put(key, loader);
+        }
+    }
+
+    /**
+     * 丢弃本事务中暂存的、依赖被写入的表的缓存项，它们是在写操作之前查出的
+     */
+    public void discard(Collection<CacheDependency> written) {
+        Iterator<Map.Entry<Object, Collection<CacheDependency>>> it = entryDependencies.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Object, Collection<CacheDependency>> entry = it.next();
+            if (isAffected(entry.getValue(), written)) {
+                entriesToAddOnCommit.remove(entry.getKey());
+                entryLoaders.remove(entry.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    public static boolean isAffected(Collection<CacheDependency> dependencies, Collection<CacheDependency> written) {
+        for (CacheDependency w : written) {
+            for (CacheDependency dependency : dependencies) {
+                if (w.covers(dependency)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public Object removeObject(Object key) {
         return null;
@@ -108,11 +179,24 @@ public class TransactionalCache implements Cache {
     public void clear() {
         clearOnCommit = true;
         entriesToAddOnCommit.clear();
+        entryDependencies.clear();
+        entryLoaders.clear();
+    }
+
+    /**
+     * 提交时是否会清空底层缓存
+     */
+    public boolean isClearOnCommit() {
+        return clearOnCommit;
     }
 
     public void commit() {
         if (clearOnCommit) {
             delegate.clear();
+            // 自定义缓存实现没有 DependencyTrackingCache，清空时在这里删除依赖
+            if (dependencyIndex != null) {
+                dependencyIndex.forgetAll(delegate.getId());
+            }
         }
         flushPendingEntries();
         reset();
@@ -127,11 +211,22 @@ public class TransactionalCache implements Cache {
         clearOnCommit = false;
         entriesToAddOnCommit.clear();
         entriesMissedInCache.clear();
+        entryDependencies.clear();
+        entryLoaders.clear();
     }
 
     private void flushPendingEntries() {
         for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-            delegate.putObject(entry.getKey(), entry.getValue());
+            CacheLoader loader = entryLoaders.get(entry.getKey());
+            if (loader == null) {
+                delegate.putObject(entry.getKey(), entry.getValue());
+            } else {
+                ExpiringCache.putObject(delegate, entry.getKey(), entry.getValue(), loader);
+            }
+            Collection<CacheDependency> dependencies = entryDependencies.get(entry.getKey());
+            if (dependencyIndex != null && dependencies != null) {
+                dependencyIndex.register(delegate, entry.getKey(), dependencies);
+            }
         }
         for (Object entry : entriesMissedInCache) {
             if (!entriesToAddOnCommit.containsKey(entry)) {
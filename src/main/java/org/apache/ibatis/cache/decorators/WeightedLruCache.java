@@ -0,0 +1,128 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+
+/**
+ * 缓存装饰器 按占用内存淘汰，最近最少使用的先删除
+ * 每个缓存项写入时估算其占用的内存，总量超过 maxWeight 或缓存项个数超过 size 时淘汰最久未使用的缓存项；
+ * 单个超过 maxWeight 的缓存项不会被缓存，避免少数大结果集挤掉所有缓存项
+ * <p>
+ * 使用 &lt;cache eviction="WEIGHTED"&gt;，通过 property 配置 maxWeight，单位字节
+ */
+public class WeightedLruCache implements Cache {
+
+    private final Cache delegate;
+
+    // 按访问顺序排列的 key -> 估算的占用字节数
+    private final LinkedHashMap<Object, Long> weights = new LinkedHashMap<>(16, .75F, true);
+
+    // 默认最多占用 32M
+    private long maxWeight = 32L * 1024 * 1024;
+    // 默认最多 1024 个缓存项，0表示只按内存淘汰
+    private int size = 1024;
+
+    private long totalWeight;
+
+    public WeightedLruCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getId() {
+        return delegate.getId();
+    }
+
+    @Override
+    public int getSize() {
+        return delegate.getSize();
+    }
+
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    /**
+     * 当前缓存项估算的总占用字节数
+     */
+    public long getWeight() {
+        return totalWeight;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        long weight = ObjectSizeEstimator.estimate(value);
+        if (weight > maxWeight) {
+            removeObject(key);
+            return;
+        }
+        delegate.putObject(key, value);
+        Long previous = weights.put(key, weight);
+        totalWeight += weight - (previous == null ? 0 : previous);
+        evictIfNeeded();
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        weights.get(key); // touch
+        return delegate.getObject(key);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Long weight = weights.remove(key);
+        if (weight != null) {
+            totalWeight -= weight;
+        }
+        return delegate.removeObject(key);
+    }
+
+    @Override
+    public void clear() {
+        weights.clear();
+        totalWeight = 0;
+        delegate.clear();
+    }
+
+    @Override
+    public ReadWriteLock getReadWriteLock() {
+        return null;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Object, Long>> it = weights.entrySet().iterator();
+        while ((totalWeight > maxWeight || (size > 0 && weights.size() > size)) && it.hasNext()) {
+            Map.Entry<Object, Long> eldest = it.next();
+            totalWeight -= eldest.getValue();
+            it.remove();
+            delegate.removeObject(eldest.getKey());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+/**
+ * 基于游标的查询结果发布者
+ * 第一次请求数据时执行查询，之后只在订阅者请求时从 ResultSet 中读取并映射相应数量的行，
+ * 数据发送完、出错或取消订阅时关闭游标；由 SqlSessionFactory 创建时每次订阅使用单独的会话，结束时一并关闭以释放连接
+ * <p>
+ * 数据在调用 request() 的线程中读取和发送，同一订阅的 request() 并发调用时由其中一个线程依次处理
+ */
+public class CursorPublisher<T> implements Publisher<T> {
+
+    private static final Log log = LogFactory.getLog(CursorPublisher.class);
+
+    // 二者只有一个不为null
+    private final SqlSessionFactory sqlSessionFactory;
+    private final SqlSession sqlSession;
+
+    private final String statement;
+    private final Object parameter;
+    private final RowBounds rowBounds;
+
+    private CursorPublisher(SqlSessionFactory sqlSessionFactory, SqlSession sqlSession, String statement, Object parameter, RowBounds rowBounds) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.sqlSession = sqlSession;
+        this.statement = statement;
+        this.parameter = parameter;
+        this.rowBounds = rowBounds == null ? RowBounds.DEFAULT : rowBounds;
+    }
+
+    /**
+     * 在已有会话上查询，结束时只关闭游标，会话和连接由调用方关闭
+     */
+    public static <T> CursorPublisher<T> of(SqlSession sqlSession, String statement, Object parameter, RowBounds rowBounds) {
+        return new CursorPublisher<>(null, sqlSession, statement, parameter, rowBounds);
+    }
+
+    /**
+     * 每次订阅打开一个新会话，结束时关闭会话，释放连接
+     */
+    public static <T> CursorPublisher<T> of(SqlSessionFactory sqlSessionFactory, String statement, Object parameter, RowBounds rowBounds) {
+        return new CursorPublisher<>(sqlSessionFactory, null, statement, parameter, rowBounds);
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        subscriber.onSubscribe(new CursorSubscription(subscriber));
+    }
+
+    private class CursorSubscription implements Subscription {
+
+        private final Subscriber<? super T> subscriber;
+
+        // 尚未满足的请求数量，Long.MAX_VALUE 表示不限
+        private final AtomicLong requested = new AtomicLong();
+        // 正在处理或等待处理的次数，保证同一时刻只有一个线程读取游标
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+
+        // 以下字段只在 drain() 中访问
+        private SqlSession session;
+        private Cursor<T> cursor;
+        private Iterator<T> iterator;
+        private boolean done;
+
+        CursorSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " items, the number of requested items must be positive");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    if (current == Long.MAX_VALUE) {
+                        break;
+                    }
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!requested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!done) {
+                    emit();
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emit() {
+            if (cancelled) {
+                finish();
+                return;
+            }
+            if (invalidRequest != null) {
+                finish();
+                subscriber.onError(invalidRequest);
+                return;
+            }
+            try {
+                if (iterator == null) {
+                    open();
+                }
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand) {
+                    if (cancelled) {
+                        finish();
+                        return;
+                    }
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                    subscriber.onNext(iterator.next());
+                    emitted++;
+                }
+                // 请求已满足时也检查是否已没有数据，不必等到下次请求才通知完成
+                if (!cancelled && !iterator.hasNext()) {
+                    finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                if (demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-emitted);
+                }
+            } catch (Throwable t) {
+                finish();
+                subscriber.onError(t);
+            }
+        }
+
+        private void open() {
+            if (sqlSessionFactory != null) {
+                session = sqlSessionFactory.openSession();
+                cursor = session.selectCursor(statement, parameter, rowBounds);
+            } else {
+                cursor = sqlSession.selectCursor(statement, parameter, rowBounds);
+            }
+            iterator = cursor.iterator();
+        }
+
+        // 关闭游标和本订阅打开的会话
+        private void finish() {
+            done = true;
+            if (cursor != null) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    log.debug("Error closing cursor of statement " + statement + ".  Cause: " + e);
+                }
+                cursor = null;
+            }
+            if (session != null) {
+                session.close();
+                session = null;
+            }
+            iterator = null;
+        }
+    }
+}
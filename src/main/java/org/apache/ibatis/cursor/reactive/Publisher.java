@@ -0,0 +1,30 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+/**
+ * 按需产生数据的发布者
+ * 与 Reactive Streams 的 org.reactivestreams.Publisher 和 JDK9 的 java.util.concurrent.Flow.Publisher 方法一致，
+ * 可以直接用适配器转换为两者
+ */
+public interface Publisher<T> {
+
+    /**
+     * 订阅数据，每次订阅都会单独执行一次查询
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+
+}
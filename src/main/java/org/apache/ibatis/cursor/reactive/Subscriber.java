@@ -0,0 +1,35 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+/**
+ * 数据的订阅者，与 Reactive Streams 的 org.reactivestreams.Subscriber 方法一致
+ */
+public interface Subscriber<T> {
+
+    // 订阅建立，之后通过 subscription 请求数据或取消
+    void onSubscribe(Subscription subscription);
+
+    // 一条数据，总数不会超过已请求的数量
+    void onNext(T item);
+
+    // 出错，之后不会再有任何通知
+    void onError(Throwable throwable);
+
+    // 数据已全部发送
+    void onComplete();
+
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cursor.reactive;
+
+/**
+ * 订阅关系，与 Reactive Streams 的 org.reactivestreams.Subscription 方法一致
+ */
+public interface Subscription {
+
+    // 再请求n条数据，n必须大于0
+    void request(long n);
+
+    // 取消订阅，释放查询占用的资源
+    void cancel();
+
+}
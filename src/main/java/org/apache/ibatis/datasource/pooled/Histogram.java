@@ -0,0 +1,53 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 固定分桶的直方图，用于统计等待队列长度和等待时间
+ * 本身不是线程安全的，由 PoolState 的锁保护
+ */
+class Histogram {
+
+    // 各个桶的上限（包含），最后一个桶收集超过最大上限的值
+    private final long[] bounds;
+    private final long[] counts;
+
+    Histogram(long... bounds) {
+        this.bounds = bounds;
+        this.counts = new long[bounds.length + 1];
+    }
+
+    void record(long value) {
+        int index = Arrays.binarySearch(bounds, value);
+        counts[index >= 0 ? index : -index - 1]++;
+    }
+
+    /**
+     * 桶上限 -> 落入该桶的次数，超过最大上限的桶以 Long.MAX_VALUE 为键
+     */
+    Map<Long, Long> snapshot() {
+        Map<Long, Long> snapshot = new LinkedHashMap<>();
+        for (int i = 0; i < bounds.length; i++) {
+            snapshot.put(bounds[i], counts[i]);
+        }
+        snapshot.put(Long.MAX_VALUE, counts[bounds.length]);
+        return snapshot;
+    }
+}
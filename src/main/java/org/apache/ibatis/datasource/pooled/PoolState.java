@@ -15,8 +15,13 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * 保存PooledConnection的状态
@@ -27,10 +32,16 @@ public class PoolState {
 
     protected PooledDataSource dataSource;
 
+    // 保护连接集合和统计数据，等待空闲连接时在 condition 上等待；不使用对象监视器，虚拟线程等待连接时不会占住载体线程
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final Condition condition = lock.newCondition();
+
     // 空闲连接
     protected final List<PooledConnection> idleConnections = new ArrayList<>();
     // 活跃连接
     protected final List<PooledConnection> activeConnections = new ArrayList<>();
+    // 公平模式下按到达顺序排队等待连接的线程
+    protected final Deque<Waiter> waiters = new ArrayDeque<>();
 
     // 请求数据库连接的次数
     protected long requestCount = 0;
@@ -48,55 +59,176 @@ public class PoolState {
     protected long hadToWaitCount = 0;
     // 无效的连接数
     protected long badConnectionCount = 0;
+    // 因超过最长存活时间或空闲超时而关闭的连接数
+    protected long retiredConnectionCount = 0;
+    // 当前正在等待连接的线程数
+    protected int waitingCount = 0;
+    // 等待超过 poolConnectionTimeout 而失败的请求数
+    protected long connectionTimeoutCount = 0;
+    // 借出超过 poolLeakDetectionThreshold 而被报告为疑似泄漏的连接数
+    protected long leakedConnectionCount = 0;
+    // 开始等待时等待线程数的分布
+    protected final Histogram queueLengthHistogram = new Histogram(1, 2, 4, 8, 16, 32, 64, 128, 256);
+    // 每次请求等待时长（毫秒）的分布
+    protected final Histogram waitTimeHistogram = new Histogram(1, 5, 10, 50, 100, 500, 1000, 5000, 10000);
 
     public PoolState(PooledDataSource dataSource) {
         this.dataSource = dataSource;
     }
 
-    public synchronized long getRequestCount() {
-        return requestCount;
+    public long getRequestCount() {
+        lock.lock();
+        try {
+            return requestCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAverageRequestTime() {
+        lock.lock();
+        try {
+            return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAverageWaitTime() {
+        lock.lock();
+        try {
+            return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageRequestTime() {
-        return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+    public long getHadToWaitCount() {
+        lock.lock();
+        try {
+            return hadToWaitCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageWaitTime() {
-        return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+    public long getBadConnectionCount() {
+        lock.lock();
+        try {
+            return badConnectionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    public long getRetiredConnectionCount() {
+        lock.lock();
+        try {
+            return retiredConnectionCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getHadToWaitCount() {
-        return hadToWaitCount;
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waitingCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getBadConnectionCount() {
-        return badConnectionCount;
+    public long getConnectionTimeoutCount() {
+        lock.lock();
+        try {
+            return connectionTimeoutCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getClaimedOverdueConnectionCount() {
-        return claimedOverdueConnectionCount;
+    public long getLeakedConnectionCount() {
+        lock.lock();
+        try {
+            return leakedConnectionCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageOverdueCheckoutTime() {
-        return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+    /**
+     * 等待线程数的分布，桶上限 -> 次数
+     */
+    public Map<Long, Long> getQueueLengthHistogram() {
+        lock.lock();
+        try {
+            return queueLengthHistogram.snapshot();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized long getAverageCheckoutTime() {
-        return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+    /**
+     * 等待时长（毫秒）的分布，桶上限 -> 次数
+     */
+    public Map<Long, Long> getWaitTimeHistogram() {
+        lock.lock();
+        try {
+            return waitTimeHistogram.snapshot();
+        } finally {
+            lock.unlock();
+        }
     }
 
+    public long getClaimedOverdueConnectionCount() {
+        lock.lock();
+        try {
+            return claimedOverdueConnectionCount;
+        } finally {
+            lock.unlock();
+        }
+    }
 
-    public synchronized int getIdleConnectionCount() {
-        return idleConnections.size();
+    public long getAverageOverdueCheckoutTime() {
+        lock.lock();
+        try {
+            return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    public synchronized int getActiveConnectionCount() {
-        return activeConnections.size();
+    public long getAverageCheckoutTime() {
+        lock.lock();
+        try {
+            return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    public int getIdleConnectionCount() {
+        lock.lock();
+        try {
+            return idleConnections.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getActiveConnectionCount() {
+        lock.lock();
+        try {
+            return activeConnections.size();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("\n===CONFINGURATION==============================================");
         builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -110,6 +242,13 @@ public class PoolState {
         builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
         builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
         builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+        builder.append("\n poolMaintenanceInterval        ").append(dataSource.poolMaintenanceInterval);
+        builder.append("\n poolMinimumIdleConnections     ").append(dataSource.poolMinimumIdleConnections);
+        builder.append("\n poolMaximumLifetime            ").append(dataSource.poolMaximumLifetime);
+        builder.append("\n poolIdleTimeout                ").append(dataSource.poolIdleTimeout);
+        builder.append("\n poolFairQueueing               ").append(dataSource.poolFairQueueing);
+        builder.append("\n poolConnectionTimeout          ").append(dataSource.poolConnectionTimeout);
+        builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
         builder.append("\n ---STATUS-----------------------------------------------------");
         builder.append("\n activeConnections              ").append(getActiveConnectionCount());
         builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -121,8 +260,26 @@ public class PoolState {
         builder.append("\n hadToWait                      ").append(getHadToWaitCount());
         builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
         builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+        builder.append("\n retiredConnectionCount         ").append(getRetiredConnectionCount());
+        builder.append("\n waiting                        ").append(getWaitingCount());
+        builder.append("\n connectionTimeoutCount         ").append(getConnectionTimeoutCount());
+        builder.append("\n leakedConnectionCount          ").append(getLeakedConnectionCount());
+        builder.append("\n queueLengthHistogram           ").append(getQueueLengthHistogram());
+        builder.append("\n waitTimeHistogram              ").append(getWaitTimeHistogram());
         builder.append("\n===============================================================");
         return builder.toString();
     }
 
+    /**
+     * 公平模式下排队的线程，归还的连接直接放入 connection 并唤醒该线程
+     */
+    static class Waiter {
+        final Condition condition;
+        PooledConnection connection;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
 }
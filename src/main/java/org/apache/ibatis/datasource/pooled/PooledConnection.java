@@ -46,6 +46,10 @@ class PooledConnection implements InvocationHandler {
 
     // 从连接池中取出该连接的时间戳
     private long checkoutTimestamp;
+    // 取出该连接时的调用栈，仅在开启泄漏检测时记录
+    private Throwable checkoutTrace;
+    // 是否已报告过疑似泄漏
+    private boolean leakReported;
     // 该连接创建的时间戳
     private long createdTimestamp;
     // 最后一次被使用的时间戳
@@ -204,6 +208,32 @@ class PooledConnection implements InvocationHandler {
         this.checkoutTimestamp = timestamp;
     }
 
+    /*
+     * Getter for the stack trace captured when this connection was checked out
+     *
+     * @return the stack trace, or null if leak detection is disabled
+     */
+    public Throwable getCheckoutTrace() {
+        return checkoutTrace;
+    }
+
+    /*
+     * Setter for the stack trace captured when this connection was checked out
+     *
+     * @param checkoutTrace the stack trace
+     */
+    public void setCheckoutTrace(Throwable checkoutTrace) {
+        this.checkoutTrace = checkoutTrace;
+    }
+
+    public boolean isLeakReported() {
+        return leakReported;
+    }
+
+    public void setLeakReported(boolean leakReported) {
+        this.leakReported = leakReported;
+    }
+
     /*
      * Getter for the time that this connection has been checked out
      *
@@ -15,19 +15,32 @@
  */
 package org.apache.ibatis.datasource.pooled;
 
+import java.io.Closeable;
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
 
+import org.apache.ibatis.datasource.pooled.PoolState.Waiter;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -38,7 +51,7 @@ import org.apache.ibatis.logging.LogFactory;
  *
  * @author Clinton Begin
  */
-public class PooledDataSource implements DataSource {
+public class PooledDataSource implements DataSource, Closeable {
 
     private static final Log log = LogFactory.getLog(PooledDataSource.class);
 
@@ -62,6 +75,29 @@ public class PooledDataSource implements DataSource {
     protected boolean poolPingEnabled;
     // 当连接超过下配置的毫秒未使用时，会发送一次测试 SQL 语句，检测连接是否正常
     protected int poolPingConnectionsNotUsedFor;
+    // 后台维护线程的执行间隔（毫秒），0表示不启用；启用后借出、归还连接时不再发送测试 SQL 语句
+    protected int poolMaintenanceInterval;
+    // 维护线程预先创建并保持的最少空闲连接数
+    protected int poolMinimumIdleConnections;
+    // 连接的最长存活时间（毫秒），超过后不再放回连接池，0表示不限制
+    protected int poolMaximumLifetime;
+    // 空闲连接超过该时长（毫秒）未被使用则关闭，但至少保留 poolMinimumIdleConnections 个，0表示不限制
+    protected int poolIdleTimeout;
+    // 维护线程调用 Connection.isValid() 的超时时间（秒）
+    protected int poolValidationTimeout = 5;
+    // 公平模式：等待连接的线程按到达顺序排队，归还的连接直接交给队首线程，且不再强行回收超时未归还的连接
+    protected boolean poolFairQueueing;
+    // 获取连接的最长等待时间（毫秒），超过后抛出 SQLTimeoutException，0表示不限制
+    protected int poolConnectionTimeout;
+    // 连接借出超过该时长（毫秒）仍未归还时，打印借出连接时的调用栈，0表示不检测
+    protected int poolLeakDetectionThreshold;
+    // 已交给等待线程但尚未被其取走的连接数，这些连接不在活跃集合中，却占用活跃连接的名额
+    private int pendingHandoffs;
+    // 执行维护任务的单线程调度器，由 setPoolMaintenanceInterval 启动，close() 时停止
+    private ScheduledExecutorService maintenanceExecutor;
+    private ScheduledFuture<?> maintenanceFuture;
+    // 每次 forceCloseAll 时递增，维护线程据此丢弃在锁外校验、创建期间连接池已被重置的连接
+    private int poolGeneration;
     // 根据数据库的URL、用户名和密码生成的一个hash值，该哈希值用于标志着当前的连接池
     private int expectedConnectionTypeCode;
 
@@ -230,6 +266,93 @@ public class PooledDataSource implements DataSource {
         forceCloseAll();
     }
 
+    /*
+     * Runs pool maintenance (validation, retirement and pre-filling of idle
+     * connections) in a background thread every this many milliseconds.
+     * A value of 0 disables the maintenance thread.
+     *
+     * @param milliseconds the delay between two maintenance runs
+     */
+    public void setPoolMaintenanceInterval(int milliseconds) {
+        this.poolMaintenanceInterval = milliseconds;
+        forceCloseAll();
+        scheduleMaintenance();
+    }
+
+    /*
+     * The number of idle connections the maintenance thread keeps open
+     *
+     * @param poolMinimumIdleConnections The minimum number of idle connections
+     */
+    public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+        this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+        forceCloseAll();
+    }
+
+    /*
+     * The maximum time a connection is kept open, 0 means no limit
+     *
+     * @param milliseconds The maximum lifetime
+     */
+    public void setPoolMaximumLifetime(int milliseconds) {
+        this.poolMaximumLifetime = milliseconds;
+        forceCloseAll();
+    }
+
+    /*
+     * The time an idle connection may stay unused before the maintenance
+     * thread closes it, 0 means no limit
+     *
+     * @param milliseconds The idle timeout
+     */
+    public void setPoolIdleTimeout(int milliseconds) {
+        this.poolIdleTimeout = milliseconds;
+        forceCloseAll();
+    }
+
+    /*
+     * The timeout passed to Connection.isValid() by the maintenance thread
+     *
+     * @param seconds The validation timeout
+     */
+    public void setPoolValidationTimeout(int seconds) {
+        this.poolValidationTimeout = seconds;
+        forceCloseAll();
+    }
+
+    /*
+     * Hands connections to waiting threads in strict arrival order and never
+     * reclaims overdue connections from other threads.
+     *
+     * @param poolFairQueueing True to enable fair queueing
+     */
+    public void setPoolFairQueueing(boolean poolFairQueueing) {
+        this.poolFairQueueing = poolFairQueueing;
+        forceCloseAll();
+    }
+
+    /*
+     * The maximum time to wait for a connection before an SQLTimeoutException
+     * is thrown, 0 means no limit
+     *
+     * @param milliseconds The connection timeout
+     */
+    public void setPoolConnectionTimeout(int milliseconds) {
+        this.poolConnectionTimeout = milliseconds;
+        forceCloseAll();
+    }
+
+    /*
+     * Logs the stack that checked out a connection once it has been held for
+     * this many milliseconds, 0 disables leak detection
+     *
+     * @param milliseconds The leak detection threshold
+     */
+    public void setPoolLeakDetectionThreshold(int milliseconds) {
+        this.poolLeakDetectionThreshold = milliseconds;
+        forceCloseAll();
+    }
+
     public String getDriver() {
         return dataSource.getDriver();
     }
@@ -286,13 +409,47 @@ public class PooledDataSource implements DataSource {
         return poolPingConnectionsNotUsedFor;
     }
 
+    public int getPoolMaintenanceInterval() {
+        return poolMaintenanceInterval;
+    }
+
+    public int getPoolMinimumIdleConnections() {
+        return poolMinimumIdleConnections;
+    }
+
+    public int getPoolMaximumLifetime() {
+        return poolMaximumLifetime;
+    }
+
+    public int getPoolIdleTimeout() {
+        return poolIdleTimeout;
+    }
+
+    public int getPoolValidationTimeout() {
+        return poolValidationTimeout;
+    }
+
+    public boolean isPoolFairQueueing() {
+        return poolFairQueueing;
+    }
+
+    public int getPoolConnectionTimeout() {
+        return poolConnectionTimeout;
+    }
+
+    public int getPoolLeakDetectionThreshold() {
+        return poolLeakDetectionThreshold;
+    }
+
     /*
      * 当修改本对象字段时，如数据库URL、用户名、密码、autoCornmit等， 都会调用此方法将所有数据库连接关闭，
      * 同时也会将所有PooledConnection对象都设置为无效，清空当前activeConnections和idleConnections集合
      * Closes all active and idle connections in the pool
      */
     public void forceCloseAll() {
-        synchronized (state) {
+        state.lock.lock();
+        try {
+            poolGeneration++;
             expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
             for (int i = state.activeConnections.size(); i > 0; i--) {
                 try {
@@ -322,6 +479,9 @@ public class PooledDataSource implements DataSource {
                     // ignore
                 }
             }
+            signalWaiters();
+        } finally {
+            state.lock.unlock();
         }
         if (log.isDebugEnabled()) {
             log.debug("PooledDataSource forcefully closed/removed all connections.");
@@ -341,29 +501,39 @@ public class PooledDataSource implements DataSource {
      */
     protected void pushConnection(PooledConnection conn) throws SQLException {
 
-        synchronized (state) {
+        state.lock.lock();
+        try {
             // 从活跃集合中移出
             state.activeConnections.remove(conn);
 
             /// 若该连接有效
             if (conn.isValid()) {
 
-                /// 若空闲连接数未达上限，则加入空闲
-                if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+                boolean expired = isExpired(conn);
+                boolean reusable = !expired && conn.getConnectionTypeCode() == expectedConnectionTypeCode;
+                boolean waiting = poolFairQueueing && !state.waiters.isEmpty();
+                /// 若有线程排队或空闲连接数未达上限，且未超过最长存活时间，则交给排队线程或加入空闲
+                if (reusable && (waiting || state.idleConnections.size() < poolMaximumIdleConnections)) {
                     state.accumulatedCheckoutTime += conn.getCheckoutTime();
                     if (!conn.getRealConnection().getAutoCommit()) {
                         conn.getRealConnection().rollback();
                     }
 
                     PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
-                    state.idleConnections.add(newConn);
                     newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
                     newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
                     conn.invalidate();
-                    if (log.isDebugEnabled()) {
-                        log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+                    if (handOff(newConn)) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Handed connection " + newConn.getRealHashCode() + " to a waiting thread.");
+                        }
+                    } else {
+                        state.idleConnections.add(newConn);
+                        if (log.isDebugEnabled()) {
+                            log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
+                        }
+                        signalWaiters();
                     }
-                    state.notifyAll();
                 }
                 /// 若空闲连接数已达上限，则将该连接标记为无效
                 else {
@@ -376,6 +546,11 @@ public class PooledDataSource implements DataSource {
                         log.debug("Closed connection " + conn.getRealHashCode() + ".");
                     }
                     conn.invalidate();
+                    if (expired) {
+                        state.retiredConnectionCount++;
+                    }
+                    // 腾出了活跃连接的名额
+                    signalWaiters();
                 }
             } else {
                 if (log.isDebugEnabled()) {
@@ -383,7 +558,10 @@ public class PooledDataSource implements DataSource {
                 }
                 // 统计无效 PooledConnection 对象个数
                 state.badConnectionCount++;
+                signalWaiters();
             }
+        } finally {
+            state.lock.unlock();
         }
     }
 
@@ -397,115 +575,140 @@ public class PooledDataSource implements DataSource {
         long t = System.currentTimeMillis();
         int localBadConnectionCount = 0;
 
-        while (conn == null) {
-
-            synchronized (state) {
+        try {
+            while (conn == null) {
 
-                if (!state.idleConnections.isEmpty()) {
-                    // Pool has available connection 获取第一个连接
-                    conn = state.idleConnections.remove(0);
-                    if (log.isDebugEnabled()) {
-                        log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
-                    }
-                }
-                /// 没有空闲连接
-                else {
+                state.lock.lock();
+                try {
 
-                    ///  活跃连接未达到最大值，则创建新连接
-                    if (state.activeConnections.size() < poolMaximumActiveConnections) {
-                        // Can create new connection
-                        conn = new PooledConnection(dataSource.getConnection(), this);
+                    /// 公平模式，按到达顺序排队获取连接
+                    if (poolFairQueueing) {
+                        conn = takeConnectionFairly(t);
+                    } else if (!state.idleConnections.isEmpty()) {
+                        // Pool has available connection 获取第一个连接
+                        conn = state.idleConnections.remove(0);
                         if (log.isDebugEnabled()) {
-                            log.debug("Created connection " + conn.getRealHashCode() + ".");
+                            log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
                         }
                     }
-                    /// 活跃连接达到最大值，则不能创建新连接
+                    /// 没有空闲连接
                     else {
-                        // 获取最早创建的连接
-                        PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-                        long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-
-                        /// 如果该连接已超时，则处理后重用
-                        if (longestCheckoutTime > poolMaximumCheckoutTime) {
-                            // Can claim overdue connection
-                            state.claimedOverdueConnectionCount++;
-                            state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-                            state.accumulatedCheckoutTime += longestCheckoutTime;
-                            // 移出超时
-                            state.activeConnections.remove(oldestActiveConnection);
-                            if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-                                try {
-                                    // 回滚事务
-                                    oldestActiveConnection.getRealConnection().rollback();
-                                } catch (SQLException e) {
-                                    log.debug("Bad connection. Could not roll back");
-                                }
-                            }
 
-                            // 重用最早连接
-                            conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-                            conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
-                            conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
-                            oldestActiveConnection.invalidate();
+                        ///  活跃连接未达到最大值，则创建新连接
+                        if (state.activeConnections.size() < poolMaximumActiveConnections) {
+                            // Can create new connection
+                            conn = new PooledConnection(dataSource.getConnection(), this);
                             if (log.isDebugEnabled()) {
-                                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+                                log.debug("Created connection " + conn.getRealHashCode() + ".");
                             }
                         }
-                        /// 如果该连接未超时，则等待
+                        /// 活跃连接达到最大值，则不能创建新连接
                         else {
-                            // Must wait
-                            try {
-                                if (!countedWait) {
-                                    state.hadToWaitCount++;
-                                    countedWait = true;
+                            // 获取最早创建的连接
+                            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
+                            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+
+                            /// 如果该连接已超时，则处理后重用
+                            if (longestCheckoutTime > poolMaximumCheckoutTime) {
+                                // Can claim overdue connection
+                                state.claimedOverdueConnectionCount++;
+                                state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
+                                state.accumulatedCheckoutTime += longestCheckoutTime;
+                                // 移出超时
+                                state.activeConnections.remove(oldestActiveConnection);
+                                if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
+                                    try {
+                                        // 回滚事务
+                                        oldestActiveConnection.getRealConnection().rollback();
+                                    } catch (SQLException e) {
+                                        log.debug("Bad connection. Could not roll back");
+                                    }
                                 }
+
+                                // 重用最早连接
+                                conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
+                                conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
+                                conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
+                                oldestActiveConnection.invalidate();
                                 if (log.isDebugEnabled()) {
-                                    log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+                                    log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+                                }
+                            }
+                            /// 如果该连接未超时，则等待
+                            else {
+                                // Must wait
+                                try {
+                                    if (!countedWait) {
+                                        beginWait();
+                                        countedWait = true;
+                                    }
+                                    reportLeakedConnections();
+                                    long timeToWait = poolTimeToWait;
+                                    if (poolConnectionTimeout > 0) {
+                                        timeToWait = Math.min(timeToWait, remainingConnectionTimeout(t));
+                                    }
+                                    if (log.isDebugEnabled()) {
+                                        log.debug("Waiting as long as " + timeToWait + " milliseconds for connection.");
+                                    }
+                                    long wt = System.currentTimeMillis();
+                                    state.condition.await(timeToWait, TimeUnit.MILLISECONDS);
+                                    // 统计累计等待时间
+                                    state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+                                } catch (InterruptedException e) {
+                                    break;
                                 }
-                                long wt = System.currentTimeMillis();
-                                state.wait(poolTimeToWait);
-                                // 统计累计等待时间
-                                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-                            } catch (InterruptedException e) {
-                                break;
                             }
                         }
                     }
-                }
 
 
-                if (conn != null) {
+                    if (conn != null) {
 
-                    /// 若连接有效，则加入活跃
-                    if (conn.isValid()) {
-                        if (!conn.getRealConnection().getAutoCommit()) {
-                            conn.getRealConnection().rollback();
-                        }
-                        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
-                        conn.setCheckoutTimestamp(System.currentTimeMillis());
-                        conn.setLastUsedTimestamp(System.currentTimeMillis());
-                        state.activeConnections.add(conn);
-                        state.requestCount++;
-                        state.accumulatedRequestTime += System.currentTimeMillis() - t;
-                    }
-                    /// 若连接无效，则抛出异常
-                    else {
-                        if (log.isDebugEnabled()) {
-                            log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                        /// 若连接有效，则加入活跃
+                        if (conn.isValid()) {
+                            if (!conn.getRealConnection().getAutoCommit()) {
+                                conn.getRealConnection().rollback();
+                            }
+                            conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+                            conn.setCheckoutTimestamp(System.currentTimeMillis());
+                            conn.setLastUsedTimestamp(System.currentTimeMillis());
+                            if (poolLeakDetectionThreshold > 0) {
+                                conn.setCheckoutTrace(new Throwable("Connection checked out"));
+                            }
+                            state.activeConnections.add(conn);
+                            state.requestCount++;
+                            state.accumulatedRequestTime += System.currentTimeMillis() - t;
                         }
-                        state.badConnectionCount++;
-                        localBadConnectionCount++;
-                        conn = null;
-                        if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
+                        /// 若连接无效，则抛出异常
+                        else {
                             if (log.isDebugEnabled()) {
-                                log.debug("PooledDataSource: Could not get a good connection to the database.");
+                                log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+                            }
+                            state.badConnectionCount++;
+                            localBadConnectionCount++;
+                            conn = null;
+                            if (localBadConnectionCount > (poolMaximumIdleConnections + 3)) {
+                                if (log.isDebugEnabled()) {
+                                    log.debug("PooledDataSource: Could not get a good connection to the database.");
+                                }
+                                throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
                             }
-                            throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
                         }
                     }
+                } finally {
+                    state.lock.unlock();
                 }
-            }
 
+            }
+        } finally {
+            if (countedWait) {
+                state.lock.lock();
+                try {
+                    endWait(t);
+                } finally {
+                    state.lock.unlock();
+                }
+            }
         }
 
         if (conn == null) {
@@ -518,6 +721,192 @@ public class PooledDataSource implements DataSource {
         return conn;
     }
 
+    /**
+     * 公平模式下获取连接，需持有 state.lock
+     * 没有线程排队时直接取空闲连接或创建新连接，否则排到队尾，
+     * 等待归还的连接直接交到手中，或轮到自己时再取空闲连接、创建新连接；不会回收其他线程借出的连接
+     */
+    private PooledConnection takeConnectionFairly(long t) throws SQLException {
+        if (state.waiters.isEmpty()) {
+            PooledConnection conn = takeIdleOrNewConnection();
+            if (conn != null) {
+                return conn;
+            }
+        }
+        Waiter waiter = new Waiter(state.lock.newCondition());
+        state.waiters.addLast(waiter);
+        beginWait();
+        long wt = System.currentTimeMillis();
+        try {
+            while (true) {
+                if (waiter.connection != null) {
+                    PooledConnection conn = waiter.connection;
+                    waiter.connection = null;
+                    pendingHandoffs--;
+                    if (log.isDebugEnabled()) {
+                        log.debug("Received connection " + conn.getRealHashCode() + " from the pool.");
+                    }
+                    return conn;
+                }
+                if (state.waiters.peekFirst() == waiter) {
+                    PooledConnection conn = takeIdleOrNewConnection();
+                    if (conn != null) {
+                        return conn;
+                    }
+                }
+                long timeToWait = poolTimeToWait;
+                if (poolConnectionTimeout > 0) {
+                    timeToWait = Math.min(timeToWait, remainingConnectionTimeout(t));
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Waiting in line as long as " + timeToWait + " milliseconds for connection.");
+                }
+                try {
+                    if (!waiter.condition.await(timeToWait, TimeUnit.MILLISECONDS)) {
+                        reportLeakedConnections();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("PooledDataSource: Interrupted while waiting for a connection.", e);
+                }
+            }
+        } finally {
+            state.waiters.remove(waiter);
+            state.accumulatedWaitTime += System.currentTimeMillis() - wt;
+            endWait(wt);
+            if (waiter.connection != null) {
+                // 连接已交到手中，但在取走之前被中断，不能丢失这个连接
+                PooledConnection conn = waiter.connection;
+                waiter.connection = null;
+                pendingHandoffs--;
+                releaseUnclaimedConnection(conn);
+            } else {
+                // 轮到下一个线程，让它重新检查是否有可用连接
+                Waiter next = state.waiters.peekFirst();
+                if (next != null) {
+                    next.condition.signal();
+                }
+            }
+        }
+    }
+
+    /**
+     * 交给等待线程却没有被取走的连接，转交下一个等待线程，或放回空闲列表，需持有 state.lock
+     */
+    private void releaseUnclaimedConnection(PooledConnection conn) {
+        if (handOff(conn)) {
+            return;
+        }
+        if (state.idleConnections.size() < poolMaximumIdleConnections) {
+            state.idleConnections.add(conn);
+            if (log.isDebugEnabled()) {
+                log.debug("Returned unclaimed connection " + conn.getRealHashCode() + " to pool.");
+            }
+        } else {
+            closeQuietly(conn);
+        }
+        signalWaiters();
+    }
+
+    // 需持有 state.lock
+    private PooledConnection takeIdleOrNewConnection() throws SQLException {
+        if (!state.idleConnections.isEmpty()) {
+            PooledConnection conn = state.idleConnections.remove(0);
+            if (log.isDebugEnabled()) {
+                log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+            }
+            return conn;
+        }
+        if (state.activeConnections.size() + pendingHandoffs < poolMaximumActiveConnections) {
+            PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+            if (log.isDebugEnabled()) {
+                log.debug("Created connection " + conn.getRealHashCode() + ".");
+            }
+            return conn;
+        }
+        return null;
+    }
+
+    /**
+     * 公平模式下把归还的连接直接交给排在最前面的线程，需持有 state.lock
+     */
+    private boolean handOff(PooledConnection conn) {
+        if (!poolFairQueueing) {
+            return false;
+        }
+        Waiter waiter = state.waiters.pollFirst();
+        if (waiter == null) {
+            return false;
+        }
+        waiter.connection = conn;
+        pendingHandoffs++;
+        waiter.condition.signal();
+        return true;
+    }
+
+    // 唤醒等待连接的线程，需持有 state.lock
+    private void signalWaiters() {
+        state.condition.signalAll();
+        Waiter first = state.waiters.peekFirst();
+        if (first != null) {
+            first.condition.signal();
+        }
+    }
+
+    // 剩余的获取连接等待时间，已超时则抛出异常
+    private long remainingConnectionTimeout(long t) throws SQLTimeoutException {
+        long remaining = poolConnectionTimeout - (System.currentTimeMillis() - t);
+        if (remaining <= 0) {
+            state.connectionTimeoutCount++;
+            String message = "PooledDataSource: Timed out after " + poolConnectionTimeout + " milliseconds waiting for a connection"
+                    + " (active " + state.activeConnections.size() + ", idle " + state.idleConnections.size()
+                    + ", waiting " + state.waitingCount + ").";
+            if (log.isDebugEnabled()) {
+                log.debug(message);
+            }
+            throw new SQLTimeoutException(message);
+        }
+        return remaining;
+    }
+
+    // 需持有 state.lock
+    private void beginWait() {
+        state.hadToWaitCount++;
+        state.waitingCount++;
+        state.queueLengthHistogram.record(state.waitingCount);
+    }
+
+    // 需持有 state.lock
+    private void endWait(long startedAt) {
+        state.waitingCount--;
+        state.waitTimeHistogram.record(System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * 打印借出时间超过 poolLeakDetectionThreshold 的连接的借出调用栈，每个连接只报告一次，需持有 state.lock
+     */
+    private void reportLeakedConnections() {
+        if (poolLeakDetectionThreshold <= 0) {
+            return;
+        }
+        for (PooledConnection conn : state.activeConnections) {
+            if (!conn.isLeakReported() && conn.getCheckoutTime() > poolLeakDetectionThreshold) {
+                conn.setLeakReported(true);
+                state.leakedConnectionCount++;
+                StringBuilder message = new StringBuilder();
+                message.append("Connection ").append(conn.getRealHashCode()).append(" has been checked out for ")
+                        .append(conn.getCheckoutTime()).append(" milliseconds, possible leak.");
+                if (conn.getCheckoutTrace() != null) {
+                    message.append(" Checked out at:");
+                    for (StackTraceElement element : conn.getCheckoutTrace().getStackTrace()) {
+                        message.append("\n\tat ").append(element);
+                    }
+                }
+                log.warn(message.toString());
+            }
+        }
+    }
+
     /*
      * 测试数据库连接是否有效
      * Method to check to see if a connection is still usable
@@ -539,7 +928,8 @@ public class PooledDataSource implements DataSource {
             result = false;
         }
 
-        if (result) {
+        // 启用维护线程后由其在后台校验空闲连接，借出、归还连接时不再访问数据库
+        if (result && poolMaintenanceInterval <= 0) {
             if (poolPingEnabled) {
                 if (poolPingConnectionsNotUsedFor >= 0 && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
                     try {
@@ -577,6 +967,255 @@ public class PooledDataSource implements DataSource {
         return result;
     }
 
+    /**
+     * 执行一次连接池维护：报告疑似泄漏的连接，关闭超过最长存活时间或空闲超时的连接，校验空闲连接，并补足最少空闲连接数
+     * 通常由维护线程定期调用；访问数据库的操作都在锁外进行，不阻塞借出和归还连接
+     */
+    public void maintainPool() {
+        state.lock.lock();
+        try {
+            reportLeakedConnections();
+        } finally {
+            state.lock.unlock();
+        }
+        retireIdleConnections();
+        validateIdleConnections();
+        fillIdleConnections();
+    }
+
+    private void retireIdleConnections() {
+        List<PooledConnection> retired = new ArrayList<>();
+        state.lock.lock();
+        try {
+            int removable = state.idleConnections.size() - poolMinimumIdleConnections;
+            for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext(); ) {
+                PooledConnection conn = it.next();
+                boolean idleTooLong = poolIdleTimeout > 0 && removable > 0 && conn.getTimeElapsedSinceLastUse() > poolIdleTimeout;
+                if (isExpired(conn) || idleTooLong) {
+                    it.remove();
+                    removable--;
+                    retired.add(conn);
+                    state.retiredConnectionCount++;
+                }
+            }
+        } finally {
+            state.lock.unlock();
+        }
+        for (PooledConnection conn : retired) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retired connection " + conn.getRealHashCode() + ".");
+            }
+            closeQuietly(conn);
+        }
+    }
+
+    /**
+     * 逐个取出空闲连接在锁外校验，同一时刻只有一个连接离开空闲集合
+     */
+    private void validateIdleConnections() {
+        List<PooledConnection> candidates;
+        int generation;
+        state.lock.lock();
+        try {
+            candidates = new ArrayList<>(state.idleConnections);
+            generation = poolGeneration;
+        } finally {
+            state.lock.unlock();
+        }
+        for (PooledConnection conn : candidates) {
+            state.lock.lock();
+            try {
+                // 已被借出
+                if (!state.idleConnections.remove(conn)) {
+                    continue;
+                }
+            } finally {
+                state.lock.unlock();
+            }
+            boolean valid = isAlive(conn);
+            boolean returned = false;
+            state.lock.lock();
+            try {
+                if (!valid) {
+                    state.badConnectionCount++;
+                } else if (generation == poolGeneration && state.idleConnections.size() < poolMaximumIdleConnections) {
+                    state.idleConnections.add(conn);
+                    signalWaiters();
+                    returned = true;
+                }
+            } finally {
+                state.lock.unlock();
+            }
+            if (!returned) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Discarded idle connection " + conn.getRealHashCode() + (valid ? "." : ", validation failed."));
+                }
+                closeQuietly(conn);
+            }
+        }
+    }
+
+    /**
+     * 在锁外创建新连接，补足最少空闲连接数，且总连接数不超过最大活跃连接数
+     */
+    private void fillIdleConnections() {
+        while (true) {
+            int generation;
+            int typeCode;
+            state.lock.lock();
+            try {
+                if (!canAddIdleConnection()) {
+                    return;
+                }
+                generation = poolGeneration;
+                typeCode = expectedConnectionTypeCode;
+            } finally {
+                state.lock.unlock();
+            }
+            PooledConnection conn;
+            try {
+                conn = new PooledConnection(dataSource.getConnection(), this);
+            } catch (SQLException e) {
+                log.warn("Could not pre-fill the connection pool: " + e.getMessage());
+                return;
+            }
+            conn.setConnectionTypeCode(typeCode);
+            boolean added = false;
+            state.lock.lock();
+            try {
+                if (generation == poolGeneration && canAddIdleConnection()) {
+                    state.idleConnections.add(conn);
+                    signalWaiters();
+                    added = true;
+                }
+            } finally {
+                state.lock.unlock();
+            }
+            if (!added) {
+                closeQuietly(conn);
+                return;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Pre-filled connection " + conn.getRealHashCode() + ".");
+            }
+        }
+    }
+
+    // 需持有 state.lock
+    private boolean canAddIdleConnection() {
+        int idle = state.idleConnections.size();
+        return idle < poolMinimumIdleConnections
+                && idle < poolMaximumIdleConnections
+                && idle + state.activeConnections.size() < poolMaximumActiveConnections;
+    }
+
+    private boolean isExpired(PooledConnection conn) {
+        return poolMaximumLifetime > 0 && conn.getAge() > poolMaximumLifetime;
+    }
+
+    private boolean isAlive(PooledConnection conn) {
+        try {
+            return conn.getRealConnection().isValid(poolValidationTimeout);
+        } catch (SQLException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+            }
+            return false;
+        }
+    }
+
+    private void closeQuietly(PooledConnection conn) {
+        conn.invalidate();
+        try {
+            conn.getRealConnection().close();
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private void scheduleMaintenance() {
+        state.lock.lock();
+        try {
+            stopMaintenance();
+            if (poolMaintenanceInterval > 0) {
+                maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(new MaintenanceThreadFactory());
+                maintenanceFuture = maintenanceExecutor.scheduleWithFixedDelay(new MaintenanceTask(this, maintenanceExecutor),
+                        poolMaintenanceInterval, poolMaintenanceInterval, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    private void stopMaintenance() {
+        if (maintenanceFuture != null) {
+            maintenanceFuture.cancel(false);
+            maintenanceFuture = null;
+        }
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+            maintenanceExecutor = null;
+        }
+    }
+
+    /*
+     * Stops the maintenance thread and closes all connections in the pool.
+     * The data source can still be used afterwards, connections are opened again on demand
+     * but the maintenance thread is only restarted by setPoolMaintenanceInterval.
+     */
+    @Override
+    public void close() {
+        state.lock.lock();
+        try {
+            stopMaintenance();
+        } finally {
+            state.lock.unlock();
+        }
+        forceCloseAll();
+    }
+
+    /**
+     * 静态类，不持有数据源的引用，否则调度线程会使数据源无法被回收
+     */
+    private static class MaintenanceThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mybatis-pool-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * 维护任务只弱引用数据源，数据源不再被使用时调度线程随之退出
+     */
+    private static class MaintenanceTask implements Runnable {
+
+        private final WeakReference<PooledDataSource> dataSource;
+        private final ExecutorService executor;
+
+        MaintenanceTask(PooledDataSource dataSource, ExecutorService executor) {
+            this.dataSource = new WeakReference<>(dataSource);
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            PooledDataSource ds = dataSource.get();
+            if (ds == null) {
+                executor.shutdown();
+                return;
+            }
+            try {
+                ds.maintainPool();
+            } catch (RuntimeException e) {
+                // 抛出异常会取消后续的调度
+                log.warn("Connection pool maintenance failed: " + e.getMessage());
+            }
+        }
+    }
+
     /*
      * Unwraps a pooled connection to get to the 'real' connection
      *
@@ -594,6 +1233,7 @@ public class PooledDataSource implements DataSource {
     }
 
     protected void finalize() throws Throwable {
+        stopMaintenance();
         forceCloseAll();
         super.finalize();
     }
@@ -0,0 +1,152 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.datasource.routing;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+
+/**
+ * 读写分离数据源
+ * getConnection() 总是返回主库连接，事务和写操作都使用它；
+ * 执行器在自动提交且未写过数据的会话中，通过 getReplicaConnection() 把select语句路由到只读副本
+ */
+public class ReadWriteDataSource implements DataSource {
+
+    /**
+     * 选择副本的策略
+     */
+    public enum Strategy {
+        /**
+         * 依次轮流使用各副本
+         */
+        ROUND_ROBIN,
+        /**
+         * 使用活跃连接最少的副本，只统计 PooledDataSource，其他数据源视为没有活跃连接
+         */
+        LEAST_ACTIVE
+    }
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final Strategy strategy;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReadWriteDataSource(DataSource primary, List<? extends DataSource> replicas) {
+        this(primary, replicas, Strategy.ROUND_ROBIN);
+    }
+
+    public ReadWriteDataSource(DataSource primary, List<? extends DataSource> replicas, Strategy strategy) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<DataSource>(replicas));
+        this.strategy = strategy;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * 获取只读副本的连接，没有配置副本时返回主库连接
+     */
+    public Connection getReplicaConnection() throws SQLException {
+        if (replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        return selectReplica().getConnection();
+    }
+
+    private DataSource selectReplica() {
+        final int size = replicas.size();
+        // 从轮询位置开始查找，活跃连接数相同时也能分散到各副本
+        final int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        if (strategy == Strategy.ROUND_ROBIN) {
+            return replicas.get(start);
+        }
+        DataSource selected = null;
+        int leastActive = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            DataSource replica = replicas.get((start + i) % size);
+            int active = replica instanceof PooledDataSource ? ((PooledDataSource) replica).getPoolState().getActiveConnectionCount() : 0;
+            if (active < leastActive) {
+                leastActive = active;
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return primary.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        primary.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        primary.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return primary.getLoginTimeout();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        throw new SQLException(getClass().getName() + " is not a wrapper.");
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+    }
+}
@@ -25,6 +25,7 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
@@ -44,6 +45,9 @@ public class UnpooledDataSource implements DataSource {
     // 缓存所有已注册的数据库连接驱动
     private static Map<String, Driver> registeredDrivers = new ConcurrentHashMap<>();
 
+    // 每次创建连接都会检查驱动，用显式锁代替对象监视器，避免虚拟线程占住载体线程
+    private final ReentrantLock driverLock = new ReentrantLock();
+
     private String driver;
     private String url;
     private String username;
@@ -141,8 +145,13 @@ public class UnpooledDataSource implements DataSource {
         return driver;
     }
 
-    public synchronized void setDriver(String driver) {
-        this.driver = driver;
+    public void setDriver(String driver) {
+        driverLock.lock();
+        try {
+            this.driver = driver;
+        } finally {
+            driverLock.unlock();
+        }
     }
 
     public String getUrl() {
@@ -206,7 +215,16 @@ public class UnpooledDataSource implements DataSource {
         return connection;
     }
 
-    private synchronized void initializeDriver() throws SQLException {
+    private void initializeDriver() throws SQLException {
+        driverLock.lock();
+        try {
+            doInitializeDriver();
+        } finally {
+            driverLock.unlock();
+        }
+    }
+
+    private void doInitializeDriver() throws SQLException {
         if (!registeredDrivers.containsKey(driver)) {
             Class<?> driverType;
             try {
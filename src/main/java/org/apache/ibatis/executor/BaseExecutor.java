@@ -26,6 +26,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.datasource.routing.ReadWriteDataSource;
 import org.apache.ibatis.executor.statement.StatementUtil;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
@@ -34,6 +35,7 @@ import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
@@ -69,6 +71,10 @@ public abstract class BaseExecutor implements Executor {
     // 记录嵌套查询的层数
     protected int queryStack;
     private boolean closed;
+    // 读写分离时只读查询使用的副本连接，第一次使用时获取，关闭执行器时释放
+    private Connection replicaConnection;
+    // 本会话执行过写操作后，之后的查询都在主库执行，避免读到尚未复制的数据
+    private boolean primarySticky;
 
     protected BaseExecutor(Configuration configuration, Transaction transaction) {
         this.transaction = transaction;
@@ -102,6 +108,7 @@ public abstract class BaseExecutor implements Executor {
             // Ignore.  There's nothing that can be done at this point.
             log.warn("Unexpected exception on closing transaction.  Cause: " + e);
         } finally {
+            closeReplicaConnection();
             transaction = null;
             deferredLoads = null;
             localCache = null;
@@ -110,6 +117,26 @@ public abstract class BaseExecutor implements Executor {
         }
     }
 
+    @Override
+    public void reset() throws SQLException {
+        if (closed) {
+            throw new ExecutorException("Executor was closed.");
+        }
+        try {
+            // STATEMENT 级别的一级缓存在每条语句结束时已清空，不需要再清理
+            if (configuration.getLocalCacheScope() != LocalCacheScope.STATEMENT) {
+                clearLocalCache();
+            }
+            flushStatements(true);
+        } finally {
+            closeReplicaConnection();
+            primarySticky = false;
+            deferredLoads.clear();
+            // 事务关闭后再次获取连接时重新从数据源获取
+            transaction.close();
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return closed;
@@ -126,6 +153,7 @@ public abstract class BaseExecutor implements Executor {
         }
         // 先清空一级缓存
         clearLocalCache();
+        primarySticky = true;
 
         return doUpdate(ms, parameter);
     }
@@ -395,6 +423,44 @@ public abstract class BaseExecutor implements Executor {
         }
     }
 
+    /**
+     * 获取执行指定语句的连接
+     * 数据源为 ReadWriteDataSource 时，自动提交且尚未写过数据的会话中的select语句在只读副本上执行
+     * 非自动提交的事务中所有语句都在主库上执行，保证事务内读到一致的数据（如 select ... for update）
+     */
+    protected Connection getConnection(MappedStatement ms) throws SQLException {
+        if (!isReplicaRead(ms)) {
+            return getConnection(ms.getStatementLog());
+        }
+        if (replicaConnection == null) {
+            replicaConnection = ((ReadWriteDataSource) configuration.getEnvironment().getDataSource()).getReplicaConnection();
+        }
+        Log statementLog = ms.getStatementLog();
+        if (statementLog.isDebugEnabled()) {
+            return ConnectionLogger.newInstance(replicaConnection, statementLog, queryStack);
+        } else {
+            return replicaConnection;
+        }
+    }
+
+    protected boolean isReplicaRead(MappedStatement ms) throws SQLException {
+        return !primarySticky && ms.isUseReplica() && ms.getSqlCommandType() == SqlCommandType.SELECT
+                && configuration.getEnvironment() != null
+                && configuration.getEnvironment().getDataSource() instanceof ReadWriteDataSource
+                && transaction.isAutoCommit();
+    }
+
+    private void closeReplicaConnection() {
+        if (replicaConnection != null) {
+            try {
+                replicaConnection.close();
+            } catch (SQLException e) {
+                log.warn("Unexpected exception on closing replica connection.  Cause: " + e);
+            }
+            replicaConnection = null;
+        }
+    }
+
     @Override
     public void setExecutorWrapper(Executor wrapper) {
         this.wrapper = wrapper;
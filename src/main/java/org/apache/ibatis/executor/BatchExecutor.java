@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.ibatis.builder.BulkInsertSqlSource;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -54,6 +55,11 @@ public class BatchExecutor extends BaseExecutor {
     // 记录当前执行的 MappedStatement 对象
     private MappedStatement currentStatement;
 
+    // 开启 batchWriteBehindSize 后已提前执行完成的批处理结果，下次 flushStatements 时一并返回
+    private final List<BatchResult> flushedResults = new ArrayList<>();
+    // 上次提前执行之后累积的实参数量
+    private int unflushedCount;
+
     public BatchExecutor(Configuration configuration, Transaction transaction) {
         super(configuration, transaction);
     }
@@ -86,9 +92,31 @@ public class BatchExecutor extends BaseExecutor {
         }
         // handler.parameterize(stmt);
         handler.batch(stmt);
+        int writeBehindSize = configuration.getBatchWriteBehindSize();
+        if (writeBehindSize > 0 && ++unflushedCount >= writeBehindSize) {
+            writeBehind();
+        }
         return BATCH_UPDATE_RETURN_VALUE;
     }
 
+    /**
+     * 累积的实参达到 batchWriteBehindSize 时提前执行已累积的批处理，限制未发送的批处理占用的内存
+     * 在调用线程上执行：JDBC 规范不要求 Connection 线程安全，不能一边在后台 executeBatch 一边在同一连接上 addBatch
+     */
+    private void writeBehind() throws SQLException {
+        unflushedCount = 0;
+        try {
+            executeBatches(statementList, batchResultList, flushedResults);
+        } finally {
+            for (Statement stmt : statementList) {
+                closeStatement(stmt);
+            }
+            currentSql = null;
+            statementList.clear();
+            batchResultList.clear();
+        }
+    }
+
     @Override
     public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
             throws SQLException {
@@ -97,7 +125,7 @@ public class BatchExecutor extends BaseExecutor {
             flushStatements();
             Configuration configuration = ms.getConfiguration();
             StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameterObject, rowBounds, resultHandler, boundSql);
-            Connection connection = getConnection(ms.getStatementLog());
+            Connection connection = getConnection(ms);
             stmt = handler.prepare(connection, transaction.getTimeout());
             handler.parameterize(stmt);
             return handler.query(stmt, resultHandler);
@@ -111,56 +139,33 @@ public class BatchExecutor extends BaseExecutor {
         flushStatements();
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-        Connection connection = getConnection(ms.getStatementLog());
+        Connection connection = getConnection(ms);
         Statement stmt = handler.prepare(connection, transaction.getTimeout());
         handler.parameterize(stmt);
         return handler.queryCursor(stmt);
     }
 
+    // 多行批量插入语句的每个实参是一组记录，生成的主键按记录顺序返回
+    private List<Object> getKeyParameters(MappedStatement ms, List<Object> parameterObjects) {
+        if (!(ms.getSqlSource() instanceof BulkInsertSqlSource)) {
+            return parameterObjects;
+        }
+        List<Object> records = new ArrayList<>();
+        for (Object parameterObject : parameterObjects) {
+            records.addAll((List<?>) parameterObject);
+        }
+        return records;
+    }
+
     @Override
     public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
         try {
-            // results 集合用于储存批处理的结果
-            List<BatchResult> results = new ArrayList<>();
             if (isRollback) {
                 return Collections.emptyList();
             }
-            for (int i = 0, n = statementList.size(); i < n; i++) {
-                Statement stmt = statementList.get(i);
-                applyTransactionTimeout(stmt);
-                BatchResult batchResult = batchResultList.get(i);
-                try {
-                    /// 执行多条sql语句
-                    batchResult.setUpdateCounts(stmt.executeBatch());
-                    MappedStatement ms = batchResult.getMappedStatement();
-                    List<Object> parameterObjects = batchResult.getParameterObjects();
-
-                    /// 获取主键
-                    KeyGenerator keyGenerator = ms.getKeyGenerator();
-                    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-                        Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-                        jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-                    } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-                        for (Object parameter : parameterObjects) {
-                            keyGenerator.processAfter(this, ms, stmt, parameter);
-                        }
-                    }
-                } catch (BatchUpdateException e) {
-                    StringBuilder message = new StringBuilder();
-                    message.append(batchResult.getMappedStatement().getId())
-                            .append(" (batch index #")
-                            .append(i + 1)
-                            .append(")")
-                            .append(" failed.");
-                    if (i > 0) {
-                        message.append(" ")
-                                .append(i)
-                                .append(" prior sub executor(s) completed successfully, but will be rolled back.");
-                    }
-                    throw new BatchExecutorException(message.toString(), e, results, batchResult);
-                }
-                results.add(batchResult);
-            }
+            // results 集合用于储存批处理的结果，包括已提前执行的部分
+            List<BatchResult> results = new ArrayList<>(flushedResults);
+            executeBatches(statementList, batchResultList, results);
             return results;
         } finally {
             for (Statement stmt : statementList) {
@@ -169,6 +174,48 @@ public class BatchExecutor extends BaseExecutor {
             currentSql = null;
             statementList.clear();
             batchResultList.clear();
+            flushedResults.clear();
+            unflushedCount = 0;
+        }
+    }
+
+    // 依次执行各 Statement 中累积的批处理，成功的结果追加到 results
+    private void executeBatches(List<Statement> statements, List<BatchResult> batchResults, List<BatchResult> results) throws SQLException {
+        for (int i = 0, n = statements.size(); i < n; i++) {
+            Statement stmt = statements.get(i);
+            applyTransactionTimeout(stmt);
+            BatchResult batchResult = batchResults.get(i);
+            try {
+                /// 执行多条sql语句
+                batchResult.setUpdateCounts(stmt.executeBatch());
+                MappedStatement ms = batchResult.getMappedStatement();
+                List<Object> parameterObjects = batchResult.getParameterObjects();
+
+                /// 获取主键
+                KeyGenerator keyGenerator = ms.getKeyGenerator();
+                if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+                    Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+                    jdbc3KeyGenerator.processBatch(ms, stmt, getKeyParameters(ms, parameterObjects));
+                } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+                    for (Object parameter : parameterObjects) {
+                        keyGenerator.processAfter(this, ms, stmt, parameter);
+                    }
+                }
+            } catch (BatchUpdateException e) {
+                StringBuilder message = new StringBuilder();
+                message.append(batchResult.getMappedStatement().getId())
+                        .append(" (batch index #")
+                        .append(results.size() + 1)
+                        .append(")")
+                        .append(" failed.");
+                if (!results.isEmpty()) {
+                    message.append(" ")
+                            .append(results.size())
+                            .append(" prior sub executor(s) completed successfully, but will be rolled back.");
+                }
+                throw new BatchExecutorException(message.toString(), e, new ArrayList<>(results), batchResult);
+            }
+            results.add(batchResult);
         }
     }
 
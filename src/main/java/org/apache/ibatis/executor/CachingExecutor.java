@@ -16,18 +16,27 @@
 package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependency;
+import org.apache.ibatis.cache.CacheDependencyIndex;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheLoader;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.bus.CacheInvalidationBus;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.plugin.Interceptor;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -44,10 +53,25 @@ public class CachingExecutor implements Executor {
 
     private Executor delegate;
 
-    private TransactionalCacheManager tcm = new TransactionalCacheManager();
+    private TransactionalCacheManager tcm;
 
     public CachingExecutor(Executor delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param dependencyIndex 不为null时开启表级缓存失效，写操作只使依赖受影响的表的缓存项失效
+     */
+    public CachingExecutor(Executor delegate, CacheDependencyIndex dependencyIndex) {
+        this(delegate, dependencyIndex, null);
+    }
+
+    /**
+     * @param invalidationBus 不为null时，事务提交后把清空的命名空间和失效的表广播给其他节点
+     */
+    public CachingExecutor(Executor delegate, CacheDependencyIndex dependencyIndex, CacheInvalidationBus invalidationBus) {
         this.delegate = delegate;
+        this.tcm = new TransactionalCacheManager(dependencyIndex, invalidationBus);
         delegate.setExecutorWrapper(this);
     }
 
@@ -70,6 +94,15 @@ public class CachingExecutor implements Executor {
         }
     }
 
+    @Override
+    public void reset() throws SQLException {
+        try {
+            tcm.commit();
+        } finally {
+            delegate.reset();
+        }
+    }
+
     @Override
     public boolean isClosed() {
         return delegate.isClosed();
@@ -77,7 +110,9 @@ public class CachingExecutor implements Executor {
 
     @Override
     public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-        flushCacheIfRequired(ms);
+        if (!invalidateDependentEntries(ms, parameterObject)) {
+            flushCacheIfRequired(ms);
+        }
         return delegate.update(ms, parameterObject);
     }
 
@@ -116,12 +151,27 @@ public class CachingExecutor implements Executor {
                 @SuppressWarnings("unchecked")
                 List<E> list = (List<E>) tcm.getObject(cache, key);
 
+                // 开启表级缓存失效时，缓存项依赖的表
+                List<CacheDependency> dependencies = null;
+                // 本事务写过缓存项依赖的表，二级缓存中的数据对本事务已过期
+                if (list != null && tcm.hasPendingInvalidations()) {
+                    dependencies = getCacheDependencies(ms, parameterObject, boundSql);
+                    if (tcm.isInvalidated(dependencies)) {
+                        list = null;
+                    }
+                }
+
                 /// 二级缓存没有相应的结果对象，调用封装的Executor对象的query()，，其中会先查询一级缓存
                 if (list == null) {
                     list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
 
                     // 将查询结果保存到 TransactionalCache.entriesToAddOnCommit 集合中
-                    tcm.putObject(cache, key, list); // issue #578 and #116
+                    if (tcm.getDependencyIndex() != null && dependencies == null) {
+                        dependencies = getCacheDependencies(ms, parameterObject, boundSql);
+                    }
+                    // issue #578 and #116
+                    CacheLoader loader = ExpiringCache.isRefreshAhead(cache) ? new StatementCacheLoader(ms, parameterObject, rowBounds, key) : null;
+                    tcm.putObject(cache, key, list, dependencies, loader);
                 }
                 return list;
             }
@@ -190,9 +240,96 @@ public class CachingExecutor implements Executor {
         }
     }
 
+    /**
+     * 开启表级缓存失效时，记录写操作影响的表，事务提交时使依赖这些表的缓存项失效
+     * 无法确定影响的表时返回false，此时仍按命名空间清空缓存
+     */
+    private boolean invalidateDependentEntries(MappedStatement ms, Object parameterObject) {
+        if (tcm.getDependencyIndex() == null || !ms.isFlushCacheRequired()) {
+            return false;
+        }
+        List<CacheDependency> dependencies = getCacheDependencies(ms, parameterObject, null);
+        if (dependencies.isEmpty()) {
+            return false;
+        }
+        tcm.invalidate(dependencies);
+        return true;
+    }
+
+    /**
+     * 语句读写的表，优先使用语句声明的 tables，否则从sql中推断
+     */
+    private List<CacheDependency> getCacheDependencies(MappedStatement ms, Object parameterObject, BoundSql boundSql) {
+        String[] tables = ms.getTables();
+        if (tables == null) {
+            String sql = (boundSql != null ? boundSql : ms.getBoundSql(parameterObject)).getSql();
+            return CacheDependency.ofTables(CacheDependency.extractTables(sql));
+        }
+        String[] keyProperties = ms.getTableKeyProperties();
+        List<CacheDependency> dependencies = new ArrayList<>(tables.length);
+        for (int i = 0; i < tables.length; i++) {
+            dependencies.add(new CacheDependency(tables[i], getKeyValue(ms, parameterObject, keyProperties[i])));
+        }
+        return dependencies;
+    }
+
+    // 取不到主键时返回null，表示依赖整张表
+    private Object getKeyValue(MappedStatement ms, Object parameterObject, String keyProperty) {
+        if (keyProperty == null || parameterObject == null) {
+            return null;
+        }
+        if (ms.getConfiguration().getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+            return parameterObject;
+        }
+        MetaObject metaObject = ms.getConfiguration().newMetaObject(parameterObject);
+        return metaObject.hasGetter(keyProperty) ? metaObject.getValue(keyProperty) : null;
+    }
+
     @Override
     public void setExecutorWrapper(Executor executor) {
         throw new UnsupportedOperationException("This method should not be called");
     }
 
+    /**
+     * 在新的事务中重新执行查询，不经过二级缓存，供 ExpiringCache 在后台刷新缓存项
+     * <p>
+     * 不使用 configuration.newExecutor()，它会再包一层 CachingExecutor，读到的正是要刷新的缓存项；
+     * 插件直接作用在 SimpleExecutor 上，与 newExecutor() 创建的执行器一样被拦截
+     * <p>
+     * 持有调用方的参数对象，调用方之后修改了它时，重新计算的 CacheKey 与缓存项不一致，放弃刷新
+     */
+    private static class StatementCacheLoader implements CacheLoader {
+        private final MappedStatement ms;
+        private final Object parameterObject;
+        private final RowBounds rowBounds;
+        private final CacheKey key;
+
+        StatementCacheLoader(MappedStatement ms, Object parameterObject, RowBounds rowBounds, CacheKey key) {
+            this.ms = ms;
+            this.parameterObject = parameterObject;
+            this.rowBounds = rowBounds;
+            this.key = key;
+        }
+
+        @Override
+        public Object load() throws Exception {
+            Configuration configuration = ms.getConfiguration();
+            Environment environment = configuration.getEnvironment();
+            Transaction tx = environment.getTransactionFactory().newTransaction(environment.getDataSource(), null, false);
+            Executor executor = new SimpleExecutor(configuration, tx);
+            for (Interceptor interceptor : configuration.getInterceptors()) {
+                executor = (Executor) interceptor.plugin(executor);
+            }
+            try {
+                BoundSql boundSql = ms.getBoundSql(parameterObject);
+                if (!key.equals(executor.createCacheKey(ms, parameterObject, rowBounds, boundSql))) {
+                    return null;
+                }
+                return executor.query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql);
+            } finally {
+                executor.close(false);
+            }
+        }
+    }
+
 }
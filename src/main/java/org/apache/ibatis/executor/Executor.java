@@ -70,6 +70,13 @@ public interface Executor {
     // 关闭当前executor
     void close(boolean forceRollback);
 
+    // 按自动提交会话关闭的方式结束本次调用并释放连接，但executor不关闭，供同一线程之后的调用复用
+    // 默认实现只清空一级缓存并执行批量语句，不释放连接
+    default void reset() throws SQLException {
+        clearLocalCache();
+        flushStatements();
+    }
+
     // 检测executor是否已关闭
     boolean isClosed();
 
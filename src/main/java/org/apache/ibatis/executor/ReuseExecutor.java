@@ -25,7 +25,6 @@ import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.statement.StatementHandler;
-import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.session.Configuration;
@@ -40,6 +39,8 @@ import org.apache.ibatis.transaction.Transaction;
  */
 public class ReuseExecutor extends BaseExecutor {
 
+    private static final String REPLICA_KEY_PREFIX = "replica:";
+
     // 负责缓存使用过的statement对象，sql语句 -> 对应的statement对象
     private final Map<String, Statement> statementMap = new HashMap<>();
 
@@ -51,7 +52,7 @@ public class ReuseExecutor extends BaseExecutor {
     public int doUpdate(MappedStatement ms, Object parameter) throws SQLException {
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration.newStatementHandler(this, ms, parameter, RowBounds.DEFAULT, null, null);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = prepareStatement(handler, ms);
         return handler.update(stmt);
     }
 
@@ -59,7 +60,7 @@ public class ReuseExecutor extends BaseExecutor {
     public <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
         Configuration configuration = ms.getConfiguration();
         StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = prepareStatement(handler, ms);
         return handler.query(stmt, resultHandler);
     }
 
@@ -68,7 +69,7 @@ public class ReuseExecutor extends BaseExecutor {
         Configuration configuration = ms.getConfiguration();
         // 每次都创建新的statement
         StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
-        Statement stmt = prepareStatement(handler, ms.getStatementLog());
+        Statement stmt = prepareStatement(handler, ms);
         return handler.queryCursor(stmt);
     }
 
@@ -81,10 +82,11 @@ public class ReuseExecutor extends BaseExecutor {
         return Collections.emptyList();
     }
 
-    private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
+    private Statement prepareStatement(StatementHandler handler, MappedStatement ms) throws SQLException {
         Statement stmt;
         BoundSql boundSql = handler.getBoundSql();
-        String sql = boundSql.getSql();
+        // 副本连接上创建的statement单独缓存，会话写过数据后不能再复用
+        String sql = isReplicaRead(ms) ? REPLICA_KEY_PREFIX + boundSql.getSql() : boundSql.getSql();
 
         /// 检测是否缓存了相同模式的SQL语句所对应的Statement对象
         if (hasStatementFor(sql)) {
@@ -92,7 +94,7 @@ public class ReuseExecutor extends BaseExecutor {
             stmt = getStatement(sql);
             applyTransactionTimeout(stmt);
         } else {
-            Connection connection = getConnection(statementLog);
+            Connection connection = getConnection(ms);
 
             /// 创建新的 Statement 对象，并缓存到 staternentMap 集合中
             stmt = handler.prepare(connection, transaction.getTimeout());
@@ -19,6 +19,7 @@ import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.executor.ExecutorException;
 
@@ -41,7 +42,7 @@ public abstract class AbstractEnhancedDeserializationProxy {
     private ObjectFactory objectFactory;
     private List<Class<?>> constructorArgTypes;
     private List<Object> constructorArgs;
-    private final Object reloadingPropertyLock;
+    private final ReentrantLock reloadingPropertyLock;
     private boolean reloadingProperty;
 
     protected AbstractEnhancedDeserializationProxy(Class<?> type, Map<String, ResultLoaderMap.LoadPair> unloadedProperties,
@@ -51,7 +52,7 @@ public abstract class AbstractEnhancedDeserializationProxy {
         this.objectFactory = objectFactory;
         this.constructorArgTypes = constructorArgTypes;
         this.constructorArgs = constructorArgs;
-        this.reloadingPropertyLock = new Object();
+        this.reloadingPropertyLock = new ReentrantLock();
         this.reloadingProperty = false;
     }
 
@@ -69,7 +70,8 @@ public abstract class AbstractEnhancedDeserializationProxy {
                 PropertyCopier.copyBeanProperties(type, enhanced, original);
                 return this.newSerialStateHolder(original, unloadedProperties, objectFactory, constructorArgTypes, constructorArgs);
             } else {
-                synchronized (this.reloadingPropertyLock) {
+                reloadingPropertyLock.lock();
+                try {
                     if (!FINALIZE_METHOD.equals(methodName) && PropertyNamer.isProperty(methodName) && !reloadingProperty) {
                         final String property = PropertyNamer.methodToProperty(methodName);
                         final String propertyKey = property.toUpperCase(Locale.ENGLISH);
@@ -92,6 +94,8 @@ public abstract class AbstractEnhancedDeserializationProxy {
                     }
 
                     return enhanced;
+                } finally {
+                    reloadingPropertyLock.unlock();
                 }
             }
         } catch (Throwable t) {
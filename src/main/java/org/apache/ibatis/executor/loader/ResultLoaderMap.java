@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BaseExecutor;
@@ -53,6 +54,13 @@ public class ResultLoaderMap {
     // 保存对象中延迟加载属性及其对应的ResultLoader对象之间的关系
     private final Map<String, LoadPair> loaderMap = new HashMap<>();
 
+    // 代理对象加载属性时持有，加载过程会执行查询，用显式锁代替对象监视器，避免虚拟线程在等待数据库时占住载体线程
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
     public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader) {
         String upperFirst = getUppercaseFirstProperty(property);
         if (!upperFirst.equalsIgnoreCase(property) && loaderMap.containsKey(upperFirst)) {
@@ -38,24 +38,34 @@ import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
 import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
 import org.apache.ibatis.session.AutoMappingBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.type.PrimitiveTypeHandler;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Constructor;
 import java.sql.CallableStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -87,9 +97,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     private final ReflectorFactory reflectorFactory;
 
     // nested resultmaps
-    private final Map<CacheKey, Object> nestedResultObjects = new HashMap<>();
+    private final Map<RowKey, Object> nestedResultObjects = new HashMap<>();
     private final Map<String, Object> ancestorObjects = new HashMap<>();
     private Object previousRowValue;
+    // 通过 Cursor 读取嵌套映射时，按根对象分组流式返回，每组结束即释放
+    private boolean streamingNestedResults;
+    // 最近已返回的根对象行标识，用于发现未按根对象id排序的结果集，数量有上限以保证内存占用与结果集大小无关
+    private Map<RowKey, Boolean> finishedRootKeys;
 
     // multiple resultsets
     private final Map<String, ResultMapping> nextResultMaps = new HashMap<>();
@@ -97,6 +111,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     // Cached Automappings
     private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
+    // 明确映射的基本类型属性对应的 PrimitiveSetter，不支持快速路径的映射记录为null
+    private final Map<ResultMapping, PrimitiveSetter> primitiveSettersCache = new IdentityHashMap<>();
+    // 自动映射构造方法时选定的构造方法及各参数的取值方式，key是结果类型和列前缀
+    private final Map<String, ConstructorPlan> constructorPlansCache = new HashMap<>();
+    // 嵌套映射时计算行标识要读取的列，key是ResultMap和列前缀
+    private final Map<ResultMap, Map<String, RowKeyPlan>> rowKeyPlansCache = new IdentityHashMap<>();
 
     // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
     private boolean useConstructorMappings;
@@ -113,12 +133,59 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         private final String property;
         private final TypeHandler<?> typeHandler;
         private final boolean primitive;
+        // 可以不装箱直接赋值的基本类型属性，否则为null
+        private final PrimitiveSetter primitiveSetter;
 
-        public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
+        public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive, PrimitiveSetter primitiveSetter) {
             this.column = column;
             this.property = property;
             this.typeHandler = typeHandler;
             this.primitive = primitive;
+            this.primitiveSetter = primitiveSetter;
+        }
+    }
+
+    private static class ConstructorPlan {
+        // 编译时对应的结果集，列集合变化后需要重新选择构造方法
+        private final ResultSetWrapper rsw;
+        private final List<Class<?>> argTypes;
+        // 参数类型，基本类型替换为对应的包装类型
+        private final Class<?>[] boxedArgTypes;
+        private final String[] columns;
+        // 列名在结果集中唯一且没有列前缀时按下标读取，否则为0
+        private final int[] columnIndexes;
+        private final TypeHandler<?>[] typeHandlers;
+        // 默认 ObjectFactory 下直接调用的构造方法，否则为null
+        private final MethodHandle instantiator;
+
+        private ConstructorPlan(ResultSetWrapper rsw, List<Class<?>> argTypes, Class<?>[] boxedArgTypes, String[] columns,
+                                int[] columnIndexes, TypeHandler<?>[] typeHandlers, MethodHandle instantiator) {
+            this.rsw = rsw;
+            this.argTypes = argTypes;
+            this.boxedArgTypes = boxedArgTypes;
+            this.columns = columns;
+            this.columnIndexes = columnIndexes;
+            this.typeHandlers = typeHandlers;
+            this.instantiator = instantiator;
+        }
+    }
+
+    private static class RowKeyPlan {
+        // 编译时对应的结果集，列集合变化后需要重新计算
+        private final ResultSetWrapper rsw;
+        private final String resultMapId;
+        private final String[] columns;
+        // 为null的列按字符串读取
+        private final TypeHandler<?>[] typeHandlers;
+        // 列值全部为null时是否仍然生成行标识（returnInstanceForEmptyRow）
+        private final boolean keyEmptyRow;
+
+        private RowKeyPlan(ResultSetWrapper rsw, String resultMapId, String[] columns, TypeHandler<?>[] typeHandlers, boolean keyEmptyRow) {
+            this.rsw = rsw;
+            this.resultMapId = resultMapId;
+            this.columns = columns;
+            this.typeHandlers = typeHandlers;
+            this.keyEmptyRow = keyEmptyRow;
         }
     }
 
@@ -260,6 +327,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
         // 使用第一个 ResultMap 对象
         ResultMap resultMap = resultMaps.get(0);
+        streamingNestedResults = resultMap.hasNestedResultMaps();
 
         // 对象封装成 DefaultCursor 对象
         return new DefaultCursor<>(this, resultMap, rsw, rowBounds);
@@ -545,7 +613,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                             // 多结果集的场景处理，该属性来自另一个结果集
                             || propertyMapping.getResultSet() != null) {
 
-                Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+                final PrimitiveSetter primitiveSetter = getPrimitiveSetter(metaObject, propertyMapping, column);
+                if (primitiveSetter != null) {
+                    if (applyPrimitiveValue(rsw.getResultSet(), column, propertyMapping.getTypeHandler(), primitiveSetter, metaObject.getOriginalObject())) {
+                        foundValues = true;
+                    }
+                    continue;
+                }
+                Object value = getPropertyMappingValue(rsw, metaObject, propertyMapping, lazyLoader, columnPrefix);
                 // issue #541 make property optional
                 final String property = propertyMapping.getProperty();
                 if (property == null) {
@@ -571,7 +646,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return foundValues;
     }
 
-    private Object getPropertyMappingValue(ResultSet rs,
+    private Object getPropertyMappingValue(ResultSetWrapper rsw,
                                            MetaObject metaResultObject,
                                            ResultMapping propertyMapping,
                                            ResultLoaderMap lazyLoader,
@@ -579,18 +654,18 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
         /// 若是嵌套查询
         if (propertyMapping.getNestedQueryId() != null) {
-            return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
+            return getNestedQueryMappingValue(rsw.getResultSet(), metaResultObject, propertyMapping, lazyLoader, columnPrefix);
         }
         /// 若是多结果集
         else if (propertyMapping.getResultSet() != null) {
-            addPendingChildRelation(rs, metaResultObject, propertyMapping);   // TODO is that OK?
+            addPendingChildRelation(rsw.getResultSet(), metaResultObject, propertyMapping);   // TODO is that OK?
             // 返回占位符对象
             return DEFERED;
         } else {
-            final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
             final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
+            final TypeHandler<?> typeHandler = rsw.resolveUnknownTypeHandler(propertyMapping.getTypeHandler(), column);
             // 使用 TypeHandler 对象获取属性值
-            return typeHandler.getResult(rs, column);
+            return typeHandler.getResult(rsw.getResultSet(), column);
         }
     }
 
@@ -620,7 +695,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                     final Class<?> propertyType = metaObject.getSetterType(property);
                     if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
                         final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
+                        autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive(),
+                                getPrimitiveSetter(metaObject, property, typeHandler)));
                     } else {
                         configuration.getAutoMappingUnknownColumnBehavior()
                                 .doAction(mappedStatement, columnName, property, propertyType);
@@ -643,6 +719,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (autoMapping.size() > 0) {
             for (UnMappedColumnAutoMapping mapping : autoMapping) {
 
+                // 基本类型属性直接读取基本类型值并赋值，避免装箱
+                if (mapping.primitiveSetter != null && mapping.primitiveSetter.getTargetType().isInstance(metaObject.getOriginalObject())) {
+                    if (applyPrimitiveValue(rsw.getResultSet(), mapping.column, mapping.typeHandler, mapping.primitiveSetter, metaObject.getOriginalObject())) {
+                        foundValues = true;
+                    }
+                    continue;
+                }
+
                 // 使用 TypeHandler 获取自动映射的列值
                 final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
 
@@ -661,6 +745,81 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         return foundValues;
     }
 
+    //
+    // PRIMITIVE PROPERTIES
+    //
+
+    // 只映射一列的明确映射才走快速路径，结果按 ResultMapping 缓存
+    private PrimitiveSetter getPrimitiveSetter(MetaObject metaObject, ResultMapping propertyMapping, String column) {
+        PrimitiveSetter setter;
+        if (primitiveSettersCache.containsKey(propertyMapping)) {
+            setter = primitiveSettersCache.get(propertyMapping);
+        } else {
+            setter = null;
+            if (column != null && propertyMapping.getProperty() != null && propertyMapping.getNestedQueryId() == null
+                    && propertyMapping.getResultSet() == null && !propertyMapping.isCompositeResult()) {
+                setter = getPrimitiveSetter(metaObject, propertyMapping.getProperty(), propertyMapping.getTypeHandler());
+            }
+            primitiveSettersCache.put(propertyMapping, setter);
+        }
+        return setter != null && setter.getTargetType().isInstance(metaObject.getOriginalObject()) ? setter : null;
+    }
+
+    // 属性是基本类型且 TypeHandler 能直接读取该基本类型时，返回对应的 PrimitiveSetter，否则返回null
+    private PrimitiveSetter getPrimitiveSetter(MetaObject metaObject, String property, TypeHandler<?> typeHandler) {
+        if (!(metaObject.getObjectWrapper() instanceof BeanWrapper) || property.indexOf('.') >= 0 || property.indexOf('[') >= 0
+                || !PrimitiveTypeHandler.isDeclaredBy(typeHandler)) {
+            return null;
+        }
+        final PrimitiveSetter setter = reflectorFactory.findForClass(metaObject.getOriginalObject().getClass()).getPrimitiveSetter(property);
+        if (setter == null) {
+            return null;
+        }
+        final Class<?> type = setter.getType();
+        if ((type == int.class && typeHandler instanceof PrimitiveTypeHandler.OfInt)
+                || (type == long.class && typeHandler instanceof PrimitiveTypeHandler.OfLong)
+                || (type == double.class && typeHandler instanceof PrimitiveTypeHandler.OfDouble)
+                || (type == boolean.class && typeHandler instanceof PrimitiveTypeHandler.OfBoolean)) {
+            return setter;
+        }
+        return null;
+    }
+
+    // 读取基本类型列值并赋给属性，列值为null时保留属性原值，返回是否读到了非null值
+    private boolean applyPrimitiveValue(ResultSet rs, String column, TypeHandler<?> typeHandler, PrimitiveSetter setter, Object target) throws SQLException {
+        final Class<?> type = setter.getType();
+        try {
+            if (type == int.class) {
+                final int value = ((PrimitiveTypeHandler.OfInt) typeHandler).getInt(rs, column);
+                if (!rs.wasNull()) {
+                    setter.setInt(target, value);
+                    return true;
+                }
+            } else if (type == long.class) {
+                final long value = ((PrimitiveTypeHandler.OfLong) typeHandler).getLong(rs, column);
+                if (!rs.wasNull()) {
+                    setter.setLong(target, value);
+                    return true;
+                }
+            } else if (type == double.class) {
+                final double value = ((PrimitiveTypeHandler.OfDouble) typeHandler).getDouble(rs, column);
+                if (!rs.wasNull()) {
+                    setter.setDouble(target, value);
+                    return true;
+                }
+            } else {
+                final boolean value = ((PrimitiveTypeHandler.OfBoolean) typeHandler).getBoolean(rs, column);
+                if (!rs.wasNull()) {
+                    setter.setBoolean(target, value);
+                    return true;
+                }
+            }
+        } catch (SQLException e) {
+            throw new ResultMapException("Error attempting to get column '" + column + "' from result set.  Cause: " + e, e);
+        }
+        return false;
+    }
+
     // MULTIPLE RESULT SETS
 
     // 将映射的结果设置到外层对象的相应属性中
@@ -827,8 +986,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 }
                 /// 直接获取该列的值，然后经过 TypeHandler 对象的转换，得到构造函数的实参
                 else {
-                    final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-                    value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+                    final String prefixedColumn = prependPrefix(column, columnPrefix);
+                    final TypeHandler<?> typeHandler = rsw.resolveUnknownTypeHandler(constructorMapping.getTypeHandler(), prefixedColumn);
+                    value = typeHandler.getResult(rsw.getResultSet(), prefixedColumn);
                 }
             } catch (ResultMapException e) {
                 throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -844,48 +1004,135 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
 
         // 通过 ObjectFactory 调用匹配的构造函数，创建结果对象
-        return foundValues ? objectFactory.create(resultType, constructorArgTypes, constructorArgs) : null;
+        if (!foundValues) {
+            return null;
+        }
+        final MethodHandle instantiator = getConstructorHandle(resultType, constructorArgTypes);
+        return instantiate(resultType, instantiator, instantiator == null ? null : boxArgTypes(constructorArgTypes), constructorArgTypes, constructorArgs);
     }
 
-    // 查找合适的构造函数，并创建结果对象
+    // 查找合适的构造函数，并创建结果对象；选定的构造函数和各参数的取值方式按结果集缓存
     private Object createByConstructorSignature(ResultSetWrapper rsw,
                                                 Class<?> resultType,
                                                 List<Class<?>> constructorArgTypes,
                                                 List<Object> constructorArgs,
                                                 String columnPrefix) throws SQLException {
 
+        final String planKey = resultType.getName() + ":" + columnPrefix;
+        ConstructorPlan plan = constructorPlansCache.get(planKey);
+        if (plan == null || plan.rsw != rsw) {
+            plan = createConstructorPlan(rsw, resultType, findConstructorBySignature(rsw, resultType), columnPrefix);
+            constructorPlansCache.put(planKey, plan);
+        }
+        return createUsingConstructor(rsw, resultType, constructorArgTypes, constructorArgs, plan);
+    }
+
+    private Constructor<?> findConstructorBySignature(ResultSetWrapper rsw, Class<?> resultType) {
         final Constructor<?>[] constructors = resultType.getDeclaredConstructors();
         final Constructor<?> annotatedConstructor = findAnnotatedConstructor(constructors);
         if (annotatedConstructor != null) {
-            return createUsingConstructor(rsw, resultType, constructorArgTypes, constructorArgs, columnPrefix, annotatedConstructor);
+            return annotatedConstructor;
         } else {
             for (Constructor<?> constructor : constructors) {
                 if (allowedConstructor(constructor, rsw.getClassNames())) {
-                    return createUsingConstructor(rsw, resultType, constructorArgTypes, constructorArgs, columnPrefix, constructor);
+                    return constructor;
                 }
             }
         }
         throw new ExecutorException("No constructor found in " + resultType.getName() + " matching " + rsw.getClassNames());
     }
 
+    private ConstructorPlan createConstructorPlan(ResultSetWrapper rsw, Class<?> resultType, Constructor<?> constructor, String columnPrefix) {
+        final Class<?>[] parameterTypes = constructor.getParameterTypes();
+        final List<String> columnNames = rsw.getColumnNames();
+        final String[] columns = new String[parameterTypes.length];
+        final int[] columnIndexes = new int[parameterTypes.length];
+        final TypeHandler<?>[] typeHandlers = new TypeHandler<?>[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            String columnName = columnNames.get(i);
+            columns[i] = prependPrefix(columnName, columnPrefix);
+            typeHandlers[i] = rsw.getTypeHandler(parameterTypes[i], columnName);
+            if ((columnPrefix == null || columnPrefix.isEmpty()) && isUniqueColumn(columnNames, i)) {
+                columnIndexes[i] = i + 1;
+            }
+        }
+        final List<Class<?>> argTypes = Collections.unmodifiableList(Arrays.asList(parameterTypes));
+        return new ConstructorPlan(rsw, argTypes, boxArgTypes(argTypes), columns, columnIndexes, typeHandlers, getConstructorHandle(resultType, argTypes));
+    }
+
+    private Class<?>[] boxArgTypes(List<Class<?>> argTypes) {
+        final Class<?>[] boxedArgTypes = new Class<?>[argTypes.size()];
+        for (int i = 0; i < boxedArgTypes.length; i++) {
+            final Class<?> argType = argTypes.get(i);
+            boxedArgTypes[i] = argType.isPrimitive() ? primitiveTypes.getWrapper(argType) : argType;
+        }
+        return boxedArgTypes;
+    }
+
+    // 按列名读取时驱动返回第一个同名列（不区分大小写），只有列名唯一时按下标读取的结果才一致
+    private boolean isUniqueColumn(List<String> columnNames, int index) {
+        final String columnName = columnNames.get(index);
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (i != index && columnNames.get(i).equalsIgnoreCase(columnName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Object createUsingConstructor(ResultSetWrapper rsw,
                                           Class<?> resultType,
                                           List<Class<?>> constructorArgTypes,
                                           List<Object> constructorArgs,
-                                          String columnPrefix,
-                                          Constructor<?> constructor) throws SQLException {
+                                          ConstructorPlan plan) throws SQLException {
 
         boolean foundValues = false;
-        for (int i = 0; i < constructor.getParameterTypes().length; i++) {
-            Class<?> parameterType = constructor.getParameterTypes()[i];
-            String columnName = rsw.getColumnNames().get(i);
-            TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-            Object value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(columnName, columnPrefix));
-            constructorArgTypes.add(parameterType);
+        final ResultSet rs = rsw.getResultSet();
+        for (int i = 0; i < plan.typeHandlers.length; i++) {
+            final Object value = plan.columnIndexes[i] > 0
+                    ? plan.typeHandlers[i].getResult(rs, plan.columnIndexes[i])
+                    : plan.typeHandlers[i].getResult(rs, plan.columns[i]);
             constructorArgs.add(value);
             foundValues = value != null || foundValues;
         }
-        return foundValues ? objectFactory.create(resultType, constructorArgTypes, constructorArgs) : null;
+        constructorArgTypes.addAll(plan.argTypes);
+        return foundValues ? instantiate(resultType, plan.instantiator, plan.boxedArgTypes, constructorArgTypes, constructorArgs) : null;
+    }
+
+    // 只有默认 ObjectFactory 才能绕过 ObjectFactory.create 直接调用构造方法
+    private MethodHandle getConstructorHandle(Class<?> resultType, List<Class<?>> argTypes) {
+        if (resultType == null || resultType.isInterface() || objectFactory.getClass() != DefaultObjectFactory.class) {
+            return null;
+        }
+        return reflectorFactory.findForClass(resultType).getConstructorHandle(argTypes);
+    }
+
+    private Object instantiate(Class<?> resultType, MethodHandle instantiator, Class<?>[] boxedArgTypes,
+                               List<Class<?>> constructorArgTypes, List<Object> constructorArgs) {
+        // 参数无法适配 MethodHandle 时（如基本类型参数为null）交给 ObjectFactory，以抛出与原先一致的异常
+        if (instantiator != null && isAdaptable(constructorArgTypes, boxedArgTypes, constructorArgs)) {
+            try {
+                return (Object) instantiator.invokeExact(constructorArgs.toArray());
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                // 构造方法本身抛出的异常，与 DefaultObjectFactory 一样包装，不再重复调用构造方法
+                throw new ReflectionException("Error instantiating " + resultType + " with types " + constructorArgTypes
+                        + " and values " + constructorArgs + ". Cause: " + t, t);
+            }
+        }
+        return objectFactory.create(resultType, constructorArgTypes, constructorArgs);
+    }
+
+    // MethodHandle 只做拆箱，不做基本类型之间的拓宽，因此基本类型参数要求值恰好是对应的包装类型（包装类型都是final的）
+    private boolean isAdaptable(List<Class<?>> argTypes, Class<?>[] boxedArgTypes, List<Object> args) {
+        for (int i = 0; i < boxedArgTypes.length; i++) {
+            final Object arg = args.get(i);
+            if (arg == null ? argTypes.get(i).isPrimitive() : !boxedArgTypes[i].isInstance(arg)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private Constructor<?> findAnnotatedConstructor(final Constructor<?>[] constructors) {
@@ -1115,16 +1362,21 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         final DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
         skipRows(rsw.getResultSet(), rowBounds);
         Object rowValue = previousRowValue;
+        // Cursor 总是按根对象分组返回，要求结果集按根对象的id排序
+        final boolean resultOrdered = mappedStatement.isResultOrdered() || streamingNestedResults;
         while (shouldProcessMoreRows(resultContext, rowBounds) && rsw.getResultSet().next()) {
             final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(rsw.getResultSet(), resultMap, null);
-            final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
+            final RowKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
             Object partialObject = nestedResultObjects.get(rowKey);
             // issue #577 && #542
-            if (mappedStatement.isResultOrdered()) {
+            if (resultOrdered) {
                 if (partialObject == null && rowValue != null) {
                     nestedResultObjects.clear();
                     storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
                 }
+                if (streamingNestedResults && partialObject == null && !nestedResultObjects.containsKey(rowKey)) {
+                    checkRootKeyNotFinished(discriminatedResultMap, rowKey);
+                }
                 rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
             } else {
                 rowValue = getRowValue(rsw, discriminatedResultMap, rowKey, null, partialObject);
@@ -1133,7 +1385,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 }
             }
         }
-        if (rowValue != null && mappedStatement.isResultOrdered() && shouldProcessMoreRows(resultContext, rowBounds)) {
+        if (rowValue != null && resultOrdered && shouldProcessMoreRows(resultContext, rowBounds)) {
             storeObject(resultHandler, resultContext, rowValue, parentMapping, rsw.getResultSet());
             previousRowValue = null;
         } else if (rowValue != null) {
@@ -1141,13 +1393,37 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
     }
 
+    private static final int MAX_FINISHED_ROOT_KEYS = 1024;
+
+    // 根对象的行又出现在它的分组之后，说明结果集没有按根对象id排序，继续执行会返回重复且不完整的对象
+    private void checkRootKeyNotFinished(ResultMap resultMap, RowKey rowKey) {
+        if (rowKey == RowKey.NULL_ROW_KEY) {
+            return;
+        }
+        if (finishedRootKeys == null) {
+            finishedRootKeys = new LinkedHashMap<RowKey, Boolean>(16, 0.75f, false) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<RowKey, Boolean> eldest) {
+                    return size() > MAX_FINISHED_ROOT_KEYS;
+                }
+            };
+        }
+        if (finishedRootKeys.put(rowKey, Boolean.TRUE) != null) {
+            throw new ExecutorException("Rows of the result map '" + resultMap.getId() + "' in statement '" + mappedStatement.getId()
+                    + "' are not grouped by its id columns, so nested results cannot be streamed through a Cursor. "
+                    + "Add an ORDER BY on the id columns of '" + resultMap.getId() + "' to the query.");
+        }
+    }
+
     //
     // GET VALUE FROM ROW FOR NESTED RESULT MAP
     //
 
     private Object getRowValue(ResultSetWrapper rsw,
                                ResultMap resultMap,
-                               CacheKey combinedKey,
+                               RowKey combinedKey,
                                String columnPrefix,
                                Object partialObject) throws SQLException {
 
@@ -1174,7 +1450,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 foundValues = lazyLoader.size() > 0 || foundValues;
                 rowValue = (foundValues || configuration.isReturnInstanceForEmptyRow()) ? rowValue : null;
             }
-            if (combinedKey != CacheKey.NULL_CACHE_KEY) {
+            if (combinedKey != RowKey.NULL_ROW_KEY) {
                 nestedResultObjects.put(combinedKey, rowValue);
             }
         }
@@ -1194,7 +1470,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                                               ResultMap resultMap,
                                               MetaObject metaObject,
                                               String parentPrefix,
-                                              CacheKey parentRowKey,
+                                              RowKey parentRowKey,
                                               boolean newObject) {
 
         boolean foundValues = false;
@@ -1223,9 +1499,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                         }
                     }
 
-                    // 为嵌套对象创建 CacheKey 对象
-                    final CacheKey rowKey = createRowKey(nestedResultMap, rsw, columnPrefix);
-                    final CacheKey combinedKey = combineKeys(rowKey, parentRowKey);
+                    // 为嵌套对象创建行标识，并与外层对象的行标识合并
+                    final RowKey combinedKey = createRowKey(nestedResultMap, rsw, columnPrefix).withParent(parentRowKey);
                     Object rowValue = nestedResultObjects.get(combinedKey);
                     boolean knownValue = (rowValue != null);
 
@@ -1293,43 +1568,56 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     // UNIQUE RESULT KEY
     //
 
-    private CacheKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
-        final CacheKey cacheKey = new CacheKey();
-        cacheKey.update(resultMap.getId());
-        List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
-        if (resultMappings.size() == 0) {
-            if (Map.class.isAssignableFrom(resultMap.getType())) {
-                createRowKeyForMap(rsw, cacheKey);
+    private RowKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+        final RowKeyPlan plan = getRowKeyPlan(resultMap, rsw, columnPrefix);
+        final int size = plan.columns.length;
+        if (size == 0) {
+            return RowKey.NULL_ROW_KEY;
+        }
+        final ResultSet rs = rsw.getResultSet();
+        final Object[] values = new Object[size];
+        boolean foundValues = plan.keyEmptyRow;
+        for (int i = 0; i < size; i++) {
+            final TypeHandler<?> th = plan.typeHandlers[i];
+            final Object value = th == null ? rs.getString(plan.columns[i]) : th.getResult(rs, plan.columns[i]);
+            values[i] = value;
+            foundValues = foundValues || value != null;
+        }
+        return foundValues ? new RowKey(plan.resultMapId, plan.columns, values, null) : RowKey.NULL_ROW_KEY;
+    }
+
+    // 行标识读取的列只由 ResultMap、列前缀和结果集的列决定，每个结果集只计算一次
+    private RowKeyPlan getRowKeyPlan(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+        Map<String, RowKeyPlan> plans = rowKeyPlansCache.get(resultMap);
+        if (plans == null) {
+            plans = new HashMap<>();
+            rowKeyPlansCache.put(resultMap, plans);
+        }
+        RowKeyPlan plan = plans.get(columnPrefix);
+        if (plan == null || plan.rsw != rsw) {
+            final List<String> columns = new ArrayList<>();
+            final List<TypeHandler<?>> typeHandlers = new ArrayList<>();
+            List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
+            if (resultMappings.size() == 0) {
+                if (Map.class.isAssignableFrom(resultMap.getType())) {
+                    createRowKeyForMap(rsw, columns, typeHandlers);
+                } else {
+                    createRowKeyForUnmappedProperties(resultMap, rsw, columns, typeHandlers, columnPrefix);
+                }
             } else {
-                createRowKeyForUnmappedProperties(resultMap, rsw, cacheKey, columnPrefix);
+                createRowKeyForMappedProperties(resultMap, rsw, columns, typeHandlers, resultMappings, columnPrefix);
             }
-        } else {
-            createRowKeyForMappedProperties(resultMap, rsw, cacheKey, resultMappings, columnPrefix);
-        }
-        if (cacheKey.getUpdateCount() < 2) {
-            return CacheKey.NULL_CACHE_KEY;
-        }
-        return cacheKey;
-    }
-
-    // 与外层对象的CacheKey合井，获取嵌套对象的真正CacheKey
-    private CacheKey combineKeys(CacheKey rowKey, CacheKey parentRowKey) {
-
-        if (rowKey.getUpdateCount() > 1 && parentRowKey.getUpdateCount() > 1) {
-            CacheKey combinedKey;
-            try {
-                combinedKey = rowKey.clone();
-            } catch (CloneNotSupportedException e) {
-                throw new ExecutorException("Error cloning cache key.  Cause: " + e, e);
+            boolean keyEmptyRow = false;
+            if (configuration.isReturnInstanceForEmptyRow()) {
+                for (TypeHandler<?> typeHandler : typeHandlers) {
+                    keyEmptyRow = keyEmptyRow || typeHandler != null;
+                }
             }
-
-            // 与外层对象的CacheKey合并，形成嵌套对象最终的CacheKey
-            combinedKey.update(parentRowKey);
-
-            return combinedKey;
+            plan = new RowKeyPlan(rsw, resultMap.getId(), columns.toArray(new String[0]),
+                    typeHandlers.toArray(new TypeHandler<?>[0]), keyEmptyRow);
+            plans.put(columnPrefix, plan);
         }
-
-        return CacheKey.NULL_CACHE_KEY;
+        return plan;
     }
 
     private List<ResultMapping> getResultMappingsForRowKey(ResultMap resultMap) {
@@ -1342,7 +1630,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     private void createRowKeyForMappedProperties(ResultMap resultMap,
                                                  ResultSetWrapper rsw,
-                                                 CacheKey cacheKey,
+                                                 List<String> columns,
+                                                 List<TypeHandler<?>> typeHandlers,
                                                  List<ResultMapping> resultMappings,
                                                  String columnPrefix) throws SQLException {
 
@@ -1350,19 +1639,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
             if (resultMapping.getNestedResultMapId() != null && resultMapping.getResultSet() == null) {
                 // Issue #392
                 final ResultMap nestedResultMap = configuration.getResultMap(resultMapping.getNestedResultMapId());
-                createRowKeyForMappedProperties(nestedResultMap, rsw, cacheKey, nestedResultMap.getConstructorResultMappings(),
+                createRowKeyForMappedProperties(nestedResultMap, rsw, columns, typeHandlers, nestedResultMap.getConstructorResultMappings(),
                         prependPrefix(resultMapping.getColumnPrefix(), columnPrefix));
             } else if (resultMapping.getNestedQueryId() == null) {
                 final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
-                final TypeHandler<?> th = resultMapping.getTypeHandler();
                 List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
                 // Issue #114
                 if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-                    final Object value = th.getResult(rsw.getResultSet(), column);
-                    if (value != null || configuration.isReturnInstanceForEmptyRow()) {
-                        cacheKey.update(column);
-                        cacheKey.update(value);
-                    }
+                    columns.add(column);
+                    typeHandlers.add(rsw.resolveUnknownTypeHandler(resultMapping.getTypeHandler(), column));
                 }
             }
         }
@@ -1370,7 +1655,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
     private void createRowKeyForUnmappedProperties(ResultMap resultMap,
                                                    ResultSetWrapper rsw,
-                                                   CacheKey cacheKey,
+                                                   List<String> columns,
+                                                   List<TypeHandler<?>> typeHandlers,
                                                    String columnPrefix) throws SQLException {
 
         final MetaClass metaType = MetaClass.forClass(resultMap.getType(), reflectorFactory);
@@ -1386,23 +1672,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
                 }
             }
             if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-                String value = rsw.getResultSet().getString(column);
-                if (value != null) {
-                    cacheKey.update(column);
-                    cacheKey.update(value);
-                }
+                columns.add(column);
+                typeHandlers.add(null);
             }
         }
     }
 
-    private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
-        List<String> columnNames = rsw.getColumnNames();
-        for (String columnName : columnNames) {
-            final String value = rsw.getResultSet().getString(columnName);
-            if (value != null) {
-                cacheKey.update(columnName);
-                cacheKey.update(value);
-            }
+    private void createRowKeyForMap(ResultSetWrapper rsw, List<String> columns, List<TypeHandler<?>> typeHandlers) {
+        for (String columnName : rsw.getColumnNames()) {
+            columns.add(columnName);
+            typeHandlers.add(null);
         }
     }
 
@@ -56,6 +56,8 @@ public class ResultSetWrapper {
 
     // 记录每列对应的 TypeHandler 对象，key是列名，value是TypeHandler集合
     private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
+    // 记录使用 UnknownTypeHandler 的列实际解析出的 TypeHandler，key是列名
+    private final Map<String, TypeHandler<?>> unknownTypeHandlerMap = new HashMap<>();
     // 记录已映射的列名，key是ResultMap对象的id，value是该ResultMap对象映射的列名集合
     private Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
     // 记录未映射的列名
@@ -137,6 +139,26 @@ public class ResultSetWrapper {
         return handler;
     }
 
+    /**
+     * 若映射配置的是 UnknownTypeHandler，则按列解析一次实际的 TypeHandler 并缓存，
+     * 避免 UnknownTypeHandler 每读取一个值都查询一次 ResultSetMetaData
+     *
+     * @param typeHandler 映射配置的 TypeHandler
+     * @param columnName
+     * @return
+     */
+    public TypeHandler<?> resolveUnknownTypeHandler(TypeHandler<?> typeHandler, String columnName) {
+        if (!(typeHandler instanceof UnknownTypeHandler) || columnName == null) {
+            return typeHandler;
+        }
+        TypeHandler<?> handler = unknownTypeHandlerMap.get(columnName);
+        if (handler == null) {
+            handler = ((UnknownTypeHandler) typeHandler).resolveResultTypeHandler(resultSet, columnName);
+            unknownTypeHandlerMap.put(columnName, handler);
+        }
+        return handler;
+    }
+
     private Class<?> resolveClass(String className) {
         try {
             // #699 className could be null
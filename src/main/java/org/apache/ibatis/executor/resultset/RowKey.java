@@ -0,0 +1,97 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Arrays;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * 嵌套映射中一行记录的唯一标识
+ * 保存参与比较的列名和列值，列名数组与 RowKeyPlan 共享；同一个 ResultMap 以不同列前缀出现时列名不同，标识也不同；
+ * 嵌套对象的标识直接引用外层对象的标识，哈希值在创建时计算一次，比较时不再复制和遍历 CacheKey 的更新列表
+ */
+final class RowKey {
+
+    // 没有任何可用于区分记录的列值，这样的记录不会被合并
+    static final RowKey NULL_ROW_KEY = new RowKey(null, new String[0], new Object[0], null);
+
+    private final String resultMapId;
+    // 带前缀的列名，与 values 一一对应
+    private final String[] columns;
+    private final Object[] values;
+    private final RowKey parent;
+    private final int hashCode;
+
+    RowKey(String resultMapId, String[] columns, Object[] values, RowKey parent) {
+        this.resultMapId = resultMapId;
+        this.columns = columns;
+        this.values = values;
+        this.parent = parent;
+        int hash = resultMapId == null ? 0 : resultMapId.hashCode();
+        for (int i = 0; i < values.length; i++) {
+            hash = 31 * (31 * hash + columns[i].hashCode()) + ArrayUtil.hashCode(values[i]);
+        }
+        this.hashCode = parent == null ? hash : 31 * hash + parent.hashCode;
+    }
+
+    /**
+     * 与外层对象的标识合并，列值数组是只读的，可以直接共享
+     */
+    RowKey withParent(RowKey parent) {
+        if (this == NULL_ROW_KEY || parent == NULL_ROW_KEY) {
+            return NULL_ROW_KEY;
+        }
+        return new RowKey(resultMapId, columns, values, parent);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof RowKey)) {
+            return false;
+        }
+        final RowKey that = (RowKey) object;
+        if (hashCode != that.hashCode || values.length != that.values.length) {
+            return false;
+        }
+        if (resultMapId == null ? that.resultMapId != null : !resultMapId.equals(that.resultMapId)) {
+            return false;
+        }
+        // 同一个结果集中同一个 RowKeyPlan 生成的标识共享列名数组
+        if (columns != that.columns && !Arrays.equals(columns, that.columns)) {
+            return false;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!ArrayUtil.equals(values[i], that.values[i])) {
+                return false;
+            }
+        }
+        return parent == null ? that.parent == null : parent.equals(that.parent);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return resultMapId + ":" + Arrays.toString(columns) + "=" + Arrays.deepToString(values) + (parent == null ? "" : " <- " + parent);
+    }
+}
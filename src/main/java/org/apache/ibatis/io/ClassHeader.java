@@ -0,0 +1,217 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * class文件头信息
+ * 直接从字节码中读取类名、父类、接口和类上的运行时注解，不触发类加载
+ */
+final class ClassHeader {
+
+    private static final int MAGIC = 0xCAFEBABE;
+
+    private final String name;
+    private final String superName;
+    private final List<String> interfaces;
+    private final List<String> annotations;
+
+    private ClassHeader(String name, String superName, List<String> interfaces, List<String> annotations) {
+        this.name = name;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.annotations = annotations;
+    }
+
+    /**
+     * 类的全限定名，如 java.lang.String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 父类的全限定名，java.lang.Object 和 module-info 为null
+     */
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    /**
+     * 类上 RetentionPolicy.RUNTIME 注解的全限定名
+     */
+    public List<String> getAnnotations() {
+        return annotations;
+    }
+
+    public static ClassHeader read(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        // minor_version, major_version
+        in.skipBytes(4);
+
+        /// 读取常量池，只保留 Utf8 和 Class 两种常量
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int[] classes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:
+                    classes[i] = in.readUnsignedShort();
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    // long 和 double 占两个常量池槽位
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        // access_flags
+        in.skipBytes(2);
+        String name = className(utf8, classes, in.readUnsignedShort());
+        String superName = className(utf8, classes, in.readUnsignedShort());
+        int interfaceCount = in.readUnsignedShort();
+        List<String> interfaces = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces.add(className(utf8, classes, in.readUnsignedShort()));
+        }
+
+        // 跳过字段和方法
+        skipMembers(in);
+        skipMembers(in);
+
+        List<String> annotations = Collections.emptyList();
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            String attributeName = utf8[in.readUnsignedShort()];
+            int length = in.readInt();
+            if ("RuntimeVisibleAnnotations".equals(attributeName)) {
+                int annotationCount = in.readUnsignedShort();
+                annotations = new ArrayList<>(annotationCount);
+                for (int j = 0; j < annotationCount; j++) {
+                    annotations.add(descriptorToName(utf8[in.readUnsignedShort()]));
+                    skipElementValuePairs(in);
+                }
+            } else {
+                skipFully(in, length);
+            }
+        }
+        return new ClassHeader(name, superName, interfaces, annotations);
+    }
+
+    private static String className(String[] utf8, int[] classes, int index) {
+        return index == 0 ? null : utf8[classes[index]].replace('/', '.');
+    }
+
+    // Ljava/lang/Deprecated; -> java.lang.Deprecated
+    private static String descriptorToName(String descriptor) {
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    private static void skipMembers(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            // access_flags, name_index, descriptor_index
+            in.skipBytes(6);
+            int attributeCount = in.readUnsignedShort();
+            for (int j = 0; j < attributeCount; j++) {
+                in.skipBytes(2);
+                skipFully(in, in.readInt());
+            }
+        }
+    }
+
+    private static void skipElementValuePairs(DataInputStream in) throws IOException {
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            in.skipBytes(2);
+            skipElementValue(in);
+        }
+    }
+
+    private static void skipElementValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e':
+                in.skipBytes(4);
+                break;
+            case '@':
+                in.skipBytes(2);
+                skipElementValuePairs(in);
+                break;
+            case '[':
+                int values = in.readUnsignedShort();
+                for (int i = 0; i < values; i++) {
+                    skipElementValue(in);
+                }
+                break;
+            default:
+                // 基本类型、String 和 Class
+                in.skipBytes(2);
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of class file");
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -27,8 +27,13 @@ import java.net.URL;
 import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 
 import org.apache.ibatis.logging.Log;
@@ -49,6 +54,11 @@ public class DefaultVFS extends VFS {
      */
     private static final byte[] JAR_MAGIC = {'P', 'K', 3, 4};
 
+    /**
+     * 已读取过的 Jar 包条目列表，key 为 Jar 包的 URL
+     */
+    private static final Map<String, JarListing> jarListings = new ConcurrentHashMap<>();
+
     @Override
     public boolean isValid() {
         return true;
@@ -66,12 +76,11 @@ public class DefaultVFS extends VFS {
             // 如果 url 指向的资源在一个 Jar 包中，则获取该 Jar 包对应的 URL ，否则返回 null
             URL jarUrl = findJarForResource(url);
             if (jarUrl != null) {
-                is = jarUrl.openStream();
                 if (log.isDebugEnabled()) {
                     log.debug("Listing " + url);
                 }
                 // 遍历 Jar 中的资源，并返回以 path 开头的资源列表
-                resources = listResources(new JarInputStream(is), path);
+                resources = listResources(getJarEntries(jarUrl), path);
             } else {
                 // 遍历 url 指向的目录，将其下资源名称记录到 children 集合
                 List<String> children = new ArrayList<>();
@@ -174,6 +183,84 @@ public class DefaultVFS extends VFS {
         }
     }
 
+    /**
+     * 获取 Jar 包中所有文件条目的名称
+     * 本地 Jar 文件通过 JarFile 读取末尾的中央目录，无需顺序读取整个文件；结果按 Jar 缓存，文件变化后重新读取
+     *
+     * @param jarUrl The URL of the JAR file
+     * @return The names of all the file entries in the JAR
+     * @throws IOException If I/O errors occur
+     */
+    protected List<String> getJarEntries(URL jarUrl) throws IOException {
+        String key = jarUrl.toExternalForm();
+        File file = "file".equals(jarUrl.getProtocol()) ? toFile(jarUrl) : null;
+        long stamp = file != null ? file.lastModified() ^ file.length() : 0;
+        JarListing listing = jarListings.get(key);
+        if (listing != null && listing.stamp == stamp) {
+            return listing.entries;
+        }
+
+        List<String> entries = new ArrayList<>();
+        if (file != null && file.isFile()) {
+            try (JarFile jar = new JarFile(file, false)) {
+                for (Enumeration<JarEntry> e = jar.entries(); e.hasMoreElements(); ) {
+                    JarEntry entry = e.nextElement();
+                    if (!entry.isDirectory()) {
+                        entries.add(entry.getName());
+                    }
+                }
+            }
+        } else {
+            try (JarInputStream jar = new JarInputStream(jarUrl.openStream())) {
+                for (JarEntry entry; (entry = jar.getNextJarEntry()) != null; ) {
+                    if (!entry.isDirectory()) {
+                        entries.add(entry.getName());
+                    }
+                }
+            }
+        }
+        entries = Collections.unmodifiableList(entries);
+        jarListings.put(key, new JarListing(stamp, entries));
+        return entries;
+    }
+
+    private File toFile(URL url) {
+        try {
+            return new File(url.toURI());
+        } catch (Exception e) {
+            return new File(url.getFile());
+        }
+    }
+
+    /**
+     * List the names of the given JAR entries that begin with the specified {@code path}.
+     * Entries will match with or without a leading slash.
+     *
+     * @param entries The names of the JAR entries
+     * @param path    The leading path to match
+     * @return The names of all the matching entries
+     */
+    protected List<String> listResources(List<String> entries, String path) {
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        if (!path.endsWith("/")) {
+            path = path + "/";
+        }
+
+        List<String> resources = new ArrayList<>();
+        for (String entry : entries) {
+            String name = entry.startsWith("/") ? entry : "/" + entry;
+            if (name.startsWith(path)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Found resource: " + name);
+                }
+                resources.add(name.substring(1));
+            }
+        }
+        return resources;
+    }
+
     /**
      * List the names of the entries in the given {@link JarInputStream} that begin with the
      * specified {@code path}. Entries will match with or without a leading slash.
@@ -355,4 +442,15 @@ public class DefaultVFS extends VFS {
 
         return false;
     }
+
+    private static class JarListing {
+        // 本地文件的修改时间和长度，用于判断缓存是否失效
+        final long stamp;
+        final List<String> entries;
+
+        JarListing(long stamp, List<String> entries) {
+            this.stamp = stamp;
+            this.entries = entries;
+        }
+    }
 }
@@ -15,10 +15,20 @@
  */
 package org.apache.ibatis.io;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
+import java.lang.annotation.Inherited;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.ibatis.logging.Log;
@@ -63,6 +73,11 @@ public class ResolverUtil<T> {
 
     private static final Log log = LogFactory.getLog(ResolverUtil.class);
 
+    /**
+     * 构建期生成的类索引文件
+     */
+    public static final String INDEX_RESOURCE = "META-INF/mybatis.index";
+
     /**
      * 定义检查class是否匹配的方法
      * A simple interface that specifies how to test classes to determine if they
@@ -145,6 +160,9 @@ public class ResolverUtil<T> {
      */
     private ClassLoader classloader;
 
+    // 已读取过的父类型文件头，同一次扫描中共享
+    private final Map<String, ClassHeader> headers = new HashMap<>();
+
     /**
      * Provides access to the classes discovered so far. If no calls have been made to
      * any of the {@code find()} methods, this set will be empty.
@@ -234,7 +252,10 @@ public class ResolverUtil<T> {
         String path = getPackagePath(packageName);
 
         try {
-            List<String> children = VFS.getInstance().list(path);
+            List<String> children = listFromIndex(path);
+            if (children == null) {
+                children = VFS.getInstance().list(path);
+            }
 
             for (String child : children) {
                 if (child.endsWith(".class")) {
@@ -250,6 +271,59 @@ public class ResolverUtil<T> {
         return this;
     }
 
+    /**
+     * 从构建期生成的索引文件 META-INF/mybatis.index 中查找指定路径下的类
+     * 索引文件每行一个类的全限定名，#开头的行为注释；类路径上没有索引文件时返回null，此时回退为VFS扫描
+     * 注意：索引只代表它所在的类路径根（目录或JAR），其它没有索引的根下的类仍通过VFS扫描
+     */
+    protected List<String> listFromIndex(String path) throws IOException {
+        Enumeration<URL> indexes = getClassLoader().getResources(INDEX_RESOURCE);
+        if (!indexes.hasMoreElements()) {
+            return null;
+        }
+        String prefix = path.endsWith("/") ? path : path + "/";
+        List<String> children = new ArrayList<>();
+        Set<String> indexedRoots = new HashSet<>();
+        while (indexes.hasMoreElements()) {
+            URL index = indexes.nextElement();
+            indexedRoots.add(rootOf(index, INDEX_RESOURCE));
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        String resource = line.replace('.', '/') + ".class";
+                        if (resource.startsWith(prefix)) {
+                            children.add(resource);
+                        }
+                    }
+                }
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Found " + children.size() + " indexed classes in " + path);
+        }
+
+        /// 没有索引的类路径根仍需VFS扫描
+        Enumeration<URL> locations = getClassLoader().getResources(path);
+        while (locations.hasMoreElements()) {
+            URL location = locations.nextElement();
+            if (!indexedRoots.contains(rootOf(location, path))) {
+                children.addAll(VFS.getInstance().list(location, path));
+            }
+        }
+        return children;
+    }
+
+    // jar:file:/a.jar!/org/foo -> jar:file:/a.jar!/
+    private static String rootOf(URL url, String path) {
+        String externalForm = url.toExternalForm();
+        if (externalForm.endsWith("/")) {
+            externalForm = externalForm.substring(0, externalForm.length() - 1);
+        }
+        String suffix = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return externalForm.endsWith(suffix) ? externalForm.substring(0, externalForm.length() - suffix.length()) : externalForm;
+    }
+
     /**
      * 根据包名获取其对应的路径
      * Converts a Java package name to a path that can be looked up with a call to
@@ -278,6 +352,11 @@ public class ResolverUtil<T> {
                 log.debug("Checking to see if class " + externalName + " matches criteria [" + test + "]");
             }
 
+            // 先根据class文件头排除明显不匹配的类，避免加载它们
+            if (!mayMatch(test, fqn, loader)) {
+                return;
+            }
+
             Class<?> type = loader.loadClass(externalName);
             if (test.matches(type)) {
                 matches.add((Class<T>) type);
@@ -287,4 +366,72 @@ public class ResolverUtil<T> {
                     t.getClass().getName() + " with message: " + t.getMessage());
         }
     }
+
+    /**
+     * 读取class文件头判断类是否可能满足 IsA/AnnotatedWith 条件，不加载类
+     * 只在确定不匹配时返回false；无法判断（如父类的字节码不可读）时返回true，由加载后的 Test 做最终判断
+     */
+    protected boolean mayMatch(Test test, String fqn, ClassLoader loader) {
+        try {
+            if (test instanceof IsA) {
+                Class<?> parent = ((IsA) test).parent;
+                if (parent == Object.class) {
+                    return true;
+                }
+                ClassHeader header = readHeader(fqn, loader);
+                return header.getName().equals(parent.getName()) || isSubtype(header, parent.getName(), loader);
+            } else if (test instanceof AnnotatedWith) {
+                Class<? extends Annotation> annotation = ((AnnotatedWith) test).annotation;
+                ClassHeader header = readHeader(fqn, loader);
+                if (header.getAnnotations().contains(annotation.getName())) {
+                    return true;
+                }
+                // @Inherited 注解可能声明在父类上，交给 Class.isAnnotationPresent 判断
+                return annotation.isAnnotationPresent(Inherited.class) && header.getSuperName() != null
+                        && !"java.lang.Object".equals(header.getSuperName());
+            }
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Could not read class header of '" + fqn + "': " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private boolean isSubtype(ClassHeader header, String parentName, ClassLoader loader) throws IOException {
+        List<String> supertypes = new ArrayList<>(header.getInterfaces());
+        if (header.getSuperName() != null) {
+            supertypes.add(header.getSuperName());
+        }
+        for (String supertype : supertypes) {
+            if (supertype.equals(parentName)) {
+                return true;
+            }
+            // JDK 中的类不可能继承用户定义的类型
+            if (supertype.startsWith("java.") && !parentName.startsWith("java.")) {
+                continue;
+            }
+            ClassHeader superHeader = headers.get(supertype);
+            if (superHeader == null) {
+                superHeader = readHeader(supertype.replace('.', '/') + ".class", loader);
+                headers.put(supertype, superHeader);
+            }
+            if (isSubtype(superHeader, parentName, loader)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ClassHeader readHeader(String resource, ClassLoader loader) throws IOException {
+        InputStream in = loader.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Resource not found");
+        }
+        try {
+            return ClassHeader.read(in);
+        } finally {
+            in.close();
+        }
+    }
 }
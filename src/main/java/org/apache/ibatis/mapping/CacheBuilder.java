@@ -22,9 +22,12 @@ import java.util.Map;
 import java.util.Properties;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependencyIndex;
 import org.apache.ibatis.cache.CacheException;
 import org.apache.ibatis.builder.InitializingObject;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.DependencyTrackingCache;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
@@ -49,6 +52,7 @@ public class CacheBuilder {
     private boolean readWrite;
     private Properties properties;
     private boolean blocking;
+    private CacheDependencyIndex dependencyIndex;
 
     public CacheBuilder(String id) {
         this.id = id;
@@ -92,6 +96,14 @@ public class CacheBuilder {
         return this;
     }
 
+    /**
+     * 开启按表失效时传入，缓存项被淘汰或清空时同步删除索引中的依赖
+     */
+    public CacheBuilder dependencyIndex(CacheDependencyIndex dependencyIndex) {
+        this.dependencyIndex = dependencyIndex;
+        return this;
+    }
+
     /**
      * 创建缓存对象
      *
@@ -108,6 +120,10 @@ public class CacheBuilder {
         // issue #352, do not apply decorators to custom caches
         if (PerpetualCache.class.equals(cache.getClass())) {
 
+            // 放在淘汰装饰器之下，各种原因的移除都会经过它
+            if (dependencyIndex != null) {
+                cache = new DependencyTrackingCache(cache, dependencyIndex);
+            }
             for (Class<? extends Cache> decorator : decorators) {
                 cache = newCacheDecoratorInstance(decorator, cache);
                 setCacheProperties(cache);
@@ -144,6 +160,11 @@ public class CacheBuilder {
             if (readWrite) {
                 cache = new SerializedCache(cache);
             }
+            // 配置了 timeToLive 或 negativeTimeToLive 时每个缓存项单独过期，放在序列化之外，后台刷新得到的值同样会被序列化
+            if (properties != null && (properties.containsKey("timeToLive") || properties.containsKey("negativeTimeToLive"))) {
+                cache = new ExpiringCache(cache);
+                setCacheProperties(cache);
+            }
             cache = new LoggingCache(cache);
             cache = new SynchronizedCache(cache);
             if (blocking) {
@@ -18,7 +18,12 @@ package org.apache.ibatis.mapping;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.ibatis.builder.BuilderException;
+import org.apache.ibatis.builder.BulkInsertSqlSource;
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -26,6 +31,7 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
+import org.apache.ibatis.scripting.defaults.ParameterBindingPlan;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -55,6 +61,12 @@ public final class MappedStatement {
     private List<ResultMap> resultMaps;
     private boolean flushCacheRequired;
     private boolean useCache;
+    // 数据源支持读写分离时，是否允许在只读副本上执行
+    private boolean useReplica = true;
+    // 语句读写的表，开启表级缓存失效时使用，为null时由sql推断
+    private String[] tables;
+    // 与tables一一对应，表的主键对应的参数属性，为null表示整张表
+    private String[] tableKeyProperties;
 
     // 若为false，则在映射完一个结果集之后，nestedResultObjects集合中的记录才会被清空
     private boolean resultOrdered;
@@ -66,6 +78,10 @@ public final class MappedStatement {
     private Log statementLog;
     private LanguageDriver lang;
     private String[] resultSets;
+    // DefaultParameterHandler 按实参类型缓存的参数绑定计划
+    private final Map<Class<?>, ParameterBindingPlan> parameterBindingPlans = new ConcurrentHashMap<>();
+    // 由本语句推导出的多行批量插入语句，key是单行插入的sql
+    private final Map<String, MappedStatement> bulkInsertStatements = new ConcurrentHashMap<>();
 
     MappedStatement() {
         // constructor disabled
@@ -148,6 +164,38 @@ public final class MappedStatement {
             return this;
         }
 
+        public Builder useReplica(boolean useReplica) {
+            mappedStatement.useReplica = useReplica;
+            return this;
+        }
+
+        /**
+         * 语句读写的表，逗号分隔，表名后可在括号中指定主键对应的参数属性，如 "users(id), orders"
+         */
+        public Builder tables(String tables) {
+            if (tables == null || tables.trim().isEmpty()) {
+                mappedStatement.tables = null;
+                mappedStatement.tableKeyProperties = null;
+                return this;
+            }
+            String[] items = tables.split(",");
+            mappedStatement.tables = new String[items.length];
+            mappedStatement.tableKeyProperties = new String[items.length];
+            for (int i = 0; i < items.length; i++) {
+                String item = items[i].trim();
+                int open = item.indexOf('(');
+                if (open < 0) {
+                    mappedStatement.tables[i] = item.toLowerCase(Locale.ENGLISH);
+                } else if (item.endsWith(")")) {
+                    mappedStatement.tables[i] = item.substring(0, open).trim().toLowerCase(Locale.ENGLISH);
+                    mappedStatement.tableKeyProperties[i] = item.substring(open + 1, item.length() - 1).trim();
+                } else {
+                    throw new BuilderException("Invalid table '" + item + "' in statement '" + mappedStatement.id + "'.");
+                }
+            }
+            return this;
+        }
+
         public Builder resultOrdered(boolean resultOrdered) {
             mappedStatement.resultOrdered = resultOrdered;
             return this;
@@ -266,6 +314,18 @@ public final class MappedStatement {
         return useCache;
     }
 
+    public boolean isUseReplica() {
+        return useReplica;
+    }
+
+    public String[] getTables() {
+        return tables;
+    }
+
+    public String[] getTableKeyProperties() {
+        return tableKeyProperties;
+    }
+
     public boolean isResultOrdered() {
         return resultOrdered;
     }
@@ -323,6 +383,50 @@ public final class MappedStatement {
         return boundSql;
     }
 
+    /**
+     * 获取指定实参类型的参数绑定计划，使用自定义 ObjectWrapperFactory 时返回null
+     */
+    public ParameterBindingPlan getParameterBindingPlan(Class<?> parameterType) {
+        ParameterBindingPlan plan = parameterBindingPlans.get(parameterType);
+        if (plan == null) {
+            plan = ParameterBindingPlan.create(configuration, parameterType);
+            if (plan != null) {
+                parameterBindingPlans.put(parameterType, plan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 获取与单行插入sql对应的多行批量插入语句，除sql外的配置与本语句相同
+     */
+    public MappedStatement getBulkInsertStatement(BoundSql template) {
+        MappedStatement statement = bulkInsertStatements.get(template.getSql());
+        if (statement == null) {
+            if (sqlCommandType != SqlCommandType.INSERT || statementType != StatementType.PREPARED) {
+                throw new BuilderException("Statement '" + id + "' cannot be used for bulk insert: only prepared insert statements are supported.");
+            }
+            if (!(keyGenerator instanceof Jdbc3KeyGenerator) && !(keyGenerator instanceof NoKeyGenerator)) {
+                throw new BuilderException("Statement '" + id + "' cannot be used for bulk insert: only useGeneratedKeys is supported for generating keys.");
+            }
+            statement = new Builder(configuration, id, new BulkInsertSqlSource(configuration, id, template), sqlCommandType)
+                    .resource(resource)
+                    .timeout(timeout)
+                    .statementType(statementType)
+                    .keyGenerator(keyGenerator)
+                    .keyProperty(keyProperties == null ? null : String.join(",", keyProperties))
+                    .keyColumn(keyColumns == null ? null : String.join(",", keyColumns))
+                    .databaseId(databaseId)
+                    .lang(lang)
+                    .cache(cache)
+                    .flushCacheRequired(flushCacheRequired)
+                    .useCache(useCache)
+                    .build();
+            bulkInsertStatements.put(template.getSql(), statement);
+        }
+        return statement;
+    }
+
     private static String[] delimitedStringToArray(String in) {
         if (in == null || in.trim().length() == 0) {
             return null;
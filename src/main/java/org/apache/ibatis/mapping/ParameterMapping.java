@@ -21,6 +21,7 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.apache.ibatis.type.UnknownTypeHandler;
 
 /**
  * 记录 #{} 占位符的参数
@@ -49,6 +50,8 @@ public class ParameterMapping {
     private String jdbcTypeName;
     // 目前还不支持该属性
     private String expression;
+    // typeHandler 为 UnknownTypeHandler 时，最近一次按参数运行时类型解析出的处理器
+    private volatile ResolvedTypeHandler resolvedTypeHandler;
 
     private ParameterMapping() {
     }
@@ -191,6 +194,26 @@ public class ParameterMapping {
         return typeHandler;
     }
 
+    /**
+     * 绑定非null参数时实际使用的 TypeHandler
+     * typeHandler 为 UnknownTypeHandler 时按参数的运行时类型解析，同一位置的参数类型通常不变，因此只缓存最近一次的结果
+     *
+     * @param value 非null的参数值
+     * @return
+     */
+    public TypeHandler<?> getTypeHandler(Object value) {
+        if (value == null || !(typeHandler instanceof UnknownTypeHandler)) {
+            return typeHandler;
+        }
+        Class<?> valueType = value.getClass();
+        ResolvedTypeHandler resolved = resolvedTypeHandler;
+        if (resolved == null || resolved.type != valueType) {
+            resolved = new ResolvedTypeHandler(valueType, ((UnknownTypeHandler) typeHandler).resolveParameterTypeHandler(valueType, jdbcType));
+            resolvedTypeHandler = resolved;
+        }
+        return resolved.handler;
+    }
+
     /**
      * Used for handling output of callable statements
      *
@@ -234,4 +257,14 @@ public class ParameterMapping {
         sb.append('}');
         return sb.toString();
     }
+
+    private static class ResolvedTypeHandler {
+        final Class<?> type;
+        final TypeHandler<?> handler;
+
+        ResolvedTypeHandler(Class<?> type, TypeHandler<?> handler) {
+            this.type = type;
+            this.handler = handler;
+        }
+    }
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.parsing;
+
+import java.io.InputStream;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.ibatis.builder.BuilderException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * 基于StAX的DOM构建器
+ * 以流的方式读取xml，只构建元素、属性、文本和CDATA节点，不做DTD校验，
+ * 比校验模式下的 DocumentBuilder 更快、内存占用更少；构建出的 Document 可直接交给 XPathParser 使用
+ */
+public final class StaxDocumentBuilder {
+
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private StaxDocumentBuilder() {
+        // Prevent Instantiation
+    }
+
+    public static Document build(InputStream inputStream, final EntityResolver entityResolver) {
+        XMLStreamReader reader = null;
+        try {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            synchronized (inputFactory) {
+                // XMLInputFactory 的属性设置不是线程安全的
+                inputFactory.setXMLResolver(entityResolver == null ? null : new XMLResolver() {
+                    @Override
+                    public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) throws XMLStreamException {
+                        try {
+                            InputSource source = entityResolver.resolveEntity(publicID, systemID);
+                            return source == null ? null : source.getByteStream();
+                        } catch (Exception e) {
+                            throw new XMLStreamException(e);
+                        }
+                    }
+                });
+                reader = inputFactory.createXMLStreamReader(inputStream);
+            }
+            Node current = document;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        Element element = document.createElement(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                        for (int i = 0, n = reader.getAttributeCount(); i < n; i++) {
+                            element.setAttribute(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeValue(i));
+                        }
+                        current.appendChild(element);
+                        current = element;
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        current = current.getParentNode();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        if (current != document) {
+                            appendText(document, current, reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        current.appendChild(document.createCDATASection(reader.getText()));
+                        break;
+                    default:
+                        // 注释、处理指令和DOCTYPE不需要保留
+                }
+            }
+            return document;
+        } catch (Exception e) {
+            throw new BuilderException("Error creating document instance.  Cause: " + e, e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    // StAX 可能把一段连续的文本拆成多个事件，合并成一个文本节点以保持与 DocumentBuilder 的结果一致
+    private static void appendText(Document document, Node parent, String text) {
+        Node last = parent.getLastChild();
+        if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+            ((Text) last).appendData(text);
+        } else {
+            parent.appendChild(document.createTextNode(text));
+        }
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, true);
+        // JDK 自带的实现默认把 CDATA 作为普通文本上报，而 XMLIncludeTransformer 需要区分二者
+        if (factory.isPropertySupported(REPORT_CDATA)) {
+            factory.setProperty(REPORT_CDATA, true);
+        }
+        return factory;
+    }
+}
@@ -209,6 +209,12 @@ public class XPathParser {
 
     public List<XNode> evalNodes(Object root, String expression) {
         List<XNode> xnodes = new ArrayList<XNode>();
+        if (isSimplePath(expression) && root instanceof Node) {
+            for (Node node : selectSimplePath((Node) root, expression, false)) {
+                xnodes.add(new XNode(this, node, variables));
+            }
+            return xnodes;
+        }
         NodeList nodes = (NodeList) evaluate(expression, root, XPathConstants.NODESET);
         for (int i = 0; i < nodes.getLength(); i++) {
             xnodes.add(new XNode(this, nodes.item(i), variables));
@@ -221,13 +227,87 @@ public class XPathParser {
     }
 
     public XNode evalNode(Object root, String expression) {
-        Node node = (Node) evaluate(expression, root, XPathConstants.NODE);
+        Node node;
+        if (isSimplePath(expression) && root instanceof Node) {
+            List<Node> nodes = selectSimplePath((Node) root, expression, true);
+            node = nodes.isEmpty() ? null : nodes.get(0);
+        } else {
+            node = (Node) evaluate(expression, root, XPathConstants.NODE);
+        }
         if (node == null) {
             return null;
         }
         return new XNode(this, node, variables);
     }
 
+    /**
+     * 是否是只由元素名组成的简单路径，如 "cache"、"/mapper/resultMap"、"select|insert|update|delete"
+     * 这类路径直接遍历DOM子节点即可，无需编译和执行XPath表达式
+     */
+    private static boolean isSimplePath(String expression) {
+        if (expression.isEmpty() || expression.endsWith("/") || expression.contains("//")) {
+            return false;
+        }
+        boolean union = expression.indexOf('|') >= 0;
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '/') {
+                // 带路径的联合表达式交给XPath处理
+                if (union) {
+                    return false;
+                }
+            } else if (c == '|') {
+                if (i == 0 || i == expression.length() - 1 || expression.charAt(i - 1) == '|') {
+                    return false;
+                }
+            } else if (!(Character.isLetterOrDigit(c) || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按文档顺序查找简单路径匹配的元素
+     */
+    private static List<Node> selectSimplePath(Node root, String expression, boolean firstOnly) {
+        List<Node> current = new ArrayList<Node>();
+        String path = expression;
+        if (path.startsWith("/")) {
+            current.add(root.getNodeType() == Node.DOCUMENT_NODE ? root : root.getOwnerDocument());
+            path = path.substring(1);
+        } else {
+            current.add(root);
+        }
+        String[] steps = path.split("/");
+        for (int s = 0; s < steps.length; s++) {
+            String[] names = steps[s].split("\\|");
+            boolean last = s == steps.length - 1;
+            List<Node> next = new ArrayList<Node>();
+            for (Node parent : current) {
+                for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    if (child.getNodeType() == Node.ELEMENT_NODE && matchesAny(child.getNodeName(), names)) {
+                        next.add(child);
+                        if (last && firstOnly) {
+                            return next;
+                        }
+                    }
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static boolean matchesAny(String nodeName, String[] names) {
+        for (String name : names) {
+            if (name.equals(nodeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * 查找指定路径的节点或属性，并进行类型转换
      */
@@ -15,6 +15,9 @@
  */
 package org.apache.ibatis.reflection;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -31,10 +34,13 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
 import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetter;
 import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
 import org.apache.ibatis.reflection.property.PropertyNamer;
 
@@ -69,6 +75,12 @@ public class Reflector {
     // 记录了属性相应的 setter 方法的参数值类型
     private Map<String, Class<?>> setTypes = new HashMap<>();
 
+    // 基本类型属性的 PrimitiveSetter，第一次使用时创建
+    private final Map<String, PrimitiveSetter> primitiveSetters = new ConcurrentHashMap<>();
+
+    // 按参数类型缓存的构造方法 MethodHandle，无法使用时记录为 Optional.empty()
+    private final Map<List<Class<?>>, Optional<MethodHandle>> constructorHandles = new ConcurrentHashMap<>();
+
     // 记录了默认构造方法
     private Constructor<?> defaultConstructor;
     // 记录了所有属性名称的集合，大小写不敏感，都存为大写
@@ -489,6 +501,33 @@ public class Reflector {
         return defaultConstructor != null;
     }
 
+    /**
+     * 获取参数类型为 argTypes 的构造方法对应的 MethodHandle，类型已适配为 (Object[])Object；
+     * 找不到该构造方法或无法访问时返回null，由调用方回退到 ObjectFactory
+     */
+    public MethodHandle getConstructorHandle(List<Class<?>> argTypes) {
+        Optional<MethodHandle> handle = constructorHandles.get(argTypes);
+        if (handle == null) {
+            handle = Optional.ofNullable(findConstructorHandle(argTypes));
+            constructorHandles.put(new ArrayList<>(argTypes), handle);
+        }
+        return handle.orElse(null);
+    }
+
+    private MethodHandle findConstructorHandle(List<Class<?>> argTypes) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor(argTypes.toArray(new Class<?>[argTypes.size()]));
+            if (!constructor.isAccessible() && canAccessPrivateMethods()) {
+                constructor.setAccessible(true);
+            }
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, argTypes.size())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
     public Invoker getSetInvoker(String propertyName) {
         Invoker method = setMethods.get(propertyName);
         if (method == null) {
@@ -497,6 +536,24 @@ public class Reflector {
         return method;
     }
 
+    /**
+     * 获取基本类型属性的 PrimitiveSetter，属性不存在、不是基本类型或无法通过 MethodHandle 访问时返回null
+     */
+    public PrimitiveSetter getPrimitiveSetter(String propertyName) {
+        PrimitiveSetter setter = primitiveSetters.get(propertyName);
+        if (setter == null) {
+            Invoker invoker = setMethods.get(propertyName);
+            if (invoker == null) {
+                return null;
+            }
+            setter = PrimitiveSetter.forInvoker(type, propertyName, invoker);
+            if (setter != null) {
+                primitiveSetters.put(propertyName, setter);
+            }
+        }
+        return setter;
+    }
+
     public Invoker getGetInvoker(String propertyName) {
         Invoker method = getMethods.get(propertyName);
         if (method == null) {
@@ -0,0 +1,115 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import org.apache.ibatis.reflection.ReflectionException;
+
+/**
+ * 基本类型属性的setter
+ * 通过 MethodHandle 直接传入基本类型值，不经过 Object[] 参数和装箱
+ */
+public final class PrimitiveSetter {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private final Class<?> targetType;
+    private final String property;
+    private final Class<?> type;
+    // 类型已适配为 (Object, type)void
+    private final MethodHandle handle;
+
+    private PrimitiveSetter(Class<?> targetType, String property, Class<?> type, MethodHandle handle) {
+        this.targetType = targetType;
+        this.property = property;
+        this.type = type;
+        this.handle = handle;
+    }
+
+    /**
+     * 为 Reflector 中的 setter 创建 PrimitiveSetter，属性不是基本类型或无法访问时返回null
+     */
+    public static PrimitiveSetter forInvoker(Class<?> targetType, String property, Invoker invoker) {
+        Class<?> type = invoker.getType();
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        MethodHandle handle;
+        try {
+            if (invoker instanceof MethodInvoker) {
+                handle = LOOKUP.unreflect(((MethodInvoker) invoker).getMethod());
+            } else if (invoker instanceof SetFieldInvoker) {
+                handle = LOOKUP.unreflectSetter(((SetFieldInvoker) invoker).getField());
+            } else {
+                return null;
+            }
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+        return new PrimitiveSetter(targetType, property, type, handle.asType(MethodType.methodType(void.class, Object.class, type)));
+    }
+
+    public Class<?> getTargetType() {
+        return targetType;
+    }
+
+    /**
+     * 属性的基本类型，如 int.class
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    public void setInt(Object target, int value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw newException(target, value, t);
+        }
+    }
+
+    public void setLong(Object target, long value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw newException(target, value, t);
+        }
+    }
+
+    public void setDouble(Object target, double value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw newException(target, value, t);
+        }
+    }
+
+    public void setBoolean(Object target, boolean value) {
+        try {
+            handle.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw newException(target, value, t);
+        }
+    }
+
+    // 与 BeanWrapper 设置属性失败时的异常信息保持一致
+    private ReflectionException newException(Object target, Object value, Throwable t) {
+        return new ReflectionException("Could not set property '" + property + "' of '" + target.getClass() + "' with value '" + value + "' Cause: " + t.toString(), t);
+    }
+}
@@ -41,4 +41,8 @@ public class SetFieldInvoker implements Invoker {
     public Class<?> getType() {
         return field.getType();
     }
+
+    Field getField() {
+        return field;
+    }
 }
@@ -69,6 +69,8 @@ public class DefaultParameterHandler implements ParameterHandler {
 
         List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
         if (parameterMappings != null) {
+            // 按实参类型预先编译好的取值方式，与占位符一一对应
+            final ParameterBindingPlan.PropertyAccessor[] accessors = parameterObject == null ? null : getAccessors(parameterMappings);
             for (int i = 0; i < parameterMappings.size(); i++) {
                 ParameterMapping parameterMapping = parameterMappings.get(i);
 
@@ -80,6 +82,8 @@ public class DefaultParameterHandler implements ParameterHandler {
                         value = boundSql.getAdditionalParameter(propertyName);
                     } else if (parameterObject == null) {
                         value = null;
+                    } else if (accessors != null) {
+                        value = accessors[i].getValue(parameterObject);
                     } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
                         // 实参可以直接通过TypeHandler转换成JdbcType
                         value = parameterObject;
@@ -88,7 +92,7 @@ public class DefaultParameterHandler implements ParameterHandler {
                         value = metaObject.getValue(propertyName);
                     }
 
-                    TypeHandler typeHandler = parameterMapping.getTypeHandler();
+                    TypeHandler typeHandler = parameterMapping.getTypeHandler(value);
                     JdbcType jdbcType = parameterMapping.getJdbcType();
                     if (value == null && jdbcType == null) {
                         jdbcType = configuration.getJdbcTypeForNull();
@@ -105,4 +109,8 @@ public class DefaultParameterHandler implements ParameterHandler {
         }
     }
 
+    private ParameterBindingPlan.PropertyAccessor[] getAccessors(List<ParameterMapping> parameterMappings) {
+        ParameterBindingPlan plan = mappedStatement.getParameterBindingPlan(parameterObject.getClass());
+        return plan == null ? null : plan.getAccessors(parameterMappings);
+    }
 }
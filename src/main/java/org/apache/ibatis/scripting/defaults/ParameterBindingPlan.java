@@ -0,0 +1,187 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.scripting.defaults;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.reflection.ExceptionUtil;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapper;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * 参数绑定计划
+ * 对应一个 MappedStatement 和一种实参类型，记录每个 #{} 占位符的取值方式，
+ * 取值时直接调用 getter 或 Map.get，不再为每个占位符创建 MetaObject；
+ * 遇到下标、集合或自定义 ObjectWrapperFactory 等情况仍交给 MetaObject 处理，保证结果一致
+ */
+public class ParameterBindingPlan {
+
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private final Configuration configuration;
+    // 实参本身可以直接通过 TypeHandler 转换
+    private final boolean direct;
+    // 属性名到取值方式的映射，动态sql每次生成的 ParameterMapping 不同，但属性名是有限的
+    private final Map<String, PropertyAccessor> accessors = new ConcurrentHashMap<>();
+    // 最近一次编译的占位符列表，静态sql每次执行使用的是同一个列表
+    private volatile Bindings bindings;
+
+    private ParameterBindingPlan(Configuration configuration, Class<?> parameterType) {
+        this.configuration = configuration;
+        this.direct = configuration.getTypeHandlerRegistry().hasTypeHandler(parameterType);
+    }
+
+    /**
+     * 使用自定义 ObjectWrapperFactory 时取值方式由其决定，返回null
+     */
+    public static ParameterBindingPlan create(Configuration configuration, Class<?> parameterType) {
+        if (!(configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory)) {
+            return null;
+        }
+        return new ParameterBindingPlan(configuration, parameterType);
+    }
+
+    /**
+     * 获取与占位符一一对应的取值方式
+     */
+    public PropertyAccessor[] getAccessors(List<ParameterMapping> parameterMappings) {
+        Bindings current = bindings;
+        if (current == null || current.parameterMappings != parameterMappings) {
+            PropertyAccessor[] compiled = new PropertyAccessor[parameterMappings.size()];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = getAccessor(parameterMappings.get(i).getProperty());
+            }
+            current = new Bindings(parameterMappings, compiled);
+            bindings = current;
+        }
+        return current.accessors;
+    }
+
+    private PropertyAccessor getAccessor(String property) {
+        PropertyAccessor accessor = accessors.get(property);
+        if (accessor == null) {
+            accessor = direct ? new PropertyAccessor(configuration, null, null) : PropertyAccessor.compile(configuration, property);
+            accessors.put(property, accessor);
+        }
+        return accessor;
+    }
+
+    private static class Bindings {
+        final List<ParameterMapping> parameterMappings;
+        final PropertyAccessor[] accessors;
+
+        Bindings(List<ParameterMapping> parameterMappings, PropertyAccessor[] accessors) {
+            this.parameterMappings = parameterMappings;
+            this.accessors = accessors;
+        }
+    }
+
+    /**
+     * 一个属性表达式（如 user.name）的取值方式，每一段按运行时类型缓存 getter
+     */
+    public static final class PropertyAccessor {
+
+        private final Configuration configuration;
+        // 当前段的属性名，为null表示直接使用实参本身
+        private final String name;
+        // 从当前段开始的完整表达式，交给 MetaObject 处理时使用
+        private final String path;
+        private final PropertyAccessor next;
+        private volatile Getter getter;
+
+        private PropertyAccessor(Configuration configuration, String name, String path) {
+            this(configuration, name, path, null);
+        }
+
+        private PropertyAccessor(Configuration configuration, String name, String path, PropertyAccessor next) {
+            this.configuration = configuration;
+            this.name = name;
+            this.path = path;
+            this.next = next;
+        }
+
+        static PropertyAccessor compile(Configuration configuration, String path) {
+            if (path.indexOf('[') >= 0) {
+                // 下标访问交给 MetaObject
+                return new PropertyAccessor(configuration, null, path);
+            }
+            int dot = path.indexOf('.');
+            if (dot < 0) {
+                return new PropertyAccessor(configuration, path, path);
+            }
+            return new PropertyAccessor(configuration, path.substring(0, dot), path, compile(configuration, path.substring(dot + 1)));
+        }
+
+        public Object getValue(Object target) {
+            if (name == null) {
+                return path == null ? target : configuration.newMetaObject(target).getValue(path);
+            }
+            Object value;
+            if (target instanceof Map) {
+                value = ((Map<?, ?>) target).get(name);
+            } else if (target instanceof Collection || target instanceof ObjectWrapper) {
+                return configuration.newMetaObject(target).getValue(path);
+            } else {
+                Getter current = getter;
+                if (current == null || current.type != target.getClass()) {
+                    Reflector reflector = configuration.getReflectorFactory().findForClass(target.getClass());
+                    if (!reflector.hasGetter(name)) {
+                        // 由 MetaObject 抛出同样的异常
+                        return configuration.newMetaObject(target).getValue(path);
+                    }
+                    current = new Getter(target.getClass(), reflector.getGetInvoker(name));
+                    getter = current;
+                }
+                value = current.get(name, target);
+            }
+            if (next == null || value == null) {
+                return value;
+            }
+            return next.getValue(value);
+        }
+    }
+
+    private static class Getter {
+        final Class<?> type;
+        final Invoker invoker;
+
+        Getter(Class<?> type, Invoker invoker) {
+            this.type = type;
+            this.invoker = invoker;
+        }
+
+        // 异常处理与 BeanWrapper 读取属性时一致
+        Object get(String name, Object target) {
+            try {
+                return invoker.invoke(target, NO_ARGUMENTS);
+            } catch (Throwable t) {
+                Throwable cause = ExceptionUtil.unwrapThrowable(t);
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new ReflectionException("Could not get property '" + name + "' from " + target.getClass() + ".  Cause: " + cause.toString(), cause);
+            }
+        }
+    }
+}
@@ -15,8 +15,10 @@
  */
 package org.apache.ibatis.session;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -24,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.ibatis.binding.MapperRegistry;
 import org.apache.ibatis.builder.CacheRefResolver;
@@ -31,10 +34,14 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheDependencyIndex;
+import org.apache.ibatis.cache.bus.CacheInvalidationBus;
+import org.apache.ibatis.cache.bus.ConfigurationCacheInvalidationListener;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.decorators.WeightedLruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
@@ -114,8 +121,16 @@ public class Configuration {
     protected boolean callSettersOnNulls;
     protected boolean useActualParamName = true;
     protected boolean returnInstanceForEmptyRow;
+    // 是否并行解析<mappers>中的xml映射文件
+    protected boolean parallelMapperParsing;
+    // 是否使用StAX代替校验模式的DOM解析器读取xml映射文件
+    protected boolean staxMapperParsing;
+    // 是否在第一次使用时才构建xml映射文件中的sql语句
+    protected boolean lazyStatementBuilding;
 
     protected String logPrefix;
+    // sql映射文件快照的保存路径，为空则不使用快照
+    protected String mapperSnapshotFile;
     protected Class<? extends Log> logImpl;
     protected Class<? extends VFS> vfsImpl;
     protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
@@ -125,6 +140,17 @@ public class Configuration {
 
     protected Integer defaultStatementTimeout;
     protected Integer defaultFetchSize;
+    // 批量插入时每条多行 VALUES 语句包含的记录数
+    protected int bulkInsertChunkSize = 500;
+    // BatchExecutor 累积多少条实参后提前执行已累积的批处理，0表示不启用，只在 flushStatements 时执行；
+    // 提前执行在调用线程上进行，同一连接不会被两个线程同时使用
+    protected int batchWriteBehindSize;
+    // 开启后写操作只使依赖受影响的表的二级缓存项失效，而不是清空整个命名空间的缓存
+    protected boolean tableCacheInvalidation;
+    // 二级缓存项与表的依赖关系，所有命名空间共享
+    protected final CacheDependencyIndex cacheDependencyIndex = new CacheDependencyIndex();
+    // 集群中向其他节点广播二级缓存失效，为null表示单节点
+    protected CacheInvalidationBus cacheInvalidationBus;
     protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
 
     // 默认PARTIAL，会开启自动映射
@@ -170,6 +196,10 @@ public class Configuration {
     protected final Map<String, XNode> sqlFragments;
 
     protected final Collection<XMLStatementBuilder> incompleteStatements = new LinkedList<>();
+    // 开启 lazyStatementBuilding 时尚未构建的sql语句，key为语句的完整id
+    protected final Map<String, XMLStatementBuilder> lazyStatements = new ConcurrentHashMap<>();
+    // 正在构建的延迟语句，构建期间允许注册同id的语句，并避免构建过程中再次访问同一语句时递归构建
+    private final Set<XMLStatementBuilder> buildingLazyStatements = Collections.newSetFromMap(new ConcurrentHashMap<XMLStatementBuilder, Boolean>());
     protected final Collection<CacheRefResolver> incompleteCacheRefs = new LinkedList<>();
     protected final Collection<ResultMapResolver> incompleteResultMaps = new LinkedList<>();
     protected final Collection<MethodResolver> incompleteMethods = new LinkedList<>();
@@ -199,6 +229,7 @@ public class Configuration {
         typeAliasRegistry.registerAlias("LRU", LruCache.class);
         typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
         typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+        typeAliasRegistry.registerAlias("WEIGHTED", WeightedLruCache.class);
 
         typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -275,6 +306,80 @@ public class Configuration {
         this.returnInstanceForEmptyRow = returnEmptyInstance;
     }
 
+    public boolean isParallelMapperParsing() {
+        return parallelMapperParsing;
+    }
+
+    public void setParallelMapperParsing(boolean parallelMapperParsing) {
+        this.parallelMapperParsing = parallelMapperParsing;
+    }
+
+    public boolean isStaxMapperParsing() {
+        return staxMapperParsing;
+    }
+
+    public void setStaxMapperParsing(boolean staxMapperParsing) {
+        this.staxMapperParsing = staxMapperParsing;
+    }
+
+    public boolean isLazyStatementBuilding() {
+        return lazyStatementBuilding;
+    }
+
+    public void setLazyStatementBuilding(boolean lazyStatementBuilding) {
+        this.lazyStatementBuilding = lazyStatementBuilding;
+    }
+
+    public int getBulkInsertChunkSize() {
+        return bulkInsertChunkSize;
+    }
+
+    public void setBulkInsertChunkSize(int bulkInsertChunkSize) {
+        this.bulkInsertChunkSize = bulkInsertChunkSize;
+    }
+
+    public int getBatchWriteBehindSize() {
+        return batchWriteBehindSize;
+    }
+
+    public void setBatchWriteBehindSize(int batchWriteBehindSize) {
+        this.batchWriteBehindSize = batchWriteBehindSize;
+    }
+
+    public boolean isTableCacheInvalidation() {
+        return tableCacheInvalidation;
+    }
+
+    public void setTableCacheInvalidation(boolean tableCacheInvalidation) {
+        this.tableCacheInvalidation = tableCacheInvalidation;
+    }
+
+    public CacheDependencyIndex getCacheDependencyIndex() {
+        return cacheDependencyIndex;
+    }
+
+    public CacheInvalidationBus getCacheInvalidationBus() {
+        return cacheInvalidationBus;
+    }
+
+    /**
+     * 设置缓存失效的广播通道，并开始把其他节点发布的失效应用到本配置的二级缓存
+     */
+    public void setCacheInvalidationBus(CacheInvalidationBus cacheInvalidationBus) {
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.start(new ConfigurationCacheInvalidationListener(this));
+        }
+    }
+
+    public String getMapperSnapshotFile() {
+        return mapperSnapshotFile;
+    }
+
+    public void setMapperSnapshotFile(String mapperSnapshotFile) {
+        this.mapperSnapshotFile = mapperSnapshotFile;
+    }
+
     public String getDatabaseId() {
         return databaseId;
     }
@@ -589,7 +694,7 @@ public class Configuration {
 
         /// 根据配置决定是否开启二级缓存的功能
         if (cacheEnabled) {
-            executor = new CachingExecutor(executor);
+            executor = new CachingExecutor(executor, tableCacheInvalidation ? cacheDependencyIndex : null, cacheInvalidationBus);
         }
 
         // 创建 Executor 的代理对象
@@ -681,19 +786,85 @@ public class Configuration {
     }
 
     public void addMappedStatement(MappedStatement ms) {
+        XMLStatementBuilder pending = lazyStatements.get(ms.getId());
+        if (pending != null && !buildingLazyStatements.contains(pending)) {
+            throw new IllegalArgumentException("Mapped Statements collection already contains value for " + ms.getId());
+        }
         mappedStatements.put(ms.getId(), ms);
     }
 
     public Collection<String> getMappedStatementNames() {
         buildAllStatements();
+        buildAllLazyStatements();
         return mappedStatements.keySet();
     }
 
     public Collection<MappedStatement> getMappedStatements() {
         buildAllStatements();
+        buildAllLazyStatements();
         return mappedStatements.values();
     }
 
+    /**
+     * 登记一个延迟构建的sql语句，第一次通过 getMappedStatement/hasStatement 访问时才会构建
+     */
+    public void addLazyStatement(String id, XMLStatementBuilder statementBuilder) {
+        if (mappedStatements.containsKey(id) || lazyStatements.containsKey(id)) {
+            throw new IllegalArgumentException("Mapped Statements collection already contains value for " + id);
+        }
+        lazyStatements.put(id, statementBuilder);
+    }
+
+    public boolean hasLazyStatement(String id) {
+        return lazyStatements.containsKey(id);
+    }
+
+    /**
+     * 构建指定id对应的延迟语句；不带命名空间的短id会构建所有同名语句，歧义仍由 mappedStatements 报告
+     * 读取 mappedStatements，需持有 lazyStatements 的锁
+     */
+    protected void buildLazyStatement(String id) {
+        if (lazyStatements.isEmpty() || id == null || mappedStatements.containsKey(id)) {
+            return;
+        }
+        if (lazyStatements.containsKey(id)) {
+            buildLazyStatements(Collections.singletonList(id));
+        } else if (id.indexOf('.') < 0) {
+            List<String> candidates = new ArrayList<>();
+            for (String lazyId : lazyStatements.keySet()) {
+                if (lazyId.endsWith("." + id)) {
+                    candidates.add(lazyId);
+                }
+            }
+            buildLazyStatements(candidates);
+        }
+    }
+
+    protected void buildAllLazyStatements() {
+        if (!lazyStatements.isEmpty()) {
+            buildLazyStatements(new ArrayList<>(lazyStatements.keySet()));
+        }
+    }
+
+    private void buildLazyStatements(List<String> ids) {
+        // 构建过程会读写DOM和各注册表，同一时间只允许一个线程构建；StrictMap 本身不加锁，
+        // 语句注册到 mappedStatements 之后才从 lazyStatements 中移除，看到 lazyStatements 为空的线程也能看到构建结果；
+        // 构建失败时保留原样，下一次访问时再次报告同样的错误
+        synchronized (lazyStatements) {
+            for (String id : ids) {
+                XMLStatementBuilder statementBuilder = lazyStatements.get(id);
+                if (statementBuilder != null && buildingLazyStatements.add(statementBuilder)) {
+                    try {
+                        statementBuilder.parseStatementNode();
+                    } finally {
+                        buildingLazyStatements.remove(statementBuilder);
+                    }
+                    lazyStatements.remove(id);
+                }
+            }
+        }
+    }
+
     public Collection<XMLStatementBuilder> getIncompleteStatements() {
         return incompleteStatements;
     }
@@ -734,7 +905,14 @@ public class Configuration {
         if (validateIncompleteStatements) {
             buildAllStatements();
         }
-        return mappedStatements.get(id);
+        if (lazyStatements.isEmpty()) {
+            return mappedStatements.get(id);
+        }
+        // 其它线程可能正在构建延迟语句并写入 mappedStatements，与构建使用同一把锁读取；全部构建完成后不再加锁
+        synchronized (lazyStatements) {
+            buildLazyStatement(id);
+            return mappedStatements.get(id);
+        }
     }
 
     public Map<String, XNode> getSqlFragments() {
@@ -773,7 +951,13 @@ public class Configuration {
         if (validateIncompleteStatements) {
             buildAllStatements();
         }
-        return mappedStatements.containsKey(statementName);
+        if (lazyStatements.isEmpty()) {
+            return mappedStatements.containsKey(statementName);
+        }
+        synchronized (lazyStatements) {
+            buildLazyStatement(statementName);
+            return mappedStatements.containsKey(statementName);
+        }
     }
 
     public void addCacheRef(String namespace, String referencedNamespace) {
@@ -882,6 +1066,7 @@ public class Configuration {
             this.name = name;
         }
 
+        @Override
         @SuppressWarnings("unchecked")
         public V put(String key, V value) {
             if (containsKey(key)) {
@@ -898,6 +1083,7 @@ public class Configuration {
             return super.put(key, value);
         }
 
+        @Override
         public V get(Object key) {
             V value = super.get(key);
             if (value == null) {
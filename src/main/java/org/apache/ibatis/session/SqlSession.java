@@ -17,10 +17,13 @@ package org.apache.ibatis.session;
 
 import java.io.Closeable;
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.reactive.CursorPublisher;
+import org.apache.ibatis.cursor.reactive.Publisher;
 import org.apache.ibatis.executor.BatchResult;
 
 /**
@@ -158,6 +161,34 @@ public interface SqlSession extends Closeable {
      */
     <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds);
 
+    /**
+     * A Publisher offers the same results as a Cursor, but reads rows only as its subscriber requests them.
+     * The statement is executed when the subscriber first requests data.
+     *
+     * @param <T>       the published element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @return Publisher of mapped objects  按订阅者的请求读取结果的发布者
+     */
+    default <T> Publisher<T> selectPublisher(String statement, Object parameter) {
+        return selectPublisher(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    /**
+     * A Publisher offers the same results as a Cursor, but reads rows only as its subscriber requests them.
+     * The statement is executed when the subscriber first requests data.
+     * The default implementation queries a cursor on this session and closes it when publishing ends.
+     *
+     * @param <T>       the published element type.
+     * @param statement Unique identifier matching the statement to use.
+     * @param parameter A parameter object to pass to the statement.
+     * @param rowBounds Bounds to limit object retrieval
+     * @return Publisher of mapped objects
+     */
+    default <T> Publisher<T> selectPublisher(String statement, Object parameter, RowBounds rowBounds) {
+        return CursorPublisher.of(this, statement, parameter, rowBounds);
+    }
+
     /**
      * Retrieve a single row mapped from the statement key and parameter
      * using a {@code ResultHandler}.
@@ -207,6 +238,35 @@ public interface SqlSession extends Closeable {
      */
     int insert(String statement, Object parameter);
 
+    /**
+     * 批量插入，每条多行 VALUES 语句包含 bulkInsertChunkSize 条记录
+     * Insert all records using multi-row VALUES statements built from a single-row insert statement.
+     * Generated keys are set on the records when the statement uses generated keys.
+     * The default implementation executes the single-row statement once per record.
+     *
+     * @param statement Unique identifier matching a single-row insert statement.
+     * @param records   The records to insert.
+     * @return int The number of rows affected by the inserts.
+     */
+    default int bulkInsert(String statement, Collection<?> records) {
+        return SqlSessionDefaults.bulkInsert(this, statement, records);
+    }
+
+    /**
+     * Insert all records using multi-row VALUES statements of at most {@code chunkSize} rows each.
+     *
+     * @param statement Unique identifier matching a single-row insert statement.
+     * @param records   The records to insert.
+     * @param chunkSize Number of records per statement.
+     * @return int The number of rows affected by the inserts.
+     */
+    default int bulkInsert(String statement, Collection<?> records, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        return SqlSessionDefaults.bulkInsert(this, statement, records);
+    }
+
     /**
      * 执行update语句
      * Execute an update statement. The number of rows affected will be returned.
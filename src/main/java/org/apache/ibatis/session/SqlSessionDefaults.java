@@ -0,0 +1,47 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.Collection;
+
+import org.apache.ibatis.executor.BatchExecutor;
+
+/**
+ * SqlSession 新增方法的默认实现，供没有覆盖这些方法的第三方实现使用
+ */
+final class SqlSessionDefaults {
+
+    private SqlSessionDefaults() {
+        // Prevent Instantiation
+    }
+
+    /**
+     * 逐条执行单行插入语句，不合并为多行 VALUES 语句
+     */
+    static int bulkInsert(SqlSession sqlSession, String statement, Collection<?> records) {
+        int count = 0;
+        for (Object record : records) {
+            int updateCount = sqlSession.insert(statement, record);
+            // 批处理执行器返回的是占位值，不能累加
+            if (updateCount == BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+                count = updateCount;
+            } else if (count != BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+                count += updateCount;
+            }
+        }
+        return count;
+    }
+}
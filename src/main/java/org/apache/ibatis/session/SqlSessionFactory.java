@@ -44,6 +44,16 @@ public interface SqlSessionFactory {
 
     SqlSession openSession(ExecutorType execType, Connection connection);
 
+    /**
+     * 打开一个轻量的自动提交会话，用于一次只执行一两条语句的场景
+     * 同一线程复用同一套执行器（包括插件代理和一级缓存对象），close()时只释放连接；
+     * 会话只能在打开它的线程中使用，close()后不能再使用
+     * 默认实现打开一个普通的自动提交会话
+     */
+    default SqlSession openLightweightSession() {
+        return openSession(true);
+    }
+
     Configuration getConfiguration();
 
 }
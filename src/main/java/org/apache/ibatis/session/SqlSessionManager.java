@@ -21,17 +21,25 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.reactive.CursorPublisher;
+import org.apache.ibatis.cursor.reactive.Publisher;
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.reflection.ExceptionUtil;
 
 /**
  * sqlSession管理器
  * 支持创建sqlSession对象以及利用sqlSession操作数据库
+ * <p>
+ * getMapper() 返回的mapper对象每个接口只有一个，线程安全：当前线程通过 startManagedSession() 开启了会话时加入该会话，
+ * 否则每次调用单独获取会话并在调用结束时释放，因此可以在整个应用中共享同一个mapper对象
  *
  * @author Larry Meadors
  */
@@ -45,6 +53,9 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     // localSqlSession对象的代理对象
     private final SqlSession sqlSessionProxy;
 
+    // mapper接口 -> 绑定到本对象的mapper代理对象
+    private final ConcurrentMap<Class<?>, Object> mappers = new ConcurrentHashMap<>();
+
     private SqlSessionManager(SqlSessionFactory sqlSessionFactory) {
         this.sqlSessionFactory = sqlSessionFactory;
 
@@ -132,6 +143,11 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
         return sqlSessionFactory.openSession(autoCommit);
     }
 
+    @Override
+    public SqlSession openLightweightSession() {
+        return sqlSessionFactory.openLightweightSession();
+    }
+
     @Override
     public SqlSession openSession(Connection connection) {
         return sqlSessionFactory.openSession(connection);
@@ -207,6 +223,23 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
         return sqlSessionProxy.selectCursor(statement, parameter, rowBounds);
     }
 
+    @Override
+    public <T> Publisher<T> selectPublisher(String statement, Object parameter) {
+        return selectPublisher(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    /**
+     * 当前线程开启了会话时在该会话上查询，否则每次订阅单独打开会话，发布结束时关闭
+     */
+    @Override
+    public <T> Publisher<T> selectPublisher(String statement, Object parameter, RowBounds rowBounds) {
+        final SqlSession sqlSession = localSqlSession.get();
+        if (sqlSession != null) {
+            return sqlSession.selectPublisher(statement, parameter, rowBounds);
+        }
+        return CursorPublisher.of(sqlSessionFactory, statement, parameter, rowBounds);
+    }
+
     @Override
     public <E> List<E> selectList(String statement) {
         return sqlSessionProxy.selectList(statement);
@@ -247,6 +280,16 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
         return sqlSessionProxy.insert(statement, parameter);
     }
 
+    @Override
+    public int bulkInsert(String statement, Collection<?> records) {
+        return sqlSessionProxy.bulkInsert(statement, records);
+    }
+
+    @Override
+    public int bulkInsert(String statement, Collection<?> records, int chunkSize) {
+        return sqlSessionProxy.bulkInsert(statement, records, chunkSize);
+    }
+
     @Override
     public int update(String statement) {
         return sqlSessionProxy.update(statement);
@@ -268,8 +311,18 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T> T getMapper(Class<T> type) {
-        return getConfiguration().getMapper(type, this);
+        Object mapper = mappers.get(type);
+        if (mapper == null) {
+            // mapper代理本身不保存会话状态，所有调用都经由本对象分派，可以共享
+            mapper = getConfiguration().getMapper(type, this);
+            Object existing = mappers.putIfAbsent(type, mapper);
+            if (existing != null) {
+                mapper = existing;
+            }
+        }
+        return (T) mapper;
     }
 
     @Override
@@ -371,6 +424,17 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
                     throw ExceptionUtil.unwrapThrowable(t);
                 }
             }
+            /// 只执行一次查询时，使用当前线程复用的轻量会话，不需要为每次调用创建执行器
+            else if (method.getName().startsWith("select")) {
+                final SqlSession autoSqlSession = sqlSessionFactory.openLightweightSession();
+                try {
+                    return method.invoke(autoSqlSession, args);
+                } catch (Throwable t) {
+                    throw ExceptionUtil.unwrapThrowable(t);
+                } finally {
+                    autoSqlSession.close();
+                }
+            }
             /// 若不存在，则创建新的sqlSession
             else {
 
@@ -25,15 +25,19 @@ import java.util.List;
 import java.util.Map;
 
 import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.builder.StaticSqlSource;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.ExceptionFactory;
 import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchExecutor;
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.result.DefaultMapResultHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -193,6 +197,63 @@ public class DefaultSqlSession implements SqlSession {
         return update(statement, parameter);
     }
 
+    @Override
+    public int bulkInsert(String statement, Collection<?> records) {
+        return bulkInsert(statement, records, configuration.getBulkInsertChunkSize());
+    }
+
+    /**
+     * 将记录按 chunkSize 分块，每块执行一条多行 VALUES 插入语句
+     */
+    @Override
+    public int bulkInsert(String statement, Collection<?> records, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        try {
+            dirty = true;
+            MappedStatement ms = configuration.getMappedStatement(statement);
+            // 静态sql对每条记录生成的sql都相同，只需用第一条记录推导；动态sql在sql变化时开始新的分块
+            boolean staticSql = ms.getSqlSource() instanceof RawSqlSource || ms.getSqlSource() instanceof StaticSqlSource;
+            MappedStatement bulkStatement = null;
+            String rowSql = null;
+            List<Object> chunk = new ArrayList<>(Math.min(chunkSize, records.size()));
+            int count = 0;
+            for (Object record : records) {
+                if (bulkStatement == null || !staticSql) {
+                    BoundSql template = ms.getBoundSql(record);
+                    if (!template.getSql().equals(rowSql)) {
+                        if (!chunk.isEmpty()) {
+                            count = addUpdateCount(count, executor.update(bulkStatement, chunk));
+                            chunk = new ArrayList<>(chunkSize);
+                        }
+                        bulkStatement = ms.getBulkInsertStatement(template);
+                        rowSql = template.getSql();
+                    }
+                }
+                chunk.add(record);
+                if (chunk.size() == chunkSize) {
+                    count = addUpdateCount(count, executor.update(bulkStatement, chunk));
+                    // 批处理执行器会保留实参直到提交，不能复用
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                count = addUpdateCount(count, executor.update(bulkStatement, chunk));
+            }
+            return count;
+        } catch (Exception e) {
+            throw ExceptionFactory.wrapException("Error updating database.  Cause: " + e, e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+    }
+
+    // 批处理执行器返回的是占位值，不能累加
+    private int addUpdateCount(int count, int updateCount) {
+        return updateCount == BatchExecutor.BATCH_UPDATE_RETURN_VALUE ? updateCount : count + updateCount;
+    }
+
     @Override
     public int update(String statement) {
         return update(statement, null);
@@ -280,7 +341,7 @@ public class DefaultSqlSession implements SqlSession {
         }
     }
 
-    private void closeCursors() {
+    protected void closeCursors() {
         if (cursorList != null && cursorList.size() != 0) {
             for (Cursor<?> cursor : cursorList) {
                 try {
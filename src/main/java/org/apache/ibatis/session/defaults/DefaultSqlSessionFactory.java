@@ -40,6 +40,9 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
 
     private final Configuration configuration;
 
+    // 每个线程复用的轻量会话
+    private final ThreadLocal<LightweightSqlSession> lightweightSessions = new ThreadLocal<>();
+
     public DefaultSqlSessionFactory(Configuration configuration) {
         this.configuration = configuration;
     }
@@ -84,6 +87,23 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
         return openSessionFromConnection(execType, connection);
     }
 
+    @Override
+    public SqlSession openLightweightSession() {
+        LightweightSqlSession session = lightweightSessions.get();
+        if (session != null && !session.isReusable()) {
+            session = null;
+        }
+        if (session == null) {
+            session = newLightweightSession();
+            lightweightSessions.set(session);
+        } else if (session.isInUse()) {
+            // 同一线程中嵌套打开，外层会话还没有关闭，使用普通的自动提交会话
+            return openSession(true);
+        }
+        session.open();
+        return session;
+    }
+
     @Override
     public Configuration getConfiguration() {
         return configuration;
@@ -110,6 +130,23 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
         }
     }
 
+    private LightweightSqlSession newLightweightSession() {
+        try {
+            final Environment environment = configuration.getEnvironment();
+            final TransactionFactory transactionFactory = getTransactionFactoryFromEnvironment(environment);
+            // 事务在第一次执行语句时才获取连接，每次调用结束时关闭，之后可以再次获取
+            final Transaction tx = transactionFactory.newTransaction(environment.getDataSource(), null, true);
+            // 每次调用只执行少量语句，批量执行器没有意义
+            ExecutorType execType = configuration.getDefaultExecutorType() == ExecutorType.BATCH ? ExecutorType.SIMPLE : configuration.getDefaultExecutorType();
+            final Executor executor = configuration.newExecutor(tx, execType);
+            return new LightweightSqlSession(configuration, executor);
+        } catch (Exception e) {
+            throw ExceptionFactory.wrapException("Error opening session.  Cause: " + e, e);
+        } finally {
+            ErrorContext.instance().reset();
+        }
+    }
+
     private SqlSession openSessionFromConnection(ExecutorType execType, Connection connection) {
         try {
             boolean autoCommit;
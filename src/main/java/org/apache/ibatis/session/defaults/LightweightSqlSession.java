@@ -0,0 +1,155 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session.defaults;
+
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.ErrorContext;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 轻量的自动提交会话
+ * 由 DefaultSqlSessionFactory 为每个线程创建一个并反复使用，close()时只结束本次调用、释放连接，执行器保持打开
+ * close()后再使用会抛出 IllegalStateException
+ */
+class LightweightSqlSession extends DefaultSqlSession {
+
+    private final Executor executor;
+
+    // 是否已被打开且尚未close()，同一线程嵌套打开时外层会话仍在使用中
+    private boolean inUse;
+
+    LightweightSqlSession(Configuration configuration, Executor executor) {
+        super(configuration, executor, true);
+        this.executor = executor;
+    }
+
+    boolean isInUse() {
+        return inUse;
+    }
+
+    void open() {
+        inUse = true;
+    }
+
+    /**
+     * 释放失败时执行器的状态不确定，不能再复用
+     */
+    boolean isReusable() {
+        return !executor.isClosed();
+    }
+
+    // 执行器在close()后仍然打开，不检查的话关闭后的调用会悄悄占用本线程下一个会话的执行器
+    private void checkOpen() {
+        if (!inUse) {
+            throw new IllegalStateException("Lightweight session was already closed.");
+        }
+    }
+
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+        checkOpen();
+        return super.selectCursor(statement, parameter, rowBounds);
+    }
+
+    @Override
+    public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+        checkOpen();
+        return super.selectList(statement, parameter, rowBounds);
+    }
+
+    @Override
+    public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
+        checkOpen();
+        super.select(statement, parameter, rowBounds, handler);
+    }
+
+    @Override
+    public int bulkInsert(String statement, Collection<?> records, int chunkSize) {
+        checkOpen();
+        return super.bulkInsert(statement, records, chunkSize);
+    }
+
+    @Override
+    public int update(String statement, Object parameter) {
+        checkOpen();
+        return super.update(statement, parameter);
+    }
+
+    @Override
+    public void commit(boolean force) {
+        checkOpen();
+        super.commit(force);
+    }
+
+    @Override
+    public void rollback(boolean force) {
+        checkOpen();
+        super.rollback(force);
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() {
+        checkOpen();
+        return super.flushStatements();
+    }
+
+    @Override
+    public <T> T getMapper(Class<T> type) {
+        checkOpen();
+        return super.getMapper(type);
+    }
+
+    @Override
+    public Connection getConnection() {
+        checkOpen();
+        return super.getConnection();
+    }
+
+    @Override
+    public void clearCache() {
+        checkOpen();
+        super.clearCache();
+    }
+
+    @Override
+    public void close() {
+        if (!inUse) {
+            return;
+        }
+        inUse = false;
+        try {
+            closeCursors();
+        } finally {
+            try {
+                executor.reset();
+            } catch (Exception e) {
+                executor.close(true);
+                throw ExceptionFactory.wrapException("Error closing session.  Cause: " + e, e);
+            } finally {
+                ErrorContext.instance().reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session.sharding;
+
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+/**
+ * 按实参的某个属性取模选择分片
+ * 整数类型的分片键直接取模，如 tenantId % 16，其他类型使用hashCode()取模；
+ * 实参为null、不包含该属性或属性值为null时在所有分片上执行
+ */
+public class PropertyShardKeyResolver implements ShardKeyResolver {
+
+    private final String property;
+
+    public PropertyShardKeyResolver(String property) {
+        this.property = property;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    @Override
+    public int resolveShard(String statement, Object parameter, int shardCount) {
+        if (parameter == null) {
+            return ALL_SHARDS;
+        }
+        MetaObject metaObject = SystemMetaObject.forObject(parameter);
+        if (!metaObject.hasGetter(property)) {
+            return ALL_SHARDS;
+        }
+        Object key = metaObject.getValue(property);
+        if (key == null) {
+            return ALL_SHARDS;
+        }
+        if (key instanceof Number && !(key instanceof Float || key instanceof Double)) {
+            return (int) Math.floorMod(((Number) key).longValue(), (long) shardCount);
+        }
+        return Math.floorMod(key.hashCode(), shardCount);
+    }
+
+}
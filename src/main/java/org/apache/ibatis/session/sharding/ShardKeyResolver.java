@@ -0,0 +1,37 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session.sharding;
+
+/**
+ * 分片键解析器
+ * 根据语句和实参决定语句在哪个分片上执行
+ */
+public interface ShardKeyResolver {
+
+    /**
+     * 无法从实参确定分片，需要在所有分片上执行
+     */
+    int ALL_SHARDS = -1;
+
+    /**
+     * @param statement  语句id
+     * @param parameter  用户传入的实参，批量插入时为单条记录
+     * @param shardCount 分片数量
+     * @return 分片下标，范围为 [0, shardCount)，无法确定时返回 {@link #ALL_SHARDS}
+     */
+    int resolveShard(String statement, Object parameter, int shardCount);
+
+}
@@ -0,0 +1,496 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session.sharding;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.cursor.reactive.Publisher;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.result.DefaultMapResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionException;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+
+/**
+ * 分片的SqlSession 非线程安全
+ * 每个分片的SqlSession在第一次使用时打开；能确定分片的语句只在该分片上执行，
+ * 不能确定分片的查询在所有分片上并行执行后合并结果，update和delete在所有分片上执行，insert必须能确定分片
+ */
+public class ShardedSqlSession implements SqlSession {
+
+    private final ShardedSqlSessionFactory factory;
+    private final ExecutorType execType;
+    private final TransactionIsolationLevel level;
+    private final boolean autoCommit;
+    // 各分片已打开的会话，下标即分片下标
+    private final SqlSession[] sessions;
+
+    ShardedSqlSession(ShardedSqlSessionFactory factory, ExecutorType execType, TransactionIsolationLevel level, boolean autoCommit) {
+        this.factory = factory;
+        this.execType = execType;
+        this.level = level;
+        this.autoCommit = autoCommit;
+        this.sessions = new SqlSession[factory.getShards().size()];
+    }
+
+    /**
+     * 获取指定分片的会话，尚未打开时打开
+     */
+    public SqlSession getShardSession(int shard) {
+        SqlSession session = sessions[shard];
+        if (session == null) {
+            if (level != null) {
+                session = factory.getShards().get(shard).openSession(execType, level);
+            } else {
+                session = factory.getShards().get(shard).openSession(execType, autoCommit);
+            }
+            sessions[shard] = session;
+        }
+        return session;
+    }
+
+    public int getShardCount() {
+        return sessions.length;
+    }
+
+    private int resolveShard(String statement, Object parameter) {
+        if (sessions.length == 1) {
+            return 0;
+        }
+        int shard = factory.getShardKeyResolver().resolveShard(statement, parameter, sessions.length);
+        if (shard != ShardKeyResolver.ALL_SHARDS && (shard < 0 || shard >= sessions.length)) {
+            throw new SqlSessionException("Shard " + shard + " resolved for statement " + statement + " is out of range [0, " + sessions.length + ")");
+        }
+        return shard;
+    }
+
+    @Override
+    public <T> T selectOne(String statement) {
+        return this.selectOne(statement, null);
+    }
+
+    @Override
+    public <T> T selectOne(String statement, Object parameter) {
+        List<T> list = this.selectList(statement, parameter);
+        if (list.size() == 1) {
+            return list.get(0);
+        } else if (list.size() > 1) {
+            throw new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found: " + list.size());
+        } else {
+            return null;
+        }
+    }
+
+    @Override
+    public <E> List<E> selectList(String statement) {
+        return this.selectList(statement, null);
+    }
+
+    @Override
+    public <E> List<E> selectList(String statement, Object parameter) {
+        return this.selectList(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    @Override
+    public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+        return this.selectList(statement, parameter, rowBounds, null);
+    }
+
+    /**
+     * 查询并合并各分片的结果
+     * 跨分片查询时，每个分片最多返回 offset + limit 条记录，合并后按comparator排序（为null时按分片顺序拼接），再截取rowBounds指定的范围
+     *
+     * @param comparator 合并结果的排序规则，应与语句中的 order by 一致
+     */
+    public <E> List<E> selectList(final String statement, final Object parameter, RowBounds rowBounds, Comparator<? super E> comparator) {
+        int shard = resolveShard(statement, parameter);
+        if (shard != ShardKeyResolver.ALL_SHARDS) {
+            return getShardSession(shard).selectList(statement, parameter, rowBounds);
+        }
+        final RowBounds shardRowBounds = toShardRowBounds(rowBounds);
+        List<List<E>> results = scatter(new ShardCall<List<E>>() {
+            @Override
+            public List<E> call(SqlSession session) {
+                return session.selectList(statement, parameter, shardRowBounds);
+            }
+        });
+        int size = 0;
+        for (List<E> result : results) {
+            size += result.size();
+        }
+        List<E> merged = new ArrayList<>(size);
+        for (List<E> result : results) {
+            merged.addAll(result);
+        }
+        if (comparator != null) {
+            // 各分片的结果已有序，TimSort 会识别出这些有序段，只需做归并
+            Collections.sort(merged, comparator);
+        }
+        int from = Math.min(rowBounds.getOffset(), merged.size());
+        int to = rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT ? merged.size() : (int) Math.min((long) from + rowBounds.getLimit(), merged.size());
+        if (from == 0 && to == merged.size()) {
+            return merged;
+        }
+        return new ArrayList<>(merged.subList(from, to));
+    }
+
+    // 合并前无法知道偏移量落在哪个分片上，每个分片都要取前 offset + limit 条
+    private static RowBounds toShardRowBounds(RowBounds rowBounds) {
+        if (rowBounds.getLimit() == RowBounds.NO_ROW_LIMIT) {
+            return RowBounds.DEFAULT;
+        }
+        return new RowBounds(0, (int) Math.min((long) rowBounds.getOffset() + rowBounds.getLimit(), RowBounds.NO_ROW_LIMIT));
+    }
+
+    @Override
+    public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
+        return this.selectMap(statement, null, mapKey, RowBounds.DEFAULT);
+    }
+
+    @Override
+    public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
+        return this.selectMap(statement, parameter, mapKey, RowBounds.DEFAULT);
+    }
+
+    @Override
+    public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
+        final List<? extends V> list = selectList(statement, parameter, rowBounds);
+        Configuration configuration = getConfiguration();
+        final DefaultMapResultHandler<K, V> mapResultHandler = new DefaultMapResultHandler<>(mapKey,
+                configuration.getObjectFactory(), configuration.getObjectWrapperFactory(), configuration.getReflectorFactory());
+        final DefaultResultContext<V> context = new DefaultResultContext<>();
+        for (V o : list) {
+            context.nextResultObject(o);
+            mapResultHandler.handleResult(context);
+        }
+        return mapResultHandler.getMappedResults();
+    }
+
+    @Override
+    public <T> Cursor<T> selectCursor(String statement) {
+        return selectCursor(statement, null);
+    }
+
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+        return selectCursor(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    /**
+     * 游标只支持单个分片上的查询
+     */
+    @Override
+    public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+        int shard = resolveShard(statement, parameter);
+        if (shard == ShardKeyResolver.ALL_SHARDS) {
+            throw new SqlSessionException("Could not resolve a single shard for cursor statement " + statement);
+        }
+        return getShardSession(shard).selectCursor(statement, parameter, rowBounds);
+    }
+
+    @Override
+    public <T> Publisher<T> selectPublisher(String statement, Object parameter) {
+        return selectPublisher(statement, parameter, RowBounds.DEFAULT);
+    }
+
+    /**
+     * 与游标相同，只支持单个分片上的查询
+     */
+    @Override
+    public <T> Publisher<T> selectPublisher(String statement, Object parameter, RowBounds rowBounds) {
+        int shard = resolveShard(statement, parameter);
+        if (shard == ShardKeyResolver.ALL_SHARDS) {
+            throw new SqlSessionException("Could not resolve a single shard for publisher statement " + statement);
+        }
+        return getShardSession(shard).selectPublisher(statement, parameter, rowBounds);
+    }
+
+    @Override
+    public void select(String statement, Object parameter, ResultHandler handler) {
+        select(statement, parameter, RowBounds.DEFAULT, handler);
+    }
+
+    @Override
+    public void select(String statement, ResultHandler handler) {
+        select(statement, null, RowBounds.DEFAULT, handler);
+    }
+
+    /**
+     * 跨分片时在当前线程依次查询各分片，ResultHandler不需要是线程安全的，rowBounds对每个分片单独生效
+     */
+    @Override
+    public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
+        int shard = resolveShard(statement, parameter);
+        if (shard != ShardKeyResolver.ALL_SHARDS) {
+            getShardSession(shard).select(statement, parameter, rowBounds, handler);
+            return;
+        }
+        for (int i = 0; i < sessions.length; i++) {
+            getShardSession(i).select(statement, parameter, rowBounds, handler);
+        }
+    }
+
+    @Override
+    public int insert(String statement) {
+        return insert(statement, null);
+    }
+
+    @Override
+    public int insert(String statement, Object parameter) {
+        int shard = resolveShard(statement, parameter);
+        if (shard == ShardKeyResolver.ALL_SHARDS) {
+            throw new SqlSessionException("Could not resolve the shard for insert statement " + statement);
+        }
+        return getShardSession(shard).insert(statement, parameter);
+    }
+
+    @Override
+    public int bulkInsert(String statement, Collection<?> records) {
+        return bulkInsert(statement, records, 0);
+    }
+
+    /**
+     * 按分片对记录分组，每组在对应的分片上批量插入
+     *
+     * @param chunkSize 不大于0时使用各分片配置的 bulkInsertChunkSize
+     */
+    @Override
+    public int bulkInsert(String statement, Collection<?> records, int chunkSize) {
+        List<List<Object>> groups = new ArrayList<>(sessions.length);
+        for (int i = 0; i < sessions.length; i++) {
+            groups.add(new ArrayList<>());
+        }
+        for (Object record : records) {
+            int shard = resolveShard(statement, record);
+            if (shard == ShardKeyResolver.ALL_SHARDS) {
+                throw new SqlSessionException("Could not resolve the shard of record " + record + " for insert statement " + statement);
+            }
+            groups.get(shard).add(record);
+        }
+        int count = 0;
+        for (int i = 0; i < sessions.length; i++) {
+            List<Object> group = groups.get(i);
+            if (!group.isEmpty()) {
+                SqlSession session = getShardSession(i);
+                count = addUpdateCount(count, chunkSize > 0 ? session.bulkInsert(statement, group, chunkSize) : session.bulkInsert(statement, group));
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int update(String statement) {
+        return update(statement, null);
+    }
+
+    @Override
+    public int update(final String statement, final Object parameter) {
+        int shard = resolveShard(statement, parameter);
+        if (shard != ShardKeyResolver.ALL_SHARDS) {
+            return getShardSession(shard).update(statement, parameter);
+        }
+        List<Integer> counts = scatter(new ShardCall<Integer>() {
+            @Override
+            public Integer call(SqlSession session) {
+                return session.update(statement, parameter);
+            }
+        });
+        int count = 0;
+        for (Integer c : counts) {
+            count = addUpdateCount(count, c);
+        }
+        return count;
+    }
+
+    @Override
+    public int delete(String statement) {
+        return update(statement, null);
+    }
+
+    @Override
+    public int delete(String statement, Object parameter) {
+        return update(statement, parameter);
+    }
+
+    // 批处理执行器的返回值只是占位，不能累加
+    private static int addUpdateCount(int count, int updated) {
+        if (count == BatchExecutor.BATCH_UPDATE_RETURN_VALUE || updated == BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+            return BatchExecutor.BATCH_UPDATE_RETURN_VALUE;
+        }
+        return count + updated;
+    }
+
+    /**
+     * 在所有分片上并行执行，返回值按分片顺序排列
+     * 等待全部分片结束后才返回，避免失败时仍有线程在使用分片的会话
+     */
+    private <T> List<T> scatter(final ShardCall<T> task) {
+        // 在当前线程打开各分片的会话，sessions数组不会被并发修改
+        for (int i = 0; i < sessions.length; i++) {
+            getShardSession(i);
+        }
+        List<Future<T>> futures = new ArrayList<>(sessions.length);
+        for (final SqlSession session : sessions) {
+            futures.add(factory.getQueryExecutor().submit(new Callable<T>() {
+                @Override
+                public T call() {
+                    return task.call(session);
+                }
+            }));
+        }
+        List<T> results = new ArrayList<>(sessions.length);
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<T> future : futures) {
+            while (true) {
+                try {
+                    results.add(future.get());
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw ExceptionFactory.wrapException("Error executing statement on shards.  Cause: " + failure, (Exception) failure);
+        }
+        return results;
+    }
+
+    @Override
+    public void commit() {
+        commit(false);
+    }
+
+    @Override
+    public void commit(boolean force) {
+        for (SqlSession session : sessions) {
+            if (session != null) {
+                session.commit(force);
+            }
+        }
+    }
+
+    @Override
+    public void rollback() {
+        rollback(false);
+    }
+
+    @Override
+    public void rollback(boolean force) {
+        for (SqlSession session : sessions) {
+            if (session != null) {
+                session.rollback(force);
+            }
+        }
+    }
+
+    @Override
+    public List<BatchResult> flushStatements() {
+        List<BatchResult> results = new ArrayList<>();
+        for (SqlSession session : sessions) {
+            if (session != null) {
+                results.addAll(session.flushStatements());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 关闭所有已打开的分片会话，某个分片关闭失败时仍会关闭其余分片
+     */
+    @Override
+    public void close() {
+        RuntimeException failure = null;
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i] != null) {
+                try {
+                    sessions[i].close();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+                sessions[i] = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        for (SqlSession session : sessions) {
+            if (session != null) {
+                session.clearCache();
+            }
+        }
+    }
+
+    @Override
+    public Configuration getConfiguration() {
+        return factory.getConfiguration();
+    }
+
+    @Override
+    public <T> T getMapper(Class<T> type) {
+        return getConfiguration().getMapper(type, this);
+    }
+
+    /**
+     * 每个分片使用各自的连接，请通过 getShardSession(int) 获取指定分片的连接
+     */
+    @Override
+    public Connection getConnection() {
+        throw new SqlSessionException("A sharded session has one connection per shard, use getShardSession(int).getConnection() instead");
+    }
+
+    private interface ShardCall<T> {
+        T call(SqlSession session);
+    }
+
+}
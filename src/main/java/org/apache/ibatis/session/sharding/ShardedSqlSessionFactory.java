@@ -0,0 +1,174 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.session.sharding;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionException;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.TransactionIsolationLevel;
+
+/**
+ * 分片的SqlSessionFactory
+ * 每个分片对应一个独立的SqlSessionFactory（通常是各自数据源的 DefaultSqlSessionFactory），
+ * 打开的 ShardedSqlSession 按 ShardKeyResolver 的结果把语句路由到单个分片，或在所有分片上并行执行后合并结果
+ */
+public class ShardedSqlSessionFactory implements SqlSessionFactory, Closeable {
+
+    private final List<SqlSessionFactory> shards;
+    private final ShardKeyResolver shardKeyResolver;
+    // 执行跨分片查询的线程池
+    private final ExecutorService queryExecutor;
+    // 线程池由本工厂创建时，close() 负责关闭；调用方传入的线程池由调用方管理
+    private final boolean ownsQueryExecutor;
+    private volatile boolean closed;
+
+    /**
+     * 使用守护线程组成的缓存线程池执行跨分片查询，不再使用时调用 close() 关闭该线程池
+     */
+    public ShardedSqlSessionFactory(List<? extends SqlSessionFactory> shards, ShardKeyResolver shardKeyResolver) {
+        this(shards, shardKeyResolver, Executors.newCachedThreadPool(new ShardQueryThreadFactory()), true);
+    }
+
+    public ShardedSqlSessionFactory(List<? extends SqlSessionFactory> shards, ShardKeyResolver shardKeyResolver, ExecutorService queryExecutor) {
+        this(shards, shardKeyResolver, queryExecutor, false);
+    }
+
+    private ShardedSqlSessionFactory(List<? extends SqlSessionFactory> shards, ShardKeyResolver shardKeyResolver, ExecutorService queryExecutor,
+                                     boolean ownsQueryExecutor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<SqlSessionFactory>(shards));
+        this.shardKeyResolver = shardKeyResolver;
+        this.queryExecutor = queryExecutor;
+        this.ownsQueryExecutor = ownsQueryExecutor;
+    }
+
+    /**
+     * 关闭本工厂创建的查询线程池，之后不能再打开会话；调用方传入的线程池不会被关闭
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (ownsQueryExecutor) {
+            queryExecutor.shutdown();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public List<SqlSessionFactory> getShards() {
+        return shards;
+    }
+
+    public ShardKeyResolver getShardKeyResolver() {
+        return shardKeyResolver;
+    }
+
+    public ExecutorService getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    @Override
+    public ShardedSqlSession openSession() {
+        return openSession(getConfiguration().getDefaultExecutorType(), false);
+    }
+
+    @Override
+    public ShardedSqlSession openSession(boolean autoCommit) {
+        return openSession(getConfiguration().getDefaultExecutorType(), autoCommit);
+    }
+
+    @Override
+    public ShardedSqlSession openSession(ExecutorType execType) {
+        return openSession(execType, false);
+    }
+
+    @Override
+    public ShardedSqlSession openSession(TransactionIsolationLevel level) {
+        return openSession(getConfiguration().getDefaultExecutorType(), level);
+    }
+
+    @Override
+    public ShardedSqlSession openSession(ExecutorType execType, TransactionIsolationLevel level) {
+        checkOpen();
+        return new ShardedSqlSession(this, execType, level, false);
+    }
+
+    @Override
+    public ShardedSqlSession openSession(ExecutorType execType, boolean autoCommit) {
+        checkOpen();
+        return new ShardedSqlSession(this, execType, null, autoCommit);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new SqlSessionException("ShardedSqlSessionFactory is closed");
+        }
+    }
+
+    @Override
+    public SqlSession openSession(Connection connection) {
+        throw new SqlSessionException("Sharded sessions use one connection per shard and cannot be opened on a single connection");
+    }
+
+    @Override
+    public SqlSession openSession(ExecutorType execType, Connection connection) {
+        return openSession(connection);
+    }
+
+    /**
+     * 分片会话按需打开各分片的会话，没有可复用的执行器，等同于 openSession(true)
+     */
+    @Override
+    public ShardedSqlSession openLightweightSession() {
+        return openSession(true);
+    }
+
+    /**
+     * 各分片加载相同的映射配置，返回第一个分片的配置
+     */
+    @Override
+    public Configuration getConfiguration() {
+        return shards.get(0).getConfiguration();
+    }
+
+    private static class ShardQueryThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mybatis-shard-query-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
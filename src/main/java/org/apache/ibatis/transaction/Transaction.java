@@ -55,4 +55,12 @@ public interface Transaction {
      */
     Integer getTimeout() throws SQLException;
 
+    /**
+     * 事务是否处于自动提交模式，无法确定时返回false
+     * Whether the inner connection runs in auto-commit mode.
+     */
+    default boolean isAutoCommit() throws SQLException {
+        return false;
+    }
+
 }
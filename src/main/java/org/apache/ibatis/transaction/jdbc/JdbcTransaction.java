@@ -97,6 +97,10 @@ public class JdbcTransaction implements Transaction {
                 log.debug("Closing JDBC Connection [" + connection + "]");
             }
             connection.close();
+            // 由数据源创建的连接关闭后可以重新获取，使事务对象可以被复用
+            if (dataSource != null) {
+                connection = null;
+            }
         }
     }
 
@@ -157,4 +161,13 @@ public class JdbcTransaction implements Transaction {
         return null;
     }
 
+    @Override
+    public boolean isAutoCommit() throws SQLException {
+        // 直接传入连接时以连接本身的设置为准
+        if (dataSource == null && connection != null) {
+            return connection.getAutoCommit();
+        }
+        return autoCommmit;
+    }
+
 }
@@ -81,6 +81,10 @@ public class ManagedTransaction implements Transaction {
                 log.debug("Closing JDBC Connection [" + this.connection + "]");
             }
             this.connection.close();
+            // 由数据源创建的连接关闭后可以重新获取，使事务对象可以被复用
+            if (this.dataSource != null) {
+                this.connection = null;
+            }
         }
     }
 
@@ -25,18 +25,18 @@ import java.sql.SQLException;
  *
  * @author Clinton Begin
  */
-public class BooleanTypeHandler extends BaseTypeHandler<Boolean> {
+public class BooleanTypeHandler extends BaseTypeHandler<Boolean> implements PrimitiveTypeHandler.OfBoolean {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Boolean parameter, JdbcType jdbcType)
             throws SQLException {
-        ps.setBoolean(i, parameter);
+        setBoolean(ps, i, parameter);
     }
 
     @Override
     public Boolean getNullableResult(ResultSet rs, String columnName)
             throws SQLException {
-        return rs.getBoolean(columnName);
+        return getBoolean(rs, columnName);
     }
 
     @Override
@@ -50,4 +50,14 @@ public class BooleanTypeHandler extends BaseTypeHandler<Boolean> {
             throws SQLException {
         return cs.getBoolean(columnIndex);
     }
+
+    @Override
+    public boolean getBoolean(ResultSet rs, String columnName) throws SQLException {
+        return rs.getBoolean(columnName);
+    }
+
+    @Override
+    public void setBoolean(PreparedStatement ps, int i, boolean parameter) throws SQLException {
+        ps.setBoolean(i, parameter);
+    }
 }
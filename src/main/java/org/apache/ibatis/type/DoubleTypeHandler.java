@@ -25,18 +25,18 @@ import java.sql.SQLException;
  *
  * @author Clinton Begin
  */
-public class DoubleTypeHandler extends BaseTypeHandler<Double> {
+public class DoubleTypeHandler extends BaseTypeHandler<Double> implements PrimitiveTypeHandler.OfDouble {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Double parameter, JdbcType jdbcType)
             throws SQLException {
-        ps.setDouble(i, parameter);
+        setDouble(ps, i, parameter);
     }
 
     @Override
     public Double getNullableResult(ResultSet rs, String columnName)
             throws SQLException {
-        return rs.getDouble(columnName);
+        return getDouble(rs, columnName);
     }
 
     @Override
@@ -51,4 +51,13 @@ public class DoubleTypeHandler extends BaseTypeHandler<Double> {
         return cs.getDouble(columnIndex);
     }
 
+    @Override
+    public double getDouble(ResultSet rs, String columnName) throws SQLException {
+        return rs.getDouble(columnName);
+    }
+
+    @Override
+    public void setDouble(PreparedStatement ps, int i, double parameter) throws SQLException {
+        ps.setDouble(i, parameter);
+    }
 }
@@ -25,20 +25,18 @@ import java.sql.SQLException;
  *
  * @author Clinton Begin
  */
-public class IntegerTypeHandler extends BaseTypeHandler<Integer> {
+public class IntegerTypeHandler extends BaseTypeHandler<Integer> implements PrimitiveTypeHandler.OfInt {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Integer parameter, JdbcType jdbcType)
             throws SQLException {
-
-        ps.setInt(i, parameter);
+        setInt(ps, i, parameter);
     }
 
     @Override
     public Integer getNullableResult(ResultSet rs, String columnName)
             throws SQLException {
-
-        return rs.getInt(columnName);
+        return getInt(rs, columnName);
     }
 
     @Override
@@ -52,4 +50,14 @@ public class IntegerTypeHandler extends BaseTypeHandler<Integer> {
             throws SQLException {
         return cs.getInt(columnIndex);
     }
+
+    @Override
+    public int getInt(ResultSet rs, String columnName) throws SQLException {
+        return rs.getInt(columnName);
+    }
+
+    @Override
+    public void setInt(PreparedStatement ps, int i, int parameter) throws SQLException {
+        ps.setInt(i, parameter);
+    }
 }
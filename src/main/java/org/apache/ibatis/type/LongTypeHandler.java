@@ -25,18 +25,18 @@ import java.sql.SQLException;
  *
  * @author Clinton Begin
  */
-public class LongTypeHandler extends BaseTypeHandler<Long> {
+public class LongTypeHandler extends BaseTypeHandler<Long> implements PrimitiveTypeHandler.OfLong {
 
     @Override
     public void setNonNullParameter(PreparedStatement ps, int i, Long parameter, JdbcType jdbcType)
             throws SQLException {
-        ps.setLong(i, parameter);
+        setLong(ps, i, parameter);
     }
 
     @Override
     public Long getNullableResult(ResultSet rs, String columnName)
             throws SQLException {
-        return rs.getLong(columnName);
+        return getLong(rs, columnName);
     }
 
     @Override
@@ -50,4 +50,14 @@ public class LongTypeHandler extends BaseTypeHandler<Long> {
             throws SQLException {
         return cs.getLong(columnIndex);
     }
+
+    @Override
+    public long getLong(ResultSet rs, String columnName) throws SQLException {
+        return rs.getLong(columnName);
+    }
+
+    @Override
+    public void setLong(PreparedStatement ps, int i, long parameter) throws SQLException {
+        ps.setLong(i, parameter);
+    }
 }
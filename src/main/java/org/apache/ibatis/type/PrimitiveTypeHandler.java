@@ -0,0 +1,72 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 基本类型的 TypeHandler 扩展接口
+ * 直接读写基本类型值，不做装箱，也不检查 wasNull，调用方需要自行调用 ResultSet.wasNull() 判断是否为null；
+ * 目标属性是基本类型时，结果映射会优先使用这些方法，因此其结果必须与 getResult 一致
+ */
+public interface PrimitiveTypeHandler {
+
+    /**
+     * 只有直接声明了基本类型接口的类才走快速路径，
+     * 继承内置处理器并重写 getNullableResult 的子类不会被绕过
+     */
+    static boolean isDeclaredBy(TypeHandler<?> typeHandler) {
+        if (typeHandler == null) {
+            return false;
+        }
+        for (Class<?> type : typeHandler.getClass().getInterfaces()) {
+            if (PrimitiveTypeHandler.class.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    interface OfInt extends PrimitiveTypeHandler {
+
+        int getInt(ResultSet rs, String columnName) throws SQLException;
+
+        void setInt(PreparedStatement ps, int i, int parameter) throws SQLException;
+    }
+
+    interface OfLong extends PrimitiveTypeHandler {
+
+        long getLong(ResultSet rs, String columnName) throws SQLException;
+
+        void setLong(PreparedStatement ps, int i, long parameter) throws SQLException;
+    }
+
+    interface OfDouble extends PrimitiveTypeHandler {
+
+        double getDouble(ResultSet rs, String columnName) throws SQLException;
+
+        void setDouble(PreparedStatement ps, int i, double parameter) throws SQLException;
+    }
+
+    interface OfBoolean extends PrimitiveTypeHandler {
+
+        boolean getBoolean(ResultSet rs, String columnName) throws SQLException;
+
+        void setBoolean(PreparedStatement ps, int i, boolean parameter) throws SQLException;
+    }
+}
@@ -20,8 +20,6 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.ibatis.io.Resources;
 
@@ -50,7 +48,7 @@ public class UnknownTypeHandler extends BaseTypeHandler<Object> {
     @Override
     public Object getNullableResult(ResultSet rs, String columnName)
             throws SQLException {
-        TypeHandler<?> handler = resolveTypeHandler(rs, columnName);
+        TypeHandler<?> handler = resolveResultTypeHandler(rs, columnName);
         return handler.getResult(rs, columnName);
     }
 
@@ -71,30 +69,40 @@ public class UnknownTypeHandler extends BaseTypeHandler<Object> {
     }
 
     private TypeHandler<? extends Object> resolveTypeHandler(Object parameter, JdbcType jdbcType) {
-        TypeHandler<? extends Object> handler;
         if (parameter == null) {
+            return OBJECT_TYPE_HANDLER;
+        }
+        return resolveParameterTypeHandler(parameter.getClass(), jdbcType);
+    }
+
+    /**
+     * 根据参数的运行时类型解析实际使用的 TypeHandler，找不到时使用 ObjectTypeHandler
+     * 供调用方按参数位置缓存解析结果，避免每次绑定参数都查询 TypeHandlerRegistry
+     */
+    public TypeHandler<?> resolveParameterTypeHandler(Class<?> parameterType, JdbcType jdbcType) {
+        TypeHandler<?> handler = typeHandlerRegistry.getTypeHandler(parameterType, jdbcType);
+        // check if handler is null (issue #270)
+        if (handler == null || handler instanceof UnknownTypeHandler) {
             handler = OBJECT_TYPE_HANDLER;
-        } else {
-            handler = typeHandlerRegistry.getTypeHandler(parameter.getClass(), jdbcType);
-            // check if handler is null (issue #270)
-            if (handler == null || handler instanceof UnknownTypeHandler) {
-                handler = OBJECT_TYPE_HANDLER;
-            }
         }
         return handler;
     }
 
-    private TypeHandler<?> resolveTypeHandler(ResultSet rs, String column) {
+    /**
+     * 根据 ResultSetMetaData 中指定列的类型解析实际使用的 TypeHandler，找不到时使用 ObjectTypeHandler
+     * 同一个 ResultSet 中结果是固定的，调用方可以按列缓存
+     */
+    public TypeHandler<?> resolveResultTypeHandler(ResultSet rs, String column) {
         try {
-            Map<String, Integer> columnIndexLookup;
-            columnIndexLookup = new HashMap<>();
             ResultSetMetaData rsmd = rs.getMetaData();
             int count = rsmd.getColumnCount();
-            for (int i = 1; i <= count; i++) {
-                String name = rsmd.getColumnName(i);
-                columnIndexLookup.put(name, i);
+            // 同名列取最后一个，与原先先放入 HashMap 再查找的结果一致
+            Integer columnIndex = null;
+            for (int i = count; i >= 1 && columnIndex == null; i--) {
+                if (rsmd.getColumnName(i).equals(column)) {
+                    columnIndex = i;
+                }
             }
-            Integer columnIndex = columnIndexLookup.get(column);
             TypeHandler<?> handler = null;
             if (columnIndex != null) {
                 handler = resolveTypeHandler(rsmd, columnIndex);
@@ -15,16 +15,23 @@
  */
 package org.apache.ibatis.builder;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.CallableStatement;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.ibatis.builder.mapper.CustomMapper;
 import org.apache.ibatis.builder.typehandler.CustomIntegerTypeHandler;
@@ -56,6 +63,7 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 import static org.hamcrest.core.Is.*;
 import static org.hamcrest.core.IsInstanceOf.*;
@@ -66,6 +74,9 @@ public class XmlConfigBuilderTest {
   @Rule
   public ExpectedException expectedException = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void shouldSuccessfullyLoadMinimalXMLConfigFile() throws Exception {
     String resource = "org/apache/ibatis/builder/MinimalMapperConfig.xml";
@@ -297,4 +308,190 @@ public class XmlConfigBuilderTest {
     builder.parse();
   }
 
+  @Test
+  public void shouldParseMappersInParallel() {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"parallelMapperParsing\" value=\"true\"/>\n"
+            + "  </settings>\n"
+            + "  <typeAliases>\n"
+            + "    <package name=\"org.apache.ibatis.domain.blog\"/>\n"
+            + "  </typeAliases>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/BlogMapper.xml\"/>\n"
+            + "    <mapper url=\"file:./src/test/java/org/apache/ibatis/builder/NestedBlogMapper.xml\"/>\n"
+            + "    <mapper class=\"org.apache.ibatis.builder.CachedAuthorMapper\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    XMLConfigBuilder builder = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG));
+    Configuration config = builder.parse();
+
+    assertThat(config.isParallelMapperParsing(), is(true));
+    assertTrue(config.isResourceLoaded("org/apache/ibatis/builder/AuthorMapper.xml"));
+    assertTrue(config.isResourceLoaded("org/apache/ibatis/builder/BlogMapper.xml"));
+    assertTrue(config.isResourceLoaded("file:./src/test/java/org/apache/ibatis/builder/NestedBlogMapper.xml"));
+    assertTrue(config.hasStatement("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAllAuthors"));
+    assertTrue(config.hasMapper(CachedAuthorMapper.class));
+  }
+
+  @Test
+  public void shouldReportMissingMapperResourceWhenParsingInParallel() {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"parallelMapperParsing\" value=\"true\"/>\n"
+            + "  </settings>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper resource=\"a/b/c/MissingMapper.xml\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    expectedException.expect(BuilderException.class);
+    expectedException.expectMessage("Error parsing SQL Mapper Configuration. Cause: java.io.IOException: Could not find resource a/b/c/MissingMapper.xml");
+
+    XMLConfigBuilder builder = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG));
+    builder.parse();
+  }
+
+  @Test
+  public void shouldRebuildMappersFromSnapshot() throws Exception {
+    File snapshot = temporaryFolder.newFile("mapper.snapshot");
+    snapshot.delete();
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"mapperSnapshotFile\" value=\"" + snapshot.getAbsolutePath() + "\"/>\n"
+            + "  </settings>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/PostMapper.xml\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    Configuration parsed = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG)).parse();
+    assertTrue(snapshot.isFile());
+
+    // rename the table inside the snapshot only, so sql read from the snapshot can be told apart from the mapper file
+    String content = new String(Files.readAllBytes(snapshot.toPath()), StandardCharsets.ISO_8859_1);
+    assertTrue(content.contains("FROM POST P"));
+    Files.write(snapshot.toPath(), content.replace("FROM POST P", "FROM TSOP P").getBytes(StandardCharsets.ISO_8859_1));
+
+    Configuration restored = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG)).parse();
+    assertEquals(new HashSet<String>(parsed.getMappedStatementNames()), new HashSet<String>(restored.getMappedStatementNames()));
+    assertEquals(new HashSet<String>(parsed.getResultMapNames()), new HashSet<String>(restored.getResultMapNames()));
+
+    Map<String, Object> param = new HashMap<String, Object>();
+    param.put("blog_id", 1);
+    String statement = "org.apache.ibatis.domain.blog.mappers.PostMapper.findPost";
+    String parsedSql = parsed.getMappedStatement(statement).getBoundSql(param).getSql();
+    assertTrue(parsedSql, parsedSql.contains("FROM POST P"));
+    assertEquals(parsedSql.replace("FROM POST P", "FROM TSOP P"),
+        restored.getMappedStatement(statement).getBoundSql(param).getSql());
+  }
+
+  @Test
+  public void shouldParseMappersWithStax() throws Exception {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"staxMapperParsing\" value=\"%s\"/>\n"
+            + "  </settings>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/PostMapper.xml\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    Configuration dom = new XMLConfigBuilder(new StringReader(String.format(MAPPER_CONFIG, "false"))).parse();
+    Configuration stax = new XMLConfigBuilder(new StringReader(String.format(MAPPER_CONFIG, "true"))).parse();
+    assertThat(stax.isStaxMapperParsing(), is(true));
+    assertEquals(new HashSet<String>(dom.getMappedStatementNames()), new HashSet<String>(stax.getMappedStatementNames()));
+
+    Map<String, Object> param = new HashMap<String, Object>();
+    param.put("blog_id", 1);
+    String statement = "org.apache.ibatis.domain.blog.mappers.PostMapper.findPost";
+    assertEquals(dom.getMappedStatement(statement).getBoundSql(param).getSql(),
+        stax.getMappedStatement(statement).getBoundSql(param).getSql());
+  }
+
+  @Test
+  public void shouldBuildMappedStatementsOnFirstUse() throws Exception {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"lazyStatementBuilding\" value=\"%s\"/>\n"
+            + "  </settings>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/AuthorMapper.xml\"/>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/PostMapper.xml\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+
+    Configuration eager = new XMLConfigBuilder(new StringReader(String.format(MAPPER_CONFIG, "false"))).parse();
+    Configuration lazy = new XMLConfigBuilder(new StringReader(String.format(MAPPER_CONFIG, "true"))).parse();
+    assertThat(lazy.isLazyStatementBuilding(), is(true));
+
+    String statement = "org.apache.ibatis.domain.blog.mappers.PostMapper.findPost";
+    assertThat(lazy.hasLazyStatement(statement), is(true));
+    Map<String, Object> param = new HashMap<String, Object>();
+    param.put("blog_id", 1);
+    assertEquals(eager.getMappedStatement(statement).getBoundSql(param).getSql(),
+        lazy.getMappedStatement(statement).getBoundSql(param).getSql());
+    assertThat(lazy.hasLazyStatement(statement), is(false));
+
+    assertEquals(new HashSet<String>(eager.getMappedStatementNames()), new HashSet<String>(lazy.getMappedStatementNames()));
+  }
+
+  @Test
+  public void shouldFindLazyStatementWhileAnotherThreadBuildsIt() throws Exception {
+    final String MAPPER_CONFIG = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+            + "<!DOCTYPE configuration PUBLIC \"-//mybatis.org//DTD Config 3.0//EN\" \"http://mybatis.org/dtd/mybatis-3-config.dtd\">\n"
+            + "<configuration>\n"
+            + "  <settings>\n"
+            + "    <setting name=\"lazyStatementBuilding\" value=\"true\"/>\n"
+            + "  </settings>\n"
+            + "  <mappers>\n"
+            + "    <mapper resource=\"org/apache/ibatis/builder/PostMapper.xml\"/>\n"
+            + "  </mappers>\n"
+            + "</configuration>\n";
+    final String statement = "org.apache.ibatis.domain.blog.mappers.PostMapper.findPost";
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    for (int round = 0; round < 20; round++) {
+      final Configuration config = new XMLConfigBuilder(new StringReader(MAPPER_CONFIG)).parse();
+      final CountDownLatch start = new CountDownLatch(1);
+      Thread[] threads = new Thread[8];
+      for (int i = 0; i < threads.length; i++) {
+        threads[i] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              start.await();
+              assertNotNull(config.getMappedStatement(statement));
+            } catch (Throwable t) {
+              failure.compareAndSet(null, t);
+            }
+          }
+        });
+        threads[i].start();
+      }
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      if (failure.get() != null) {
+        throw new AssertionError(failure.get());
+      }
+      assertThat(config.hasLazyStatement(statement), is(false));
+    }
+  }
+
 }
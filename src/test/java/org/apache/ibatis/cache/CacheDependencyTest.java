@@ -0,0 +1,132 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+public class CacheDependencyTest {
+
+  @Test
+  public void shouldExtractTablesFromSql() {
+    assertEquals(new LinkedHashSet<>(Arrays.asList("users")),
+        CacheDependency.extractTables("select * from users where id = ?"));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("orders", "users", "items")),
+        CacheDependency.extractTables("SELECT o.id FROM Orders o JOIN users u ON u.id = o.user_id, items i WHERE i.order_id = o.id"));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("users", "archive")),
+        CacheDependency.extractTables("select * from (select id from users) t union select id from archive"));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("users")),
+        CacheDependency.extractTables("insert into \"USERS\" (id, name) values (?, ?)"));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("app.users")),
+        CacheDependency.extractTables("update app.users set name = ? where id = ?"));
+    assertEquals(new LinkedHashSet<>(Arrays.asList("users")),
+        CacheDependency.extractTables("delete from users where id = ?"));
+    assertTrue(CacheDependency.extractTables("{call refresh_users()}").isEmpty());
+  }
+
+  @Test
+  public void shouldCoverRowsOfTheSameTable() {
+    CacheDependency table = new CacheDependency("users", null);
+    CacheDependency row1 = new CacheDependency("USERS", 1);
+    CacheDependency row1Long = new CacheDependency("users", 1L);
+    CacheDependency row2 = new CacheDependency("users", 2);
+    assertEquals(row1, row1Long);
+    assertTrue(table.covers(row1));
+    assertTrue(row1.covers(table));
+    assertTrue(row1.covers(row1Long));
+    assertFalse(row1.covers(row2));
+    assertFalse(table.covers(new CacheDependency("orders", null)));
+  }
+
+  @Test
+  public void shouldEvictOnlyDependentEntries() {
+    Cache cache = new PerpetualCache("default");
+    CacheDependencyIndex index = new CacheDependencyIndex();
+    cache.putObject("allUsers", "all");
+    cache.putObject("user1", "one");
+    cache.putObject("user2", "two");
+    cache.putObject("orders", "orders");
+    index.register(cache, "allUsers", Arrays.asList(new CacheDependency("users", null)));
+    index.register(cache, "user1", Arrays.asList(new CacheDependency("users", 1)));
+    index.register(cache, "user2", Arrays.asList(new CacheDependency("users", 2)));
+    index.register(cache, "orders", Arrays.asList(new CacheDependency("orders", null)));
+
+    index.invalidate(Arrays.asList(new CacheDependency("users", 1)));
+    assertNull(cache.getObject("allUsers"));
+    assertNull(cache.getObject("user1"));
+    assertEquals("two", cache.getObject("user2"));
+    assertEquals("orders", cache.getObject("orders"));
+    assertEquals(1, index.getEntryCount("users"));
+
+    index.invalidate(Arrays.asList(new CacheDependency("users", null)));
+    assertNull(cache.getObject("user2"));
+    assertEquals(0, index.getEntryCount("users"));
+    assertEquals("orders", cache.getObject("orders"));
+  }
+
+  @Test
+  public void shouldForgetEntriesThatLeaveTheCache() {
+    CacheDependencyIndex index = new CacheDependencyIndex();
+    Cache cache = new CacheBuilder("default")
+        .implementation(PerpetualCache.class)
+        .addDecorator(LruCache.class)
+        .size(2)
+        .dependencyIndex(index)
+        .build();
+    for (int i = 1; i <= 3; i++) {
+      cache.putObject("user" + i, "user");
+      index.register(cache, "user" + i, Arrays.asList(new CacheDependency("users", i), new CacheDependency("orders", null)));
+    }
+    // user1 was evicted by the LRU decorator
+    assertEquals(2, index.getEntryCount("users"));
+    assertEquals(2, index.getEntryCount("orders"));
+
+    // invalidating one table drops the entry from every table it depends on
+    index.invalidate(Arrays.asList(new CacheDependency("users", 2)));
+    assertEquals(1, index.getEntryCount("users"));
+    assertEquals(1, index.getEntryCount("orders"));
+
+    // a namespace flush clears the cache on commit
+    TransactionalCache txCache = new TransactionalCache(cache, index);
+    txCache.clear();
+    txCache.commit();
+    assertEquals(0, index.getEntryCount("users"));
+    assertEquals(0, index.getEntryCount("orders"));
+  }
+
+  @Test
+  public void shouldForgetEntriesOfCustomCachesOnFlush() {
+    CacheDependencyIndex index = new CacheDependencyIndex();
+    Cache cache = new PerpetualCache("custom");
+    cache.putObject("user1", "one");
+    index.register(cache, "user1", Arrays.asList(new CacheDependency("users", 1)));
+    assertEquals(1, index.getEntryCount("users"));
+
+    TransactionalCache txCache = new TransactionalCache(cache, index);
+    txCache.clear();
+    txCache.commit();
+    assertEquals(0, index.getEntryCount("users"));
+  }
+
+}
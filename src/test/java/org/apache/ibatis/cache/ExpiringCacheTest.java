@@ -0,0 +1,194 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+  @Test
+  public void shouldExpireEachEntryAfterItsTimeToLive() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(300);
+    cache.putObject(0, 0);
+    Thread.sleep(200);
+    cache.putObject(1, 1);
+    Thread.sleep(150);
+    assertNull(cache.getObject(0));
+    assertEquals(1, cache.getObject(1));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldExpireEmptyResultsAfterNegativeTimeToLive() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setNegativeTimeToLive(200);
+    cache.putObject("found", Collections.singletonList("row"));
+    cache.putObject("missing", Collections.emptyList());
+    assertEquals(Collections.emptyList(), cache.getObject("missing"));
+    Thread.sleep(300);
+    assertNull(cache.getObject("missing"));
+    // without timeToLive non-empty results never expire
+    assertEquals(Collections.singletonList("row"), cache.getObject("found"));
+  }
+
+  @Test
+  public void shouldSpreadExpiryWithJitter() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(1000);
+    cache.setTimeToLiveJitter(0.8);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+    }
+    Thread.sleep(600);
+    int expired = 0;
+    for (int i = 0; i < 100; i++) {
+      if (cache.getObject(i) == null) {
+        expired++;
+      }
+    }
+    // entries expire anywhere between 200ms and 1000ms
+    assertTrue("expired " + expired, expired > 0 && expired < 100);
+  }
+
+  @Test
+  public void shouldRefreshAheadInBackground() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(500);
+    cache.setRefreshAheadFactor(0.5);
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch refreshed = new CountDownLatch(1);
+    ExpiringCache.putObject(cache, "key", "initial", new CacheLoader() {
+      @Override
+      public Object load() {
+        loads.incrementAndGet();
+        refreshed.countDown();
+        return "refreshed";
+      }
+    });
+    assertEquals("initial", cache.getObject("key"));
+    Thread.sleep(300);
+    // readers keep getting the current value while the entry is refreshed
+    assertEquals("initial", cache.getObject("key"));
+    assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+    waitForValue(cache, "key", "refreshed");
+    Thread.sleep(300);
+    // the refreshed entry got a new time to live
+    assertEquals("refreshed", cache.getObject("key"));
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void shouldDiscardRefreshStartedBeforeClear() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(10000);
+    cache.setRefreshAheadFactor(0.000001);
+    final CountDownLatch loading = new CountDownLatch(1);
+    final CountDownLatch cleared = new CountDownLatch(1);
+    final CountDownLatch loaded = new CountDownLatch(1);
+    ExpiringCache.putObject(cache, "key", "initial", new CacheLoader() {
+      @Override
+      public Object load() throws Exception {
+        loading.countDown();
+        cleared.await();
+        loaded.countDown();
+        return "stale";
+      }
+    });
+    Thread.sleep(10);
+    assertEquals("initial", cache.getObject("key"));
+    assertTrue(loading.await(5, TimeUnit.SECONDS));
+    cache.clear();
+    cleared.countDown();
+    assertTrue(loaded.await(5, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertNull(cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldBeAddedByCacheBuilderWhenTimeToLiveIsConfigured() {
+    Properties properties = new Properties();
+    properties.setProperty("timeToLive", "1000");
+    properties.setProperty("timeToLiveJitter", "0.1");
+    Cache cache = new CacheBuilder("DefaultCache").properties(properties).build();
+    MetaObject metaCache = SystemMetaObject.forObject(cache);
+    // SynchronizedCache -> LoggingCache -> ExpiringCache
+    Object expiring = metaCache.getValue("delegate.delegate");
+    assertTrue(expiring.getClass().getName(), expiring instanceof ExpiringCache);
+    assertEquals(1000, ((ExpiringCache) expiring).getTimeToLive());
+    assertEquals(0.1, ((ExpiringCache) expiring).getTimeToLiveJitter(), 0);
+
+    cache = new CacheBuilder("DefaultCache").build();
+    assertFalse(SystemMetaObject.forObject(cache).getValue("delegate.delegate") instanceof ExpiringCache);
+  }
+
+  @Test
+  public void shouldFindRefreshAheadInTheDecoratorChain() {
+    Properties properties = new Properties();
+    properties.setProperty("timeToLive", "1000");
+    assertFalse(ExpiringCache.isRefreshAhead(new CacheBuilder("DefaultCache").properties(properties).build()));
+    properties.setProperty("refreshAheadFactor", "0.5");
+    assertTrue(ExpiringCache.isRefreshAhead(new CacheBuilder("DefaultCache").properties(properties).build()));
+    assertFalse(ExpiringCache.isRefreshAhead(new CacheBuilder("DefaultCache").build()));
+    assertFalse(ExpiringCache.isRefreshAhead(new PerpetualCache("DefaultCache")));
+  }
+
+  @Test
+  public void shouldKeepEntryWhenLoaderGivesUp() throws Exception {
+    ExpiringCache cache = new ExpiringCache(new PerpetualCache("DefaultCache"));
+    cache.setTimeToLive(10000);
+    cache.setRefreshAheadFactor(0.000001);
+    final AtomicInteger loads = new AtomicInteger();
+    ExpiringCache.putObject(cache, "key", "initial", new CacheLoader() {
+      @Override
+      public Object load() {
+        loads.incrementAndGet();
+        return null;
+      }
+    });
+    Thread.sleep(10);
+    assertEquals("initial", cache.getObject("key"));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (loads.get() < 2 && System.currentTimeMillis() < deadline) {
+      // each read past the refresh point retries once the previous attempt gave up
+      assertEquals("initial", cache.getObject("key"));
+      Thread.sleep(10);
+    }
+    assertTrue(loads.get() >= 2);
+  }
+
+  private void waitForValue(Cache cache, Object key, Object expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!expected.equals(cache.getObject(key)) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, cache.getObject(key));
+  }
+
+}
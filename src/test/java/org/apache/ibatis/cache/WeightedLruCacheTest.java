@@ -0,0 +1,107 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.WeightedLruCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.junit.Test;
+
+public class WeightedLruCacheTest {
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedItemsBeyondMaxWeight() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"));
+    cache.putObject(0, authors(5));
+    long weight = cache.getWeight();
+    assertTrue("weight " + weight, weight > 0);
+    // room for three lists of the same size
+    cache.setMaxWeight(weight * 3);
+    cache.putObject(1, authors(5));
+    cache.putObject(2, authors(5));
+    assertNotNull(cache.getObject(0));
+    assertEquals(weight * 3, cache.getWeight());
+    // adding a fourth list exceeds the budget and evicts the eldest untouched entry
+    cache.putObject(3, authors(5));
+    assertNull(cache.getObject(1));
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(3));
+    assertEquals(weight * 3, cache.getWeight());
+  }
+
+  @Test
+  public void shouldNotCacheSingleItemHeavierThanMaxWeight() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"));
+    cache.setMaxWeight(3000);
+    cache.putObject("small", authors(1));
+    cache.putObject("huge", authors(100));
+    assertNull(cache.getObject("huge"));
+    assertNotNull(cache.getObject("small"));
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldWeighLargerListsHeavier() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"));
+    cache.putObject("small", authors(1));
+    long small = cache.getWeight();
+    cache.clear();
+    assertEquals(0, cache.getWeight());
+    cache.putObject("large", authors(10));
+    assertTrue(cache.getWeight() > small * 5);
+    // serialized entries are weighed by their length
+    cache.putObject("bytes", new byte[10000]);
+    assertTrue(cache.getWeight() > 10000);
+  }
+
+  @Test
+  public void shouldStillLimitNumberOfItems() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"));
+    cache.setSize(2);
+    cache.putObject(0, 0);
+    cache.putObject(1, 1);
+    cache.putObject(2, 2);
+    assertNull(cache.getObject(0));
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  public void shouldReleaseWeightOfRemovedItems() {
+    WeightedLruCache cache = new WeightedLruCache(new PerpetualCache("default"));
+    cache.putObject(0, authors(3));
+    cache.putObject(1, authors(3));
+    long weight = cache.getWeight();
+    cache.removeObject(0);
+    assertEquals(weight / 2, cache.getWeight());
+    cache.putObject(1, authors(3));
+    assertEquals(weight / 2, cache.getWeight());
+  }
+
+  private List<Author> authors(int count) {
+    List<Author> authors = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      authors.add(new Author(i, "author" + i, "password" + i, "author" + i + "@example.com", "biography of author " + i, Section.NEWS));
+    }
+    return authors;
+  }
+
+}
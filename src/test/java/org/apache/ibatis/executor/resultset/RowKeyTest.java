@@ -0,0 +1,48 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class RowKeyTest {
+
+  @Test
+  public void shouldCompareValuesAndParents() {
+    String[] blogColumns = { "id" };
+    String[] postColumns = { "post_id", "post_subject", "post_body" };
+    RowKey parent = new RowKey("blog", blogColumns, new Object[] { 1 }, null);
+    RowKey key1 = new RowKey("post", postColumns, new Object[] { 10, null, new byte[] { 1, 2 } }, null).withParent(parent);
+    RowKey key2 = new RowKey("post", postColumns.clone(), new Object[] { 10, null, new byte[] { 1, 2 } }, null)
+        .withParent(new RowKey("blog", blogColumns, new Object[] { 1 }, null));
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+    assertNotEquals(key1, key1.withParent(new RowKey("blog", blogColumns, new Object[] { 2 }, null)));
+    String[] twoColumns = { "post_id", "post_subject" };
+    assertNotEquals(new RowKey("post", twoColumns, new Object[] { 10, null }, null), new RowKey("post", twoColumns, new Object[] { null, 10 }, null));
+    assertNotEquals(new RowKey("post", blogColumns, new Object[] { 10 }, null), new RowKey("author", blogColumns, new Object[] { 10 }, null));
+    // the same result map nested twice under different column prefixes
+    assertNotEquals(new RowKey("author", new String[] { "author_id" }, new Object[] { 1 }, null),
+        new RowKey("author", new String[] { "co_author_id" }, new Object[] { 1 }, null));
+  }
+
+  @Test
+  public void shouldPropagateNullKey() {
+    RowKey key = new RowKey("post", new String[] { "id" }, new Object[] { 10 }, null);
+    assertSame(RowKey.NULL_ROW_KEY, key.withParent(RowKey.NULL_ROW_KEY));
+    assertSame(RowKey.NULL_ROW_KEY, RowKey.NULL_ROW_KEY.withParent(key));
+  }
+}
@@ -0,0 +1,172 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.ibatis.submitted.autodiscover.aliases.DummyTypeAlias;
+import org.apache.ibatis.submitted.autodiscover.handlers.DummyTypeHandler;
+import org.apache.ibatis.submitted.autodiscover.mappers.DummyMapper;
+import org.apache.ibatis.type.Alias;
+import org.apache.ibatis.type.TypeHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResolverUtilTest {
+
+  private static final String PACKAGE = "org.apache.ibatis.submitted.autodiscover";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldFindImplementationsWithoutLoadingOtherClasses() {
+    RecordingClassLoader loader = new RecordingClassLoader(null);
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>();
+    resolverUtil.setClassLoader(loader);
+    resolverUtil.findImplementations(TypeHandler.class, PACKAGE);
+
+    assertEquals(Collections.<Class<?>>singleton(DummyTypeHandler.class), new HashSet<Class<?>>(resolverUtil.getClasses()));
+    assertEquals(Collections.singleton(DummyTypeHandler.class.getName()), loader.loaded);
+  }
+
+  @Test
+  public void shouldFindAnnotatedWithoutLoadingOtherClasses() {
+    RecordingClassLoader loader = new RecordingClassLoader(null);
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>();
+    resolverUtil.setClassLoader(loader);
+    resolverUtil.findAnnotated(Alias.class, PACKAGE);
+
+    assertEquals(Collections.<Class<?>>singleton(DummyTypeAlias.class), new HashSet<Class<?>>(resolverUtil.getClasses()));
+    assertEquals(Collections.singleton(DummyTypeAlias.class.getName()), loader.loaded);
+  }
+
+  @Test
+  public void shouldUseBuildTimeIndex() throws Exception {
+    // the index and the scanned package live in the same class path root
+    File root = temporaryFolder.newFolder("classes");
+    new File(root, PACKAGE.replace('.', '/')).mkdirs();
+    URL index = writeIndex(root, DummyMapper.class.getName(), DummyTypeHandler.class.getName());
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>();
+    resolverUtil.setClassLoader(new RecordingClassLoader(index, root.toURI().toURL()));
+
+    assertEquals(2, resolverUtil.listFromIndex(PACKAGE.replace('.', '/')).size());
+    resolverUtil.find(new ResolverUtil.IsA(Object.class), PACKAGE + ".mappers");
+    assertEquals(Collections.<Class<?>>singleton(DummyMapper.class), new HashSet<Class<?>>(resolverUtil.getClasses()));
+  }
+
+  @Test
+  public void shouldScanRootsNotCoveredByIndex() throws Exception {
+    // a library jar ships an index that knows nothing about the application's packages
+    File library = temporaryFolder.newFolder("library");
+    URL index = writeIndex(library, "com.example.library.LibraryMapper");
+    ResolverUtil<Object> resolverUtil = new ResolverUtil<Object>();
+    resolverUtil.setClassLoader(new RecordingClassLoader(index, null));
+
+    resolverUtil.findImplementations(TypeHandler.class, PACKAGE);
+    assertEquals(Collections.<Class<?>>singleton(DummyTypeHandler.class), new HashSet<Class<?>>(resolverUtil.getClasses()));
+  }
+
+  private URL writeIndex(File root, String... classNames) throws IOException {
+    File index = new File(root, ResolverUtil.INDEX_RESOURCE);
+    index.getParentFile().mkdirs();
+    Writer writer = new OutputStreamWriter(new FileOutputStream(index), "UTF-8");
+    try {
+      writer.write("# generated\n");
+      for (String className : classNames) {
+        writer.write(className + "\n");
+      }
+    } finally {
+      writer.close();
+    }
+    return index.toURI().toURL();
+  }
+
+  @Test
+  public void shouldListJarEntriesFromCentralDirectory() throws Exception {
+    File jar = temporaryFolder.newFile("test.jar");
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      out.putNextEntry(new ZipEntry("org/example/"));
+      out.putNextEntry(new ZipEntry("org/example/A.class"));
+      out.putNextEntry(new ZipEntry("org/example/sub/B.class"));
+      out.putNextEntry(new ZipEntry("org/other/C.class"));
+    } finally {
+      out.close();
+    }
+
+    DefaultVFS vfs = new DefaultVFS();
+    URL url = new URL("jar:" + jar.toURI().toURL() + "!/org/example");
+    List<String> resources = vfs.list(url, "org/example");
+    assertEquals(2, resources.size());
+    assertTrue(resources.contains("org/example/A.class"));
+    assertTrue(resources.contains("org/example/sub/B.class"));
+    assertFalse(resources.contains("org/other/C.class"));
+    // listing is cached per JAR
+    assertTrue(vfs.getJarEntries(jar.toURI().toURL()) == vfs.getJarEntries(jar.toURI().toURL()));
+  }
+
+  private static class RecordingClassLoader extends ClassLoader {
+    private final Set<String> loaded = new HashSet<String>();
+    private final URL index;
+    private final URL root;
+
+    RecordingClassLoader(URL index) {
+      this(index, null);
+    }
+
+    RecordingClassLoader(URL index, URL root) {
+      super(ResolverUtilTest.class.getClassLoader());
+      this.index = index;
+      this.root = root;
+    }
+
+    @Override
+    public Class<?> loadClass(String name) throws ClassNotFoundException {
+      loaded.add(name);
+      return super.loadClass(name);
+    }
+
+    @Override
+    public Enumeration<URL> getResources(String name) throws IOException {
+      if (ResolverUtil.INDEX_RESOURCE.equals(name)) {
+        return index == null ? Collections.<URL>emptyEnumeration() : Collections.enumeration(Collections.singleton(index));
+      }
+      if (root != null) {
+        // packages are only found under the given root
+        return Collections.enumeration(Collections.singleton(new URL(root, name)));
+      }
+      return super.getResources(name);
+    }
+  }
+}
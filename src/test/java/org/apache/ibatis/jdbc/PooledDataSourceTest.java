@@ -17,17 +17,26 @@ package org.apache.ibatis.jdbc;
 
 import static org.junit.Assert.*;
 
+import java.lang.ref.WeakReference;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.hsqldb.jdbc.JDBCConnection;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -90,6 +99,300 @@ public class PooledDataSourceTest extends BaseDataTest {
     JDBCConnection realConnection = (JDBCConnection) PooledDataSource.unwrapConnection(c);
   }
 
+  @Test
+  public void shouldPreFillAndRetireIdleConnectionsInBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(2);
+      ds.setPoolMaximumLifetime(300);
+      ds.setPoolMaintenanceInterval(50);
+      waitUntilIdle(ds, 2);
+      Connection first = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(first);
+      first.close();
+      waitUntil(ds, "retired connections", new Condition() {
+        @Override
+        public boolean isMet(PooledDataSource ds) {
+          return ds.getPoolState().getRetiredConnectionCount() >= 2;
+        }
+      });
+      waitUntilIdle(ds, 2);
+      assertTrue(real.isClosed());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  public void shouldStopMaintenanceThreadOnClose() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    Set<Thread> before = maintenanceThreads();
+    ds.setPoolMinimumIdleConnections(1);
+    ds.setPoolMaintenanceInterval(50);
+    waitUntilIdle(ds, 1);
+    Set<Thread> started = maintenanceThreads();
+    started.removeAll(before);
+    assertEquals(1, started.size());
+
+    ds.close();
+    Thread thread = started.iterator().next();
+    thread.join(5000);
+    assertFalse(thread.isAlive());
+    assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  public void shouldNotKeepDataSourceReachableFromMaintenanceThread() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ds.setPoolMaintenanceInterval(50);
+    WeakReference<PooledDataSource> ref = new WeakReference<>(ds);
+    ds = null;
+    long deadline = System.currentTimeMillis() + 10000;
+    while (ref.get() != null && System.currentTimeMillis() < deadline) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    assertNull(ref.get());
+  }
+
+  private Set<Thread> maintenanceThreads() {
+    Set<Thread> threads = new HashSet<>();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if ("mybatis-pool-maintenance".equals(thread.getName())) {
+        threads.add(thread);
+      }
+    }
+    return threads;
+  }
+
+  @Test
+  public void shouldReplaceBrokenIdleConnectionInBackground() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      ds.setPoolMinimumIdleConnections(1);
+      ds.setPoolMaintenanceInterval(50);
+      Connection c = ds.getConnection();
+      Connection real = PooledDataSource.unwrapConnection(c);
+      c.close();
+      // the server drops the connection while it sits in the pool
+      real.close();
+      waitUntil(ds, "bad connection detected", new Condition() {
+        @Override
+        public boolean isMet(PooledDataSource ds) {
+          return ds.getPoolState().getBadConnectionCount() == 1;
+        }
+      });
+      waitUntilIdle(ds, 1);
+      c = ds.getConnection();
+      assertNotSame(real, PooledDataSource.unwrapConnection(c));
+      assertFalse(c.isClosed());
+      c.close();
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  public void shouldNotPingOnBorrowWhenMaintenanceIsEnabled() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    try {
+      // the ping query would fail and discard every connection if it ran on the borrow path
+      ds.setPoolPingEnabled(true);
+      ds.setPoolPingQuery("SELECT * FROM NO_SUCH_TABLE");
+      ds.setPoolPingConnectionsNotUsedFor(0);
+      ds.setPoolMaintenanceInterval(60000);
+      for (int i = 0; i < 3; i++) {
+        Connection c = ds.getConnection();
+        Thread.sleep(5);
+        c.close();
+      }
+      assertEquals(0, ds.getPoolState().getBadConnectionCount());
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    } finally {
+      ds.setPoolMaintenanceInterval(0);
+    }
+  }
+
+  @Test
+  public void shouldNotLoseConnectionHandedToInterruptedWaiter() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ds.setPoolFairQueueing(true);
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolConnectionTimeout(10000);
+    Connection held = ds.getConnection();
+    final List<Object> outcome = Collections.synchronizedList(new ArrayList<Object>());
+    Thread waiter = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          outcome.add(ds.getConnection());
+        } catch (SQLException e) {
+          outcome.add(e);
+        }
+      }
+    });
+    waiter.start();
+    waitUntil(ds, "1 waiter", new Condition() {
+      @Override
+      public boolean isMet(PooledDataSource ds) {
+        return ds.getPoolState().getWaitingCount() == 1;
+      }
+    });
+    // holding the pool lock, the waiter is parked in await(); it is interrupted and then
+    // handed the returned connection while it waits to take the lock back
+    ReentrantLock lock = (ReentrantLock) SystemMetaObject.forObject(ds.getPoolState()).getValue("lock");
+    lock.lock();
+    try {
+      waiter.interrupt();
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!lock.hasQueuedThread(waiter) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(1);
+      }
+      assertTrue(lock.hasQueuedThread(waiter));
+      held.close();
+    } finally {
+      lock.unlock();
+    }
+    waiter.join(5000);
+    assertEquals(1, outcome.size());
+    assertTrue(String.valueOf(outcome.get(0)), outcome.get(0) instanceof SQLException);
+    assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+    assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    long start = System.currentTimeMillis();
+    Connection c = ds.getConnection();
+    c.close();
+    assertTrue(System.currentTimeMillis() - start < 1000);
+  }
+
+  @Test
+  public void shouldHandConnectionsToWaitersInArrivalOrder() throws Exception {
+    final PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ds.setPoolFairQueueing(true);
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolConnectionTimeout(10000);
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+    Connection held = ds.getConnection();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 5; i++) {
+      final int id = i;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            Connection c = ds.getConnection();
+            order.add(id);
+            c.close();
+          } catch (SQLException e) {
+            order.add(-1);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+      final int queued = i + 1;
+      waitUntil(ds, queued + " waiters", new Condition() {
+        @Override
+        public boolean isMet(PooledDataSource ds) {
+          return ds.getPoolState().getWaitingCount() == queued;
+        }
+      });
+    }
+    held.close();
+    for (Thread thread : threads) {
+      thread.join(10000);
+    }
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+    assertEquals(0, ds.getPoolState().getWaitingCount());
+    assertEquals(5, ds.getPoolState().getHadToWaitCount());
+    assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+    Map<Long, Long> queueLengths = ds.getPoolState().getQueueLengthHistogram();
+    assertEquals(Long.valueOf(1), queueLengths.get(1L));
+    assertEquals(Long.valueOf(1), queueLengths.get(2L));
+    assertEquals(Long.valueOf(2), queueLengths.get(4L));
+    assertEquals(Long.valueOf(1), queueLengths.get(8L));
+    ds.forceCloseAll();
+  }
+
+  @Test
+  public void shouldTimeOutPromptlyWhenThePoolIsExhausted() throws Exception {
+    for (boolean fair : new boolean[] { false, true }) {
+      PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+      ds.setPoolFairQueueing(fair);
+      ds.setPoolMaximumActiveConnections(1);
+      ds.setPoolTimeToWait(20000);
+      ds.setPoolConnectionTimeout(200);
+      Connection held = ds.getConnection();
+      long start = System.currentTimeMillis();
+      try {
+        ds.getConnection();
+        fail("Expected a timeout, fair=" + fair);
+      } catch (SQLTimeoutException e) {
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("Waited " + elapsed + " ms", elapsed >= 150 && elapsed < 5000);
+      }
+      assertEquals(1, ds.getPoolState().getConnectionTimeoutCount());
+      assertEquals(0, ds.getPoolState().getWaitingCount());
+      long waits = 0;
+      for (long count : ds.getPoolState().getWaitTimeHistogram().values()) {
+        waits += count;
+      }
+      assertEquals(1, waits);
+      // the pool is still usable once the connection comes back
+      held.close();
+      ds.getConnection().close();
+      ds.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldReportLeakedConnectionInsteadOfReclaimingIt() throws Exception {
+    PooledDataSource ds = createPooledDataSource(JPETSTORE_PROPERTIES);
+    ds.setPoolFairQueueing(true);
+    ds.setPoolMaximumActiveConnections(1);
+    ds.setPoolMaximumCheckoutTime(10);
+    ds.setPoolTimeToWait(50);
+    ds.setPoolConnectionTimeout(300);
+    ds.setPoolLeakDetectionThreshold(50);
+    Connection leaked = ds.getConnection();
+    Thread.sleep(100);
+    try {
+      ds.getConnection();
+      fail("Expected a timeout");
+    } catch (SQLTimeoutException e) {
+      // expected
+    }
+    assertEquals(1, ds.getPoolState().getLeakedConnectionCount());
+    assertEquals(0, ds.getPoolState().getClaimedOverdueConnectionCount());
+    // still owned by the borrower; a reclaimed connection would have been invalidated
+    assertFalse(leaked.isClosed());
+    leaked.close();
+    ds.forceCloseAll();
+  }
+
+  private interface Condition {
+    boolean isMet(PooledDataSource ds);
+  }
+
+  private void waitUntilIdle(PooledDataSource ds, final int idle) throws InterruptedException {
+    waitUntil(ds, idle + " idle connections", new Condition() {
+      @Override
+      public boolean isMet(PooledDataSource ds) {
+        return ds.getPoolState().getIdleConnectionCount() == idle;
+      }
+    });
+  }
+
+  private void waitUntil(PooledDataSource ds, String description, Condition condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.isMet(ds)) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Timed out waiting for " + description + ": " + ds.getPoolState());
+      }
+      Thread.sleep(20);
+    }
+  }
+
   @Ignore("See the comments")
   @Test
   public void shouldReconnectWhenServerKilledLeakedConnection() throws Exception {
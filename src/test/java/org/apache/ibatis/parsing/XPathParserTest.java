@@ -16,11 +16,16 @@
 package org.apache.ibatis.parsing;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.InputStream;
+import java.util.List;
 
+import org.apache.ibatis.builder.xml.XMLMapperEntityResolver;
 import org.apache.ibatis.io.Resources;
 import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 public class XPathParserTest {
 
@@ -43,4 +48,50 @@ public class XPathParserTest {
     assertEquals("employee[${id_var}]_height", node.getValueBasedIdentifier());
   }
 
+  @Test
+  public void shouldSelectSimplePathsLikeXPath() throws Exception {
+    String resource = "resources/nodelet_test.xml";
+    InputStream inputStream = Resources.getResourceAsStream(resource);
+    XPathParser parser = new XPathParser(inputStream, false, null, null);
+    XNode employee = parser.evalNode("/employee");
+    assertEquals("employee", employee.getName());
+    assertEquals("6", employee.evalNode("birth_date/month").getStringBody());
+    assertNull(employee.evalNode("missing"));
+    assertNull(parser.evalNode("/birth_date"));
+
+    List<XNode> nodes = employee.evalNodes("weight|height|first_name");
+    assertEquals(3, nodes.size());
+    assertEquals("first_name", nodes.get(0).getName());
+    assertEquals("height", nodes.get(1).getName());
+    assertEquals("weight", nodes.get(2).getName());
+    assertEquals(3, parser.evalNodes("/employee/birth_date/*").size());
+  }
+
+  @Test
+  public void shouldBuildSameDocumentWithStax() throws Exception {
+    assertSameDocumentWithStax("org/apache/ibatis/builder/PostMapper.xml");
+    assertSameDocumentWithStax("org/apache/ibatis/submitted/language/Mapper.xml");
+  }
+
+  private void assertSameDocumentWithStax(String resource) throws Exception {
+    XPathParser dom = new XPathParser(Resources.getResourceAsStream(resource), true, null, new XMLMapperEntityResolver());
+    Document document = StaxDocumentBuilder.build(Resources.getResourceAsStream(resource), new XMLMapperEntityResolver());
+    XPathParser stax = new XPathParser(document, false, null, null);
+    assertEquals(dom.evalNode("/mapper").toString(), stax.evalNode("/mapper").toString());
+    assertEquals(describe(dom.evalNode("/mapper").getNode()), describe(stax.evalNode("/mapper").getNode()));
+  }
+
+  private String describe(Node node) {
+    StringBuilder builder = new StringBuilder();
+    builder.append(node.getNodeType()).append(':').append(node.getNodeName());
+    if (node.getNodeType() != Node.ELEMENT_NODE) {
+      builder.append('=').append(node.getNodeValue());
+    }
+    builder.append('[');
+    for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+      builder.append(describe(child));
+    }
+    return builder.append(']').toString();
+  }
+
 }
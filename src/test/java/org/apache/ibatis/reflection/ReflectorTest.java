@@ -19,8 +19,12 @@ import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import org.apache.ibatis.domain.blog.Author;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -212,4 +216,39 @@ public class ReflectorTest {
     Reflector reflector = reflectorFactory.findForClass(Bean.class);
     assertTrue((Boolean)reflector.getGetInvoker("bool").invoke(new Bean(), new Byte[0]));
   }
+
+  @Test
+  public void shouldSetPrimitivePropertiesWithoutBoxing() throws Exception {
+    @SuppressWarnings("unused")
+    class Bean {
+      private long count;
+      private int id;
+      private Integer boxed;
+      public int getId() {return id;}
+      public void setId(int id) {this.id = id;}
+      public void setBoxed(Integer boxed) {this.boxed = boxed;}
+    }
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(Bean.class);
+    Bean bean = new Bean();
+    reflector.getPrimitiveSetter("id").setInt(bean, 42);
+    reflector.getPrimitiveSetter("count").setLong(bean, 7L);
+    assertEquals(42, bean.id);
+    assertEquals(7L, bean.count);
+    assertSame(reflector.getPrimitiveSetter("id"), reflector.getPrimitiveSetter("id"));
+    assertNull(reflector.getPrimitiveSetter("boxed"));
+    assertNull(reflector.getPrimitiveSetter("missing"));
+  }
+
+  @Test
+  public void shouldCacheConstructorHandles() throws Throwable {
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(Author.class);
+    List<Class<?>> argTypes = Arrays.<Class<?>>asList(int.class);
+    MethodHandle handle = reflector.getConstructorHandle(argTypes);
+    assertSame(handle, reflector.getConstructorHandle(new ArrayList<Class<?>>(argTypes)));
+    Author author = (Author) (Object) handle.invokeExact(new Object[] {101});
+    assertEquals(101, author.getId());
+    assertNull(reflector.getConstructorHandle(Arrays.<Class<?>>asList(String.class)));
+  }
 }
@@ -18,12 +18,17 @@ package org.apache.ibatis.scripting.defaults;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
 import org.apache.ibatis.mapping.*;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
 import org.apache.ibatis.type.TypeException;
@@ -32,6 +37,8 @@ import org.apache.ibatis.type.TypeHandlerRegistry;
 import org.junit.Assert;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyObject;
@@ -71,6 +78,32 @@ public class DefaultParameterHandlerTest {
 
   }
 
+  @Test
+  public void bindingPlanShouldReadSameValuesAsMetaObject() {
+    final MappedStatement mappedStatement = getMappedStatement();
+    final Configuration config = mappedStatement.getConfiguration();
+    Author author = new Author(101, "jim", "******", "jim@ibatis.apache.org", "", Section.NEWS);
+    Map<String, Object> parameterObject = new HashMap<String, Object>();
+    parameterObject.put("author", author);
+    parameterObject.put("ids", Arrays.asList(1, 2));
+    parameterObject.put("empty", null);
+
+    List<ParameterMapping> parameterMappings = new ArrayList<ParameterMapping>();
+    for (String property : Arrays.asList("author", "author.username", "author.id", "ids[1]", "empty.name", "missing")) {
+      parameterMappings.add(new ParameterMapping.Builder(config, property, Object.class).build());
+    }
+    ParameterBindingPlan plan = mappedStatement.getParameterBindingPlan(parameterObject.getClass());
+    ParameterBindingPlan.PropertyAccessor[] accessors = plan.getAccessors(parameterMappings);
+    assertSame(accessors, plan.getAccessors(parameterMappings));
+    MetaObject metaObject = config.newMetaObject(parameterObject);
+    for (int i = 0; i < parameterMappings.size(); i++) {
+      assertEquals(metaObject.getValue(parameterMappings.get(i).getProperty()), accessors[i].getValue(parameterObject));
+    }
+
+    ParameterBindingPlan directPlan = mappedStatement.getParameterBindingPlan(String.class);
+    assertEquals("value", directPlan.getAccessors(parameterMappings)[1].getValue("value"));
+  }
+
   MappedStatement getMappedStatement() {
     final Configuration config = new Configuration();
     final TypeHandlerRegistry registry = config.getTypeHandlerRegistry();
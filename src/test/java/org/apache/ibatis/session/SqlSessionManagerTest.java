@@ -15,12 +15,20 @@
  */
 package org.apache.ibatis.session;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.domain.blog.Author;
@@ -96,4 +104,31 @@ public class SqlSessionManagerTest extends BaseDataTest {
     assertNull(actual);
   }
 
+  @Test
+  public void shouldReturnSameMapperInstance() {
+    assertSame(manager.getMapper(AuthorMapper.class), manager.getMapper(AuthorMapper.class));
+  }
+
+  @Test
+  public void shouldShareMapperAcrossThreads() throws Exception {
+    final AuthorMapper mapper = manager.getMapper(AuthorMapper.class);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Author>> results = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        results.add(executor.submit(new Callable<Author>() {
+          @Override
+          public Author call() {
+            return mapper.selectAuthor(101);
+          }
+        }));
+      }
+      for (Future<Author> result : results) {
+        assertEquals("jim", result.get().getUsername());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
 }
@@ -275,6 +275,23 @@ public class SqlSessionTest extends BaseDataTest {
     }
   }
 
+  @Test
+  public void shouldBulkInsertOneRecordAtATimeByDefault() throws Exception {
+    // the fallback used by SqlSession implementations that do not override bulkInsert
+    SqlSession session = sqlMapper.openSession();
+    try {
+      List<Author> authors = new ArrayList<Author>();
+      authors.add(new Author(510, "bulk1", "******", "bulk1@somewhere.com", "Something...", null));
+      authors.add(new Author(511, "bulk2", "******", "bulk2@somewhere.com", "Something...", null));
+      int updates = SqlSessionDefaults.bulkInsert(session, "org.apache.ibatis.domain.blog.mappers.AuthorMapper.insertAuthor", authors);
+      assertEquals(2, updates);
+      Author actual = session.selectOne("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAuthor", new Author(511));
+      assertEquals("bulk2", actual.getUsername());
+    } finally {
+      session.close();
+    }
+  }
+
   @Test
   public void shouldUpdateAuthorImplicitRollback() throws Exception {
     SqlSession session = sqlMapper.openSession();
@@ -92,4 +92,19 @@ public class AncestorRefTest {
       sqlSession.close();
     }
   }
+
+  @Test
+  public void testSameAuthorUnderDifferentColumnPrefixes() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Blog blog = mapper.selectBlog(3);
+      // author and co-author share the nested result map and the values, but not the columns
+      assertEquals("Author1", blog.getAuthor().getName());
+      assertNotNull(blog.getCoAuthor());
+      assertEquals("Author1", blog.getCoAuthor().getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
 }
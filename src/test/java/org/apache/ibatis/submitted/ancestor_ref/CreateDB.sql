@@ -50,7 +50,7 @@ create table author (
 );
 
 insert into blog (id, title, author_id, co_author_id) values
-(1, 'Blog1', 1, 2), (2, 'Blog2', 2, 3);
+(1, 'Blog1', 1, 2), (2, 'Blog2', 2, 3), (3, 'Blog3', 1, 1);
 
 insert into author (id, name, reputation) values
 (1, 'Author1', 1), (2, 'Author2', 2), (3, 'Author3', 3);
@@ -25,10 +25,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Assert;
 
+import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.jdbc.ScriptRunner;
 import org.apache.ibatis.session.ExecutorType;
@@ -139,6 +141,60 @@ public class BatchKeysTest {
     }
   }
 
+  @Test
+  public void testInsertJdbc3WithWriteBehind() throws Exception {
+    sqlSessionFactory.getConfiguration().setBatchWriteBehindSize(2);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      List<User> inserted = new ArrayList<User>();
+      for (int i = 0; i < 5; i++) {
+        User user = new User(null, "User" + i);
+        sqlSession.insert("insertIdentity", user);
+        inserted.add(user);
+      }
+      // two batches were executed once they were full, the last one on flush
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      for (int i = 0; i < inserted.size(); i++) {
+        assertEquals(Integer.valueOf(i), inserted.get(i).getId());
+      }
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    try {
+      sqlSession = sqlSessionFactory.openSession();
+      List<User> users = sqlSession.selectList("selectIdentity");
+      assertEquals(5, users.size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void testSelectKeyWithWriteBehind() throws Exception {
+    sqlSessionFactory.getConfiguration().setBatchWriteBehindSize(2);
+    SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+    try {
+      List<User> inserted = new ArrayList<User>();
+      for (int i = 0; i < 5; i++) {
+        User user = new User(null, "User" + i);
+        sqlSession.insert("insert", user);
+        inserted.add(user);
+      }
+      // full batches run on the calling thread, so selectKey can query through the same executor
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      for (User user : inserted) {
+        assertEquals(Integer.valueOf(50), user.getId());
+      }
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
   @Test
   public void testInsertWithMapper() throws Exception {
     SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
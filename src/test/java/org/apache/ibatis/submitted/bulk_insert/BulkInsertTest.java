@@ -0,0 +1,146 @@
+/**
+ *    Copyright ${license.git.copyrightYears} the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.bulk_insert;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkInsertTest {
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Before
+    public void setUp() throws Exception {
+        // create a SqlSessionFactory
+        Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/bulk_insert/mybatis-config.xml");
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+        reader.close();
+
+        // populate in-memory database
+        SqlSession session = sqlSessionFactory.openSession();
+        Connection conn = session.getConnection();
+        reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/bulk_insert/CreateDB.sql");
+        ScriptRunner runner = new ScriptRunner(conn);
+        runner.setLogWriter(null);
+        runner.runScript(reader);
+        reader.close();
+        session.close();
+    }
+
+    @Test
+    public void shouldInsertInChunksAndSetGeneratedKeys() throws Exception {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            List<User> users = createUsers(5);
+            Assert.assertEquals(5, sqlSession.bulkInsert("org.apache.ibatis.submitted.bulk_insert.Mapper.insertUser", users, 2));
+            assertGeneratedKeys(users);
+            Assert.assertEquals(5, countUsers(sqlSession));
+
+            // every full chunk uses the same statement and sql
+            MappedStatement ms = sqlSessionFactory.getConfiguration().getMappedStatement("org.apache.ibatis.submitted.bulk_insert.Mapper.insertUser");
+            MappedStatement bulk = ms.getBulkInsertStatement(ms.getBoundSql(users.get(0)));
+            Assert.assertSame(bulk, ms.getBulkInsertStatement(ms.getBoundSql(users.get(1))));
+            String sql = bulk.getBoundSql(users.subList(0, 2)).getSql();
+            Assert.assertTrue(sql, sql.trim().endsWith("values (?), (?)"));
+            Assert.assertEquals(2, bulk.getBoundSql(users.subList(2, 4)).getParameterMappings().size());
+            Assert.assertSame(bulk.getBoundSql(users.subList(0, 2)).getParameterMappings(), bulk.getBoundSql(users.subList(2, 4)).getParameterMappings());
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldBindRecordsWithTypeHandlerDirectly() throws Exception {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            Assert.assertEquals(3, sqlSession.bulkInsert("org.apache.ibatis.submitted.bulk_insert.Mapper.insertUserWithName", Arrays.asList("a", "b", "c")));
+            Assert.assertEquals(3, countUsers(sqlSession));
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldBulkInsertThroughAnnotatedMapperInBatch() throws Exception {
+        SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH);
+        try {
+            List<User> users = createUsers(5);
+            sqlSession.getMapper(Mapper.class).insertUsers(users);
+            sqlSession.flushStatements();
+            assertGeneratedKeys(users);
+            Assert.assertEquals(5, countUsers(sqlSession));
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldRejectStatementWithoutValuesRow() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            sqlSession.bulkInsert("org.apache.ibatis.submitted.bulk_insert.Mapper.insertUserBySelect", createUsers(2));
+            Assert.fail("Should have rejected insert ... select");
+        } catch (PersistenceException e) {
+            Assert.assertTrue(e.getMessage().contains("cannot be used for bulk insert"));
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    private List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("User" + i));
+        }
+        return users;
+    }
+
+    private void assertGeneratedKeys(List<User> users) {
+        Set<Integer> ids = new HashSet<>();
+        for (User user : users) {
+            Assert.assertNotNull(user.getId());
+            ids.add(user.getId());
+        }
+        Assert.assertEquals(users.size(), ids.size());
+    }
+
+    private int countUsers(SqlSession sqlSession) throws Exception {
+        try (Statement stmt = sqlSession.getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("select count(*) from users")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
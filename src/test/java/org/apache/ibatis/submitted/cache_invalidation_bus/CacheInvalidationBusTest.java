@@ -0,0 +1,200 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.cache_invalidation_bus;
+
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.CacheDependency;
+import org.apache.ibatis.cache.bus.CacheInvalidation;
+import org.apache.ibatis.cache.bus.CacheInvalidationListener;
+import org.apache.ibatis.cache.bus.DatagramCacheInvalidationBus;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CacheInvalidationBusTest {
+
+  private DataSource dataSource;
+  private final List<DatagramCacheInvalidationBus> buses = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:cache_invalidation_bus", "sa", "");
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader("drop table users if exists;\n"
+          + "create table users (id int, name varchar(20));\n"
+          + "insert into users (id, name) values (1, 'User1');\n"
+          + "insert into users (id, name) values (2, 'User2');\n"));
+    } finally {
+      conn.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    for (DatagramCacheInvalidationBus bus : buses) {
+      bus.close();
+    }
+  }
+
+  @Test
+  public void shouldClearNamespaceOnOtherNodes() throws Exception {
+    SqlSessionFactory[] nodes = createCluster(false);
+    Assert.assertEquals("User2", getUserName(nodes[0], 2));
+    // a change behind MyBatis' back is only seen once the cache is cleared
+    executeDirectly("update users set name = 'Direct' where id = 2");
+    Assert.assertEquals("User2", getUserName(nodes[0], 2));
+
+    updateUserName(nodes[1], 1, "Changed");
+    waitForUserName(nodes[0], 2, "Direct");
+    Assert.assertEquals("Changed", getUserName(nodes[0], 1));
+  }
+
+  @Test
+  public void shouldInvalidateRowsOnOtherNodes() throws Exception {
+    SqlSessionFactory[] nodes = createCluster(true);
+    Assert.assertEquals("User1", getUserName(nodes[0], 1));
+    Assert.assertEquals("User2", getUserName(nodes[0], 2));
+    executeDirectly("update users set name = 'Direct' where id = 2");
+
+    updateUserName(nodes[1], 1, "Changed");
+    waitForUserName(nodes[0], 1, "Changed");
+    // other rows stay cached on the receiving node
+    Assert.assertEquals("User2", getUserName(nodes[0], 2));
+  }
+
+  @Test
+  public void shouldSplitLargeTransactionsIntoSeveralDatagrams() throws Exception {
+    DatagramCacheInvalidationBus receiver = newBus();
+    DatagramCacheInvalidationBus sender = newBus();
+    sender.addPeer(new InetSocketAddress(InetAddress.getLoopbackAddress(), receiver.getLocalPort()));
+    final BlockingQueue<CacheInvalidation> received = new LinkedBlockingQueue<>();
+    receiver.start(new CacheInvalidationListener() {
+      @Override
+      public void onInvalidation(CacheInvalidation invalidation) {
+        received.add(invalidation);
+      }
+    });
+
+    List<CacheInvalidation> invalidations = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      invalidations.add(CacheInvalidation.dependency(new CacheDependency("users", i)));
+    }
+    invalidations.add(CacheInvalidation.dependency(new CacheDependency("orders", "key")));
+    invalidations.add(CacheInvalidation.clear("org.apache.ibatis.submitted.cache_invalidation_bus.Mapper"));
+    sender.publish(invalidations);
+
+    List<CacheInvalidation> result = new ArrayList<>();
+    while (result.size() < invalidations.size()) {
+      CacheInvalidation invalidation = received.poll(5, TimeUnit.SECONDS);
+      Assert.assertNotNull("received " + result.size() + " invalidations", invalidation);
+      result.add(invalidation);
+    }
+    Assert.assertEquals(invalidations, result);
+  }
+
+  private SqlSessionFactory[] createCluster(boolean tableCacheInvalidation) {
+    DatagramCacheInvalidationBus bus1 = newBus();
+    DatagramCacheInvalidationBus bus2 = newBus();
+    bus1.addPeer(new InetSocketAddress(InetAddress.getLoopbackAddress(), bus2.getLocalPort()));
+    bus2.addPeer(new InetSocketAddress(InetAddress.getLoopbackAddress(), bus1.getLocalPort()));
+    return new SqlSessionFactory[] { createNode(bus1, tableCacheInvalidation), createNode(bus2, tableCacheInvalidation) };
+  }
+
+  private DatagramCacheInvalidationBus newBus() {
+    DatagramCacheInvalidationBus bus = new DatagramCacheInvalidationBus(0, Collections.<InetSocketAddress>emptyList());
+    buses.add(bus);
+    return bus;
+  }
+
+  private SqlSessionFactory createNode(DatagramCacheInvalidationBus bus, boolean tableCacheInvalidation) {
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.setTableCacheInvalidation(tableCacheInvalidation);
+    configuration.setCacheInvalidationBus(bus);
+    configuration.addMapper(Mapper.class);
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  private String getUserName(SqlSessionFactory node, int id) {
+    SqlSession sqlSession = node.openSession();
+    try {
+      return sqlSession.getMapper(Mapper.class).getUserName(id);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private void updateUserName(SqlSessionFactory node, int id, String name) {
+    SqlSession sqlSession = node.openSession();
+    try {
+      sqlSession.getMapper(Mapper.class).updateUserName(id, name);
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  // invalidations are applied asynchronously by the receiving node
+  private void waitForUserName(SqlSessionFactory node, int id, String expected) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    String name = getUserName(node, id);
+    while (!expected.equals(name) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      name = getUserName(node, id);
+    }
+    Assert.assertEquals(expected, name);
+  }
+
+  private void executeDirectly(String sql) throws SQLException {
+    Connection conn = dataSource.getConnection();
+    try {
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate(sql);
+      stmt.close();
+      if (!conn.getAutoCommit()) {
+        conn.commit();
+      }
+    } finally {
+      conn.close();
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.concurrent_sessions;
+
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the main session flows on a large number of concurrent threads sharing a small connection pool
+ * and a second level cache. Uses virtual threads when the JVM provides them, so a blocking path that
+ * still pins its carrier thread shows up as a timeout.
+ */
+public class ConcurrentSessionsTest {
+
+  private static final int THREADS = 1000;
+  private static final int DEPTS = 10;
+
+  private PooledDataSource dataSource;
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:concurrent_sessions", "sa", "");
+    dataSource.setPoolMaximumActiveConnections(5);
+    dataSource.setPoolMaximumIdleConnections(5);
+    dataSource.setPoolTimeToWait(100);
+    StringBuilder script = new StringBuilder("drop table users if exists;\n"
+        + "drop table depts if exists;\n"
+        + "create table depts (id int, name varchar(20));\n"
+        + "create table users (id int, name varchar(20), dept_id int);\n");
+    for (int i = 0; i < DEPTS; i++) {
+      script.append("insert into depts (id, name) values (").append(i).append(", 'Dept").append(i).append("');\n");
+      script.append("insert into users (id, name, dept_id) values (").append(i).append(", 'User").append(i).append("', ").append(i).append(");\n");
+    }
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader(script.toString()));
+    } finally {
+      conn.close();
+    }
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  @Test
+  public void shouldRunSessionsConcurrently() throws Exception {
+    runConcurrently(new Flow() {
+      @Override
+      public void run(int n) {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+          Mapper mapper = sqlSession.getMapper(Mapper.class);
+          User user = mapper.getUser(n % DEPTS);
+          // the department comes from a nested select through the second level cache
+          Assert.assertEquals("Dept" + (n % DEPTS), user.getDept().getName());
+          mapper.insertUser(DEPTS + n, "User" + n, n % DEPTS);
+          sqlSession.commit();
+        } finally {
+          sqlSession.close();
+        }
+      }
+    });
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Assert.assertEquals(DEPTS + THREADS, sqlSession.getMapper(Mapper.class).countUsers());
+    } finally {
+      sqlSession.close();
+    }
+    Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    Assert.assertTrue(dataSource.getPoolState().getIdleConnectionCount() <= 5);
+  }
+
+  @Test
+  public void shouldRunLightweightSessionsConcurrently() throws Exception {
+    runConcurrently(new Flow() {
+      @Override
+      public void run(int n) {
+        SqlSession sqlSession = sqlSessionFactory.openLightweightSession();
+        try {
+          Dept dept = sqlSession.getMapper(Mapper.class).getDept(n % DEPTS);
+          Assert.assertEquals("Dept" + (n % DEPTS), dept.getName());
+        } finally {
+          sqlSession.close();
+        }
+      }
+    });
+    Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+  }
+
+  private void runConcurrently(final Flow flow) throws Exception {
+    ThreadFactory threadFactory = newThreadFactory();
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(THREADS);
+    final AtomicInteger succeeded = new AtomicInteger();
+    final Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < THREADS; i++) {
+      final int n = i;
+      Thread thread = threadFactory.newThread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            flow.run(n);
+            succeeded.incrementAndGet();
+          } catch (Throwable t) {
+            errors.add(t);
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    if (!done.await(120, TimeUnit.SECONDS)) {
+      for (Thread thread : threads) {
+        thread.interrupt();
+      }
+      Assert.fail("Sessions did not finish, " + done.getCount() + " threads are still blocked");
+    }
+    if (!errors.isEmpty()) {
+      throw new AssertionError("Failed " + errors.size() + " of " + THREADS + " sessions", errors.peek());
+    }
+    Assert.assertEquals(THREADS, succeeded.get());
+  }
+
+  // Thread.ofVirtual() is only available on newer JVMs, fall back to platform threads elsewhere
+  private ThreadFactory newThreadFactory() {
+    try {
+      Method ofVirtual = Thread.class.getMethod("ofVirtual");
+      Object builder = ofVirtual.invoke(null);
+      Method factory = builder.getClass().getMethod("factory");
+      factory.setAccessible(true);
+      return (ThreadFactory) factory.invoke(builder);
+    } catch (Exception e) {
+      return Executors.defaultThreadFactory();
+    }
+  }
+
+  private interface Flow {
+    void run(int n);
+  }
+
+}
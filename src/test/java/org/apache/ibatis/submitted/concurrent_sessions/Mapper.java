@@ -0,0 +1,30 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.concurrent_sessions;
+
+import org.apache.ibatis.annotations.Param;
+
+public interface Mapper {
+
+  User getUser(int id);
+
+  Dept getDept(int id);
+
+  int countUsers();
+
+  int insertUser(@Param("id") int id, @Param("name") String name, @Param("deptId") int deptId);
+
+}
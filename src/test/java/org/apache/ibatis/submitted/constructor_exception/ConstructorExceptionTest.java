@@ -0,0 +1,86 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.constructor_exception;
+
+import java.io.StringReader;
+import java.sql.Connection;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConstructorExceptionTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    UnpooledDataSource dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:constructor_exception", "sa", "");
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader("drop table users if exists;\n"
+          + "create table users (id int, name varchar(20));\n"
+          + "insert into users (id, name) values (1, 'User1');\n"
+          + "insert into users (id, name) values (2, null);\n"));
+    } finally {
+      conn.close();
+    }
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    User.instances.set(0);
+  }
+
+  @Test
+  public void shouldInstantiateThroughConstructor() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      User user = sqlSession.getMapper(Mapper.class).getUser(1);
+      Assert.assertEquals("User1", user.getName());
+      Assert.assertEquals(1, User.instances.get());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldRunFailingConstructorOnlyOnce() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(Mapper.class).getUser(2);
+      Assert.fail("Expected the constructor to fail");
+    } catch (PersistenceException e) {
+      Assert.assertTrue(e.getCause() instanceof ReflectionException);
+      Assert.assertTrue(e.getCause().getCause() instanceof IllegalArgumentException);
+    } finally {
+      sqlSession.close();
+    }
+    Assert.assertEquals(1, User.instances.get());
+  }
+
+}
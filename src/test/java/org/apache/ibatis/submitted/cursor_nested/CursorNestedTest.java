@@ -16,6 +16,7 @@
 package org.apache.ibatis.submitted.cursor_nested;
 
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.jdbc.ScriptRunner;
 import org.apache.ibatis.session.RowBounds;
@@ -115,4 +116,45 @@ public class CursorNestedTest {
             sqlSession.close();
         }
     }
+
+    @Test
+    public void shouldStreamGroupsWithoutResultOrdered() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            Cursor<User> usersCursor = sqlSession.getMapper(Mapper.class).getAllUsersWithoutResultOrdered();
+            Iterator<User> iterator = usersCursor.iterator();
+
+            // the group is complete when the object is returned
+            User user = iterator.next();
+            Assert.assertEquals(2, user.getGroups().size());
+            Assert.assertEquals(3, user.getRoles().size());
+
+            int count = 1;
+            while (iterator.hasNext()) {
+                iterator.next();
+                count++;
+            }
+            Assert.assertEquals(4, count);
+        } finally {
+            sqlSession.close();
+        }
+    }
+
+    @Test
+    public void shouldFailWhenRowsAreNotGroupedById() {
+        SqlSession sqlSession = sqlSessionFactory.openSession();
+        try {
+            Iterator<User> iterator = sqlSession.getMapper(Mapper.class).getAllUsersNotGroupedById().iterator();
+            try {
+                while (iterator.hasNext()) {
+                    iterator.next();
+                }
+                Assert.fail("Should have detected rows not grouped by id");
+            } catch (PersistenceException e) {
+                Assert.assertTrue(e.getMessage().contains("are not grouped by its id columns"));
+            }
+        } finally {
+            sqlSession.close();
+        }
+    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.expiring_cache;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RefreshAheadTest {
+
+  @Test
+  public void shouldRefreshEntryByReexecutingTheStatement() throws Exception {
+    DataSource dataSource = createDataSource();
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(dataSource);
+
+    Assert.assertEquals("User1", getUserName(sqlSessionFactory));
+    Connection conn = dataSource.getConnection();
+    try {
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate("update users set name = 'Changed' where id = 1");
+      stmt.close();
+      if (!conn.getAutoCommit()) {
+        conn.commit();
+      }
+    } finally {
+      conn.close();
+    }
+    Thread.sleep(300);
+
+    // the first read past the refresh point still gets the cached value and starts the refresh
+    Assert.assertEquals("User1", getUserName(sqlSessionFactory));
+    long deadline = System.currentTimeMillis() + 5000;
+    String name = getUserName(sqlSessionFactory);
+    while (!"Changed".equals(name) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(20);
+      name = getUserName(sqlSessionFactory);
+    }
+    Assert.assertEquals("Changed", name);
+  }
+
+  @Test
+  public void shouldNotRefreshEntryWhenTheParameterObjectWasModified() throws Exception {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(createDataSource());
+    Map<String, Object> params = new HashMap<>();
+    params.put("id", 1);
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Assert.assertEquals("User1", sqlSession.getMapper(Mapper.class).getUserNameByParams(params));
+    } finally {
+      sqlSession.close();
+    }
+    // the caller reuses its parameter object for another user
+    params.put("id", 2);
+    Thread.sleep(300);
+
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals("User1", getUserNameByParams(sqlSessionFactory, 1));
+      Thread.sleep(50);
+    }
+  }
+
+  private DataSource createDataSource() throws Exception {
+    DataSource dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:expiring_cache", "sa", "");
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader("drop table users if exists;\n"
+          + "create table users (id int, name varchar(20));\n"
+          + "insert into users (id, name) values (1, 'User1');\n"
+          + "insert into users (id, name) values (2, 'User2');\n"));
+    } finally {
+      conn.close();
+    }
+    return dataSource;
+  }
+
+  private SqlSessionFactory createSqlSessionFactory(DataSource dataSource) {
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(Mapper.class);
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  private String getUserNameByParams(SqlSessionFactory sqlSessionFactory, int id) {
+    Map<String, Object> params = new HashMap<>();
+    params.put("id", id);
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(Mapper.class).getUserNameByParams(params);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private String getUserName(SqlSessionFactory sqlSessionFactory) {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      return sqlSession.getMapper(Mapper.class).getUserName(1);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+}
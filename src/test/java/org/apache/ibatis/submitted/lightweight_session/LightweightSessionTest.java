@@ -0,0 +1,188 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.lightweight_session;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LightweightSessionTest {
+
+  private PooledDataSource dataSource;
+  private SqlSessionFactory sqlSessionFactory;
+  private ExecutorCountingPlugin plugin;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:lightweight_session", "sa", "");
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader("drop table users if exists;\n"
+          + "create table users (id int, name varchar(20));\n"
+          + "insert into users (id, name) values (1, 'User1');\n"));
+    } finally {
+      conn.close();
+    }
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    plugin = new ExecutorCountingPlugin();
+    configuration.addInterceptor(plugin);
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  @Test
+  public void shouldReuseExecutorAcrossCallsOnSameThread() {
+    for (int i = 0; i < 3; i++) {
+      SqlSession sqlSession = sqlSessionFactory.openLightweightSession();
+      try {
+        Assert.assertEquals("User1", sqlSession.getMapper(Mapper.class).getName(1));
+      } finally {
+        sqlSession.close();
+      }
+      // the connection goes back to the pool when the session is closed
+      Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    }
+    Assert.assertEquals(1, plugin.executors.get());
+  }
+
+  @Test
+  public void shouldAutoCommitWrites() {
+    SqlSession sqlSession = sqlSessionFactory.openLightweightSession();
+    try {
+      sqlSession.getMapper(Mapper.class).insertUser(2, "User2");
+    } finally {
+      sqlSession.close();
+    }
+    SqlSession other = sqlSessionFactory.openSession();
+    try {
+      Assert.assertEquals("User2", other.getMapper(Mapper.class).getName(2));
+    } finally {
+      other.close();
+    }
+  }
+
+  @Test
+  public void shouldOpenRegularSessionWhenNested() {
+    SqlSession outer = sqlSessionFactory.openLightweightSession();
+    try {
+      SqlSession inner = sqlSessionFactory.openLightweightSession();
+      try {
+        Assert.assertNotSame(outer, inner);
+        Assert.assertEquals("User1", inner.getMapper(Mapper.class).getName(1));
+      } finally {
+        inner.close();
+      }
+      Assert.assertEquals("User1", outer.getMapper(Mapper.class).getName(1));
+    } finally {
+      outer.close();
+    }
+    SqlSession again = sqlSessionFactory.openLightweightSession();
+    try {
+      Assert.assertSame(outer, again);
+    } finally {
+      again.close();
+    }
+  }
+
+  @Test
+  public void shouldUseSeparateSessionPerThread() throws Exception {
+    final AtomicReference<SqlSession> other = new AtomicReference<>();
+    SqlSession sqlSession = sqlSessionFactory.openLightweightSession();
+    sqlSession.close();
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        SqlSession session = sqlSessionFactory.openLightweightSession();
+        session.close();
+        other.set(session);
+      }
+    });
+    thread.start();
+    thread.join();
+    Assert.assertNotNull(other.get());
+    Assert.assertNotSame(sqlSession, other.get());
+  }
+
+  @Test
+  public void shouldRejectUseAfterClose() {
+    SqlSession sqlSession = sqlSessionFactory.openLightweightSession();
+    Mapper mapper = sqlSession.getMapper(Mapper.class);
+    sqlSession.close();
+    try {
+      mapper.getName(1);
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    try {
+      sqlSession.getMapper(Mapper.class);
+      Assert.fail("Expected IllegalStateException");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // closing twice is still allowed
+    sqlSession.close();
+    Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+  }
+
+  @Intercepts({@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class})})
+  public static class ExecutorCountingPlugin implements Interceptor {
+
+    private final AtomicInteger executors = new AtomicInteger();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      if (target instanceof Executor) {
+        executors.incrementAndGet();
+      }
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+
+  }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.reactive_publisher;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cursor.reactive.Publisher;
+import org.apache.ibatis.cursor.reactive.Subscriber;
+import org.apache.ibatis.cursor.reactive.Subscription;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReactivePublisherTest {
+
+  private PooledDataSource dataSource;
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:reactive_publisher", "sa", "");
+    StringBuilder script = new StringBuilder("drop table users if exists;\n"
+        + "create table users (id int, name varchar(20));\n");
+    for (int i = 1; i <= 5; i++) {
+      script.append("insert into users (id, name) values (").append(i).append(", 'User").append(i).append("');\n");
+    }
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader(script.toString()));
+    } finally {
+      conn.close();
+    }
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(Mapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  @Test
+  public void shouldPublishRowsOnlyAsRequested() {
+    SqlSessionManager manager = SqlSessionManager.newInstance(sqlSessionFactory);
+    Publisher<String> publisher = manager.getMapper(Mapper.class).getNames();
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    publisher.subscribe(subscriber);
+    // nothing is queried before the first request
+    Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+
+    subscriber.subscription.request(2);
+    Assert.assertEquals(listOf("User1", "User2"), subscriber.items);
+    Assert.assertFalse(subscriber.completed);
+    Assert.assertEquals(1, dataSource.getPoolState().getActiveConnectionCount());
+
+    subscriber.subscription.request(2);
+    Assert.assertEquals(listOf("User1", "User2", "User3", "User4"), subscriber.items);
+
+    subscriber.subscription.request(10);
+    Assert.assertEquals(5, subscriber.items.size());
+    Assert.assertTrue(subscriber.completed);
+    // the session opened for the subscription is closed on completion
+    Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+  }
+
+  @Test
+  public void shouldReleaseConnectionOnCancel() {
+    SqlSessionManager manager = SqlSessionManager.newInstance(sqlSessionFactory);
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    manager.getMapper(Mapper.class).getNames().subscribe(subscriber);
+    subscriber.subscription.request(1);
+    Assert.assertEquals(1, dataSource.getPoolState().getActiveConnectionCount());
+    subscriber.subscription.cancel();
+    Assert.assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    subscriber.subscription.request(1);
+    Assert.assertEquals(listOf("User1"), subscriber.items);
+    Assert.assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void shouldSupportRequestsFromOnNext() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      final List<String> items = new ArrayList<>();
+      final boolean[] completed = new boolean[1];
+      sqlSession.getMapper(Mapper.class).getNames().subscribe(new Subscriber<String>() {
+        private Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+          this.subscription = subscription;
+          subscription.request(1);
+        }
+
+        @Override
+        public void onNext(String item) {
+          items.add(item);
+          subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+          throw new AssertionError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+          completed[0] = true;
+        }
+      });
+      Assert.assertEquals(listOf("User1", "User2", "User3", "User4", "User5"), items);
+      Assert.assertTrue(completed[0]);
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldSignalErrorForInvalidRequest() {
+    RecordingSubscriber subscriber = new RecordingSubscriber();
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.<String>selectPublisher("org.apache.ibatis.submitted.reactive_publisher.Mapper.getNames", null).subscribe(subscriber);
+      subscriber.subscription.request(0);
+      Assert.assertTrue(subscriber.error instanceof IllegalArgumentException);
+      Assert.assertTrue(subscriber.items.isEmpty());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private static List<String> listOf(String... items) {
+    List<String> list = new ArrayList<>();
+    for (String item : items) {
+      list.add(item);
+    }
+    return list;
+  }
+
+  private static class RecordingSubscriber implements Subscriber<String> {
+    private final List<String> items = new ArrayList<>();
+    private Subscription subscription;
+    private boolean completed;
+    private Throwable error;
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(String item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.read_write_splitting;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.datasource.routing.ReadWriteDataSource;
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadWriteSplittingTest {
+
+  private DataSource primary;
+  private DataSource replica1;
+  private DataSource replica2;
+
+  @Before
+  public void setUp() throws Exception {
+    primary = createDatabase("rw_primary");
+    replica1 = createDatabase("rw_replica1");
+    replica2 = createDatabase("rw_replica2");
+  }
+
+  @Test
+  public void shouldRouteSelectsToReplicasRoundRobin() {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(new ReadWriteDataSource(primary, Arrays.asList(replica1, replica2)));
+    for (ExecutorType executorType : ExecutorType.values()) {
+      SqlSession sqlSession = sqlSessionFactory.openSession(executorType, true);
+      try {
+        Mapper mapper = sqlSession.getMapper(Mapper.class);
+        String first = mapper.getName(1);
+        // a session keeps using the replica it started reading from
+        sqlSession.clearCache();
+        Assert.assertEquals(first, mapper.getName(1));
+        Assert.assertTrue(first, first.startsWith("rw_replica"));
+      } finally {
+        sqlSession.close();
+      }
+    }
+    SqlSession session1 = sqlSessionFactory.openSession(true);
+    SqlSession session2 = sqlSessionFactory.openSession(true);
+    try {
+      String name1 = session1.getMapper(Mapper.class).getName(1);
+      String name2 = session2.getMapper(Mapper.class).getName(1);
+      Assert.assertNotEquals(name1, name2);
+    } finally {
+      session1.close();
+      session2.close();
+    }
+  }
+
+  @Test
+  public void shouldStickToPrimaryAfterWrite() {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(new ReadWriteDataSource(primary, Arrays.asList(replica1, replica2)));
+    for (ExecutorType executorType : ExecutorType.values()) {
+      SqlSession sqlSession = sqlSessionFactory.openSession(executorType, true);
+      try {
+        Mapper mapper = sqlSession.getMapper(Mapper.class);
+        Assert.assertTrue(mapper.getName(1).startsWith("rw_replica"));
+        mapper.updateName(1, "updated");
+        // the update is only visible on the primary
+        Assert.assertEquals("updated", mapper.getName(1));
+        mapper.updateName(1, "rw_primary");
+        Assert.assertEquals("rw_primary", mapper.getName(1));
+      } finally {
+        sqlSession.close();
+      }
+    }
+  }
+
+  @Test
+  public void shouldKeepTransactionsOnPrimary() throws Exception {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(new ReadWriteDataSource(primary, Arrays.asList(replica1, replica2)));
+    for (ExecutorType executorType : ExecutorType.values()) {
+      SqlSession sqlSession = sqlSessionFactory.openSession(executorType);
+      try {
+        // e.g. select ... for update followed by an update must see the primary
+        Assert.assertEquals("rw_primary", sqlSession.getMapper(Mapper.class).getName(1));
+      } finally {
+        sqlSession.close();
+      }
+    }
+    Connection conn = primary.getConnection();
+    try {
+      conn.setAutoCommit(false);
+      SqlSession sqlSession = sqlSessionFactory.openSession(conn);
+      Assert.assertEquals("rw_primary", sqlSession.getMapper(Mapper.class).getName(1));
+      sqlSession.close();
+    } finally {
+      conn.close();
+    }
+    conn = primary.getConnection();
+    try {
+      conn.setAutoCommit(true);
+      SqlSession sqlSession = sqlSessionFactory.openSession(conn);
+      Assert.assertTrue(sqlSession.getMapper(Mapper.class).getName(1).startsWith("rw_replica"));
+      sqlSession.close();
+    } finally {
+      conn.close();
+    }
+  }
+
+  @Test
+  public void shouldRunOptedOutSelectsOnPrimary() {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(new ReadWriteDataSource(primary, Arrays.asList(replica1, replica2)));
+    SqlSession sqlSession = sqlSessionFactory.openSession(true);
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Assert.assertEquals("rw_primary", mapper.getNameFromPrimary(1));
+      Assert.assertEquals("rw_primary", mapper.getNameAnnotatedPrimary(1));
+      Assert.assertTrue(mapper.getName(1).startsWith("rw_replica"));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldUseLeastActiveReplica() throws Exception {
+    PooledDataSource pooled1 = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:rw_replica1", "sa", "");
+    PooledDataSource pooled2 = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:rw_replica2", "sa", "");
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(
+        new ReadWriteDataSource(primary, Arrays.asList(pooled1, pooled2), ReadWriteDataSource.Strategy.LEAST_ACTIVE));
+    // keep replica 1 busy
+    Connection busy1 = pooled1.getConnection();
+    Connection busy2 = pooled1.getConnection();
+    try {
+      for (int i = 0; i < 3; i++) {
+        SqlSession sqlSession = sqlSessionFactory.openSession(true);
+        try {
+          Assert.assertEquals("rw_replica2", sqlSession.getMapper(Mapper.class).getName(1));
+        } finally {
+          sqlSession.close();
+        }
+      }
+    } finally {
+      busy1.close();
+      busy2.close();
+      pooled1.forceCloseAll();
+      pooled2.forceCloseAll();
+    }
+  }
+
+  @Test
+  public void shouldFallBackToPrimaryWithoutReplicas() {
+    SqlSessionFactory sqlSessionFactory = createSqlSessionFactory(new ReadWriteDataSource(primary, Arrays.<DataSource>asList()));
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Assert.assertEquals("rw_primary", sqlSession.getMapper(Mapper.class).getName(1));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private SqlSessionFactory createSqlSessionFactory(DataSource dataSource) {
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.addMapper(Mapper.class);
+    return new SqlSessionFactoryBuilder().build(configuration);
+  }
+
+  // every database holds one row named after itself
+  private static DataSource createDatabase(String name) throws Exception {
+    DataSource dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:" + name, "sa", "");
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader("drop table users if exists;\n"
+          + "create table users (id int, name varchar(20));\n"
+          + "insert into users (id, name) values (1, '" + name + "');\n"));
+    } finally {
+      conn.close();
+    }
+    return dataSource;
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.sharding;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.BulkInsert;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+public interface Mapper {
+
+  List<User> getUsersByTenant(@Param("tenantId") int tenantId);
+
+  List<User> getAllUsers();
+
+  int insertUser(User user);
+
+  int renameAll(@Param("name") String name);
+
+  @BulkInsert
+  @Insert("insert into users (id, tenant_id, name) values (#{id}, #{tenantId}, #{name})")
+  int insertUsers(List<User> users);
+
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.sharding;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionException;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.sharding.PropertyShardKeyResolver;
+import org.apache.ibatis.session.sharding.ShardedSqlSession;
+import org.apache.ibatis.session.sharding.ShardedSqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardingTest {
+
+  private static final int SHARDS = 3;
+
+  private static final Comparator<User> BY_ID = new Comparator<User>() {
+    @Override
+    public int compare(User u1, User u2) {
+      return u1.getId().compareTo(u2.getId());
+    }
+  };
+
+  private ShardedSqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    List<SqlSessionFactory> shards = new ArrayList<>();
+    for (int i = 0; i < SHARDS; i++) {
+      DataSource dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:sharding" + i, "sa", "");
+      Connection conn = dataSource.getConnection();
+      try {
+        ScriptRunner runner = new ScriptRunner(conn);
+        runner.setLogWriter(null);
+        runner.runScript(new StringReader("drop table users if exists;\n"
+            + "create table users (id int, tenant_id int, name varchar(20));\n"));
+      } finally {
+        conn.close();
+      }
+      Configuration configuration = new Configuration(new Environment("shard" + i, new JdbcTransactionFactory(), dataSource));
+      configuration.addMapper(Mapper.class);
+      shards.add(new SqlSessionFactoryBuilder().build(configuration));
+    }
+    sqlSessionFactory = new ShardedSqlSessionFactory(shards, new PropertyShardKeyResolver("tenantId"));
+
+    // users 1..9 belong to tenants 0..8, i.e. three users per shard
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int id = 1; id <= 9; id++) {
+        mapper.insertUser(new User(id, id - 1, "user" + id));
+      }
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @After
+  public void tearDown() {
+    sqlSessionFactory.close();
+  }
+
+  @Test
+  public void shouldRouteByShardKey() throws Exception {
+    ShardedSqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      for (int shard = 0; shard < SHARDS; shard++) {
+        List<User> users = sqlSession.getShardSession(shard).getMapper(Mapper.class).getAllUsers();
+        Assert.assertEquals(3, users.size());
+        for (User user : users) {
+          Assert.assertEquals(shard, user.getTenantId() % SHARDS);
+        }
+      }
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersByTenant(4);
+      Assert.assertEquals(1, users.size());
+      Assert.assertEquals("user5", users.get(0).getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldScatterGatherAndMergeSorted() {
+    ShardedSqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Assert.assertEquals(9, sqlSession.getMapper(Mapper.class).getAllUsers().size());
+
+      List<User> users = sqlSession.selectList("org.apache.ibatis.submitted.sharding.Mapper.getAllUsers", null, RowBounds.DEFAULT, BY_ID);
+      Assert.assertEquals(9, users.size());
+      for (int i = 0; i < users.size(); i++) {
+        Assert.assertEquals(Integer.valueOf(i + 1), users.get(i).getId());
+      }
+
+      List<User> page = sqlSession.selectList("org.apache.ibatis.submitted.sharding.Mapper.getAllUsers", null, new RowBounds(2, 4), BY_ID);
+      Assert.assertEquals(4, page.size());
+      Assert.assertEquals(Integer.valueOf(3), page.get(0).getId());
+      Assert.assertEquals(Integer.valueOf(6), page.get(3).getId());
+
+      Assert.assertEquals(9, sqlSession.selectMap("org.apache.ibatis.submitted.sharding.Mapper.getAllUsers", "id").size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldBroadcastUpdatesWithoutShardKey() {
+    ShardedSqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Assert.assertEquals(9, mapper.renameAll("renamed"));
+      for (User user : mapper.getAllUsers()) {
+        Assert.assertEquals("renamed", user.getName());
+      }
+      sqlSession.rollback(true);
+      Assert.assertEquals("user1", mapper.getUsersByTenant(0).get(0).getName());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldGroupBulkInsertsByShard() {
+    ShardedSqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      Assert.assertEquals(3, mapper.insertUsers(Arrays.asList(new User(10, 9, "user10"), new User(11, 10, "user11"), new User(12, 12, "user12"))));
+      Assert.assertEquals(5, sqlSession.getShardSession(0).getMapper(Mapper.class).getAllUsers().size());
+      Assert.assertEquals(4, sqlSession.getShardSession(1).getMapper(Mapper.class).getAllUsers().size());
+      Assert.assertEquals(3, sqlSession.getShardSession(2).getMapper(Mapper.class).getAllUsers().size());
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test(expected = SqlSessionException.class)
+  public void shouldRejectInsertWithoutShardKey() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(Mapper.class).insertUser(new User(10, null, "user10"));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldShutDownOwnQueryExecutorOnClose() {
+    sqlSessionFactory.close();
+    Assert.assertTrue(sqlSessionFactory.isClosed());
+    Assert.assertTrue(sqlSessionFactory.getQueryExecutor().isShutdown());
+    try {
+      sqlSessionFactory.openSession();
+      Assert.fail("Expected a closed factory to refuse new sessions");
+    } catch (SqlSessionException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright ${license.git.copyrightYears} the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ibatis.submitted.table_cache_invalidation;
+
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.jdbc.ScriptRunner;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableCacheInvalidationTest {
+
+  private DataSource dataSource;
+  private SqlSessionFactory sqlSessionFactory;
+
+  @Before
+  public void setUp() throws Exception {
+    dataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:table_cache_invalidation", "sa", "");
+    Connection conn = dataSource.getConnection();
+    try {
+      ScriptRunner runner = new ScriptRunner(conn);
+      runner.setLogWriter(null);
+      runner.runScript(new StringReader("drop table orders if exists;\n"
+          + "drop table users if exists;\n"
+          + "create table users (id int, name varchar(20));\n"
+          + "create table orders (id int, user_id int, item varchar(20));\n"
+          + "insert into users (id, name) values (1, 'User1');\n"
+          + "insert into users (id, name) values (2, 'User2');\n"
+          + "insert into orders (id, user_id, item) values (1, 1, 'Item1');\n"));
+    } finally {
+      conn.close();
+    }
+    Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dataSource));
+    configuration.setTableCacheInvalidation(true);
+    configuration.addMapper(UserMapper.class);
+    configuration.addMapper(OrderMapper.class);
+    sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+    warmUpCaches();
+  }
+
+  @Test
+  public void shouldKeepUnrelatedEntriesOnWrite() throws Exception {
+    // changes made behind MyBatis' back show which entries were evicted
+    executeDirectly("update orders set item = 'Direct'");
+    executeDirectly("update users set name = 'Direct' where id = 2");
+
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(UserMapper.class).updateUserName(1, "Changed");
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+      OrderMapper orderMapper = sqlSession.getMapper(OrderMapper.class);
+      Assert.assertEquals("Changed", userMapper.getUserName(1));
+      // other rows of the same namespace stay cached
+      Assert.assertEquals("User2", userMapper.getUserName(2));
+      // entries of another namespace reading the table are evicted
+      Assert.assertEquals("Changed", orderMapper.getOrderOwner(1));
+      // entries of another namespace not reading the table stay cached
+      Assert.assertEquals("Item1", orderMapper.getOrderItem(1));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldEvictWholeTableWithoutKey() throws Exception {
+    executeDirectly("update orders set item = 'Direct'");
+
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      sqlSession.getMapper(UserMapper.class).renameAllUsers("Renamed");
+      sqlSession.commit();
+      UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+      Assert.assertEquals("Renamed", userMapper.getUserName(1));
+      Assert.assertEquals("Renamed", userMapper.getUserName(2));
+      Assert.assertEquals("Item1", sqlSession.getMapper(OrderMapper.class).getOrderItem(1));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  @Test
+  public void shouldNotReadStaleEntriesInsideWritingTransaction() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+      userMapper.updateUserName(1, "Uncommitted");
+      Assert.assertEquals("Uncommitted", userMapper.getUserName(1));
+      sqlSession.rollback(true);
+    } finally {
+      sqlSession.close();
+    }
+
+    sqlSession = sqlSessionFactory.openSession();
+    try {
+      Assert.assertEquals("User1", sqlSession.getMapper(UserMapper.class).getUserName(1));
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private void warmUpCaches() {
+    SqlSession sqlSession = sqlSessionFactory.openSession();
+    try {
+      UserMapper userMapper = sqlSession.getMapper(UserMapper.class);
+      OrderMapper orderMapper = sqlSession.getMapper(OrderMapper.class);
+      Assert.assertEquals("User1", userMapper.getUserName(1));
+      Assert.assertEquals("User2", userMapper.getUserName(2));
+      Assert.assertEquals("User1", orderMapper.getOrderOwner(1));
+      Assert.assertEquals("Item1", orderMapper.getOrderItem(1));
+      sqlSession.commit();
+    } finally {
+      sqlSession.close();
+    }
+  }
+
+  private void executeDirectly(String sql) throws SQLException {
+    Connection conn = dataSource.getConnection();
+    try {
+      Statement stmt = conn.createStatement();
+      stmt.executeUpdate(sql);
+      stmt.close();
+      if (!conn.getAutoCommit()) {
+        conn.commit();
+      }
+    } finally {
+      conn.close();
+    }
+  }
+
+}
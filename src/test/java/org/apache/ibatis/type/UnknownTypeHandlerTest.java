@@ -18,12 +18,16 @@ package org.apache.ibatis.type;
 import java.sql.SQLException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.spy;
 
 import org.apache.ibatis.executor.result.ResultMapException;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.session.Configuration;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -151,4 +155,27 @@ public class UnknownTypeHandlerTest extends BaseTypeHandlerTest {
     }
   }
 
-}
\ No newline at end of file
+  @Test
+  public void shouldResolveResultTypeHandlerFromMetaData() throws Exception {
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnCount()).thenReturn(2);
+    when(rsmd.getColumnName(2)).thenReturn("column");
+    when(rsmd.getColumnClassName(2)).thenReturn(Integer.class.getName());
+    when(rsmd.getColumnType(2)).thenReturn(JdbcType.INTEGER.TYPE_CODE);
+    UnknownTypeHandler handler = new UnknownTypeHandler(new TypeHandlerRegistry());
+    assertTrue(handler.resolveResultTypeHandler(rs, "column") instanceof IntegerTypeHandler);
+    assertTrue(handler.resolveResultTypeHandler(rs, "missing") instanceof ObjectTypeHandler);
+  }
+
+  @Test
+  public void shouldCacheParameterTypeHandlerPerMapping() throws Exception {
+    TypeHandlerRegistry registry = new TypeHandlerRegistry();
+    ParameterMapping mapping = new ParameterMapping.Builder(new Configuration(), "value", registry.getUnknownTypeHandler()).build();
+    TypeHandler<?> stringHandler = mapping.getTypeHandler("Hello");
+    assertTrue(stringHandler instanceof StringTypeHandler);
+    assertSame(stringHandler, mapping.getTypeHandler("World"));
+    assertTrue(mapping.getTypeHandler(1) instanceof IntegerTypeHandler);
+    assertTrue(mapping.getTypeHandler(null) instanceof UnknownTypeHandler);
+  }
+
+}